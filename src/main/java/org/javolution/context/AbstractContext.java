@@ -8,6 +8,9 @@
  */
 package org.javolution.context;
 
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import org.javolution.annotations.Realtime;
 
 /**
@@ -41,11 +44,40 @@ public abstract class AbstractContext {
      */
     private static final ThreadLocal<AbstractContext> CURRENT = new ThreadLocal<AbstractContext>();
 
+    /**
+     * Holds the ordinals of the context types looked up (index in the resolution cache).
+     */
+    private static final ClassValue<Integer> ORDINALS = new ClassValue<Integer>() {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        protected Integer computeValue(Class<?> type) {
+            return count.getAndIncrement();
+        }
+    };
+
+    /**
+     * Indicates in the resolution cache that there is no context of the type looked up.
+     */
+    private static final AbstractContext NONE = new AbstractContext() {
+        @Override
+        protected AbstractContext inner() {
+            return this;
+        }
+    };
+
     /**
      * Holds the outer context or {@code null} if none (top context).
      */
     private AbstractContext outer;
 
+    /**
+     * Holds the resolution of {@link #current(Class)} for this context indexed by type ordinal (lazily filled). 
+     * The outer chain of a context does not change once entered, this cache never has to be invalidated 
+     * and is shared by all the threads executing within this context (benign races).
+     */
+    private AbstractContext[] resolved;
+
     /**
      * Default constructor. 
      */
@@ -65,15 +97,9 @@ public abstract class AbstractContext {
      * @param type the type of context to search for.
      * @return the current context of specified type or `null` if none. 
      */
-    @SuppressWarnings("unchecked")
     protected static <T extends AbstractContext> T current(Class<T> type) {
         AbstractContext ctx = AbstractContext.CURRENT.get();
-        while (ctx != null) {
-            if (type.isInstance(ctx))
-                return (T) ctx;
-            ctx = ctx.outer;
-        }
-        return null;
+        return (ctx != null) ? ctx.resolve(type) : null;
     }
 
     /**
@@ -122,8 +148,7 @@ public abstract class AbstractContext {
     public void exit() {
         if (this != AbstractContext.CURRENT.get())
             throw new IllegalStateException("This context is not the current context");
-        AbstractContext.CURRENT.set(outer);
-        outer = null;
+        AbstractContext.CURRENT.set(outer); // Outer kept (asynchronous logics may still execute in this context).
     }
 
     /**
@@ -141,15 +166,8 @@ public abstract class AbstractContext {
      * @param type the class of the outer context to return.
      * @return outer context or {@code null} if this context has no outer context.
      */
-    @SuppressWarnings("unchecked")
     protected <T extends AbstractContext> T getOuter(Class<T> type) {
-        AbstractContext ctx = outer;
-        while (ctx != null) {
-            if (type.isInstance(ctx))
-                return (T) ctx;
-            ctx = ctx.outer;
-        }
-        return null;
+        return (outer != null) ? outer.resolve(type) : null;
     }
 
     /**
@@ -160,4 +178,24 @@ public abstract class AbstractContext {
      */
     protected abstract AbstractContext inner();
 
+    /** Returns this context or the first outer context of the specified type (constant time once resolved). */
+    @SuppressWarnings("unchecked")
+    private <T extends AbstractContext> T resolve(Class<T> type) {
+        int ordinal = ORDINALS.get(type);
+        AbstractContext[] cache = resolved;
+        if ((cache != null) && (ordinal < cache.length)) {
+            AbstractContext ctx = cache[ordinal];
+            if (ctx != null) return (ctx != NONE) ? (T) ctx : null;
+        }
+        AbstractContext ctx = type.isInstance(this) ? this : (outer != null) ? outer.resolve(type) : null;
+        if (cache == null) {
+            cache = new AbstractContext[Math.max(8, ordinal + 1)];
+        } else if (ordinal >= cache.length) {
+            cache = Arrays.copyOf(cache, Math.max(ordinal + 1, cache.length * 2));
+        }
+        cache[ordinal] = (ctx != null) ? ctx : NONE;
+        resolved = cache;
+        return (T) ctx;
+    }
+
 }
\ No newline at end of file
@@ -0,0 +1,344 @@
+/*
+ * Javolution - Java(TM) Solution for Real-Time and Embedded Systems
+ * Copyright (C) 2012 - Javolution (http://javolution.org/)
+ * All rights reserved.
+ * 
+ * Permission to use, copy, modify, and distribute this software is
+ * freely granted, provided that this notice is preserved.
+ */
+package org.javolution.context;
+
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.javolution.context.SecurityContext.Permission;
+
+/**
+ * A storage context writing to the current storage context asynchronously.
+ * 
+ * ```java
+ * AsyncStorageContext ctx = AsyncStorageContext.enter(10000); // Up to 10000 resources pending.
+ * try {
+ *     ...
+ *     StorageContext.enter().write(sessionId, session); // Returns immediately.
+ *     ...
+ *     ConcurrentFuture<Void> checkpoint = ctx.writeAsync(checkpointId, checkpoint); 
+ *     checkpoint.join(); // Waits until the checkpoint has been committed.
+ * } finally {
+ *     ctx.exit(); // Waits for all the pending writes to be committed.
+ * }
+ * ```
+ * 
+ * Writes are queued and committed in groups by a background thread; repeated writes to the same resource 
+ * before it is committed are coalesced (only the last value is written). Each group is 
+ * {@link StorageContext#commit committed} at once, e.g. with a single force to the storage device for the 
+ * {@link StorageContext.Engine#MAPPED_LOG MAPPED_LOG} storage engine. Reads return the pending values (if any).
+ * 
+ * The queue is bounded: writers wait when the maximum number of resources pending (including those being 
+ * committed) is reached. The pending writes are committed when this context is exited (or when the virtual 
+ * machine shuts down); writes made afterwards are synchronous and wait for the pending value of the same 
+ * resource (if any) to be committed first. Since values are 
+ * encoded asynchronously, they should not be modified after being written. Inner contexts share the same 
+ * queue.
+ * 
+ * Codecs are inherited from the storage context written to; codecs set through this context (or its inner 
+ * contexts) apply only to them. Values are encoded with the codecs of the context they are written through.
+ * 
+ * @author  <a href="mailto:jean-marie@dautelle.com">Jean-Marie Dautelle</a>
+ * @version 7.0, October 18, 2026
+ */
+public final class AsyncStorageContext extends StorageContext {
+
+    private final StorageContext storage; // Inner context of the storage context written to (own codecs).
+    private final Queue queue;
+    private boolean owner; // Context entered (commits the pending writes on exit).
+
+    private AsyncStorageContext(StorageContext storage, Queue queue) {
+        this.storage = storage;
+        this.queue = queue;
+    }
+
+    /**
+     * Enters a context writing asynchronously to the current storage context.
+     * 
+     * @param capacity the maximum number of resources with pending writes.
+     * @return the asynchronous context entered.
+     * @throws IllegalArgumentException if the specified capacity is not positive.
+     */
+    public static AsyncStorageContext enter(int capacity) {
+        if (capacity <= 0) throw new IllegalArgumentException("Capacity should be positive: " + capacity);
+        Queue queue = new Queue(capacity);
+        AsyncStorageContext ctx = (AsyncStorageContext) new AsyncStorageContext(currentStorageContext(), queue)
+                .enterInner();
+        ctx.owner = true;
+        queue.start(ctx);
+        return ctx;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public <V extends Serializable> V read(Resource<V> resource) throws SecurityException {
+        SecurityContext.check(new Permission<Resource<V>>(Resource.class, "read", resource));
+        Pending pending = queue.get(resource.uniqueID());
+        return (pending != null) ? (V) pending.value : storage.read(resource);
+    }
+
+    @Override
+    public <V extends Serializable> void write(Resource<V> resource, V value) throws SecurityException {
+        writeAsync(resource, value);
+    }
+
+    /**
+     * Queues the writing of the specified resource value, waiting if the queue is full.
+     * 
+     * @param <V> type of persistent value
+     * @param resource the entity whose persistent value is stored.
+     * @param value the persistent value.
+     * @return the future completed when the value (or a value written later on for the same resource) has been 
+     *         committed or completed exceptionally if the value could not be written.
+     * @throws SecurityException if the permission to write the resource is not granted.
+     */
+    public <V extends Serializable> ConcurrentFuture<Void> writeAsync(Resource<V> resource, V value)
+            throws SecurityException {
+        SecurityContext.check(new Permission<Resource<V>>(Resource.class, "write", resource));
+        return queue.put(storage, resource, value);
+    }
+
+    /**
+     * Waits until all the values written so far have been committed (their futures being completed).
+     */
+    public void flush() {
+        queue.flush();
+    }
+
+    /**
+     * Returns the number of resources whose values are waiting to be committed.
+     * 
+     * @return the number of pending writes (coalesced).
+     */
+    public int getPendingCount() {
+        return queue.pendingCount();
+    }
+
+    /**
+     * Exits this context; if this is the context {@link #enter(int) entered}, waits for the pending writes 
+     * to be committed (subsequent writes through inner contexts are synchronous).
+     */
+    @Override
+    public void exit() {
+        super.exit();
+        if (owner) queue.close();
+    }
+
+    @Override
+    public <T> void setCodec(Class<? extends T> type, Codec<T> codec) {
+        storage.setCodec(type, codec);
+    }
+
+    @Override
+    protected <T> Codec<T> searchCodec(Class<? extends T> type) {
+        return storage.searchCodec(type);
+    }
+
+    @Override
+    protected long lastModified(Resource<?> resource) {
+        return storage.lastModified(resource);
+    }
+
+    @Override
+    protected StorageContext inner() {
+        return new AsyncStorageContext((StorageContext) storage.inner(), queue);
+    }
+
+    /** The queue of pending writes and the thread committing them. */
+    private static final class Queue implements Runnable {
+        final int capacity;
+        Map<String, Pending> pending = new LinkedHashMap<String, Pending>(); // Guarded by this.
+        Map<String, Pending> committing = Collections.emptyMap(); // Guarded by this.
+        long batch = 1; // Number of the next group committed.
+        long committed; // Number of the last group committed.
+        boolean closed;
+        AbstractContext context; // Inherited by the writer thread.
+        Thread writer;
+        Thread shutdownHook;
+
+        Queue(int capacity) {
+            this.capacity = capacity;
+        }
+
+        void start(AbstractContext ctx) {
+            context = ctx;
+            writer = new Thread(this, "StorageWriter");
+            writer.setDaemon(true);
+            writer.start();
+            shutdownHook = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    close();
+                }
+            }, "StorageWriterShutdown");
+            Runtime.getRuntime().addShutdownHook(shutdownHook);
+        }
+
+        synchronized Pending get(String id) {
+            Pending p = pending.get(id);
+            return (p != null) ? p : committing.get(id);
+        }
+
+        synchronized int pendingCount() {
+            return pending.size() + committing.size();
+        }
+
+        @SuppressWarnings({ "unchecked", "rawtypes" })
+        ConcurrentFuture<Void> put(StorageContext target, Resource<?> resource, Serializable value) {
+            String id = resource.uniqueID();
+            synchronized (this) {
+                while (!closed) {
+                    Pending p = pending.get(id);
+                    if (p != null) { // Coalesced.
+                        p.storage = target;
+                        p.resource = resource;
+                        p.value = value;
+                        return p.future;
+                    }
+                    if (pending.size() + committing.size() < capacity) { // Committing values held too.
+                        p = new Pending(target, resource, value);
+                        pending.put(id, p);
+                        if (pending.size() == 1) notifyAll(); // Wakes up writer.
+                        return p.future;
+                    }
+                    await(); // Full.
+                }
+                if (Thread.currentThread() != writer) // Older values not committed after this one.
+                    while (pending.containsKey(id) || committing.containsKey(id))
+                        await();
+            }
+            target.write((Resource) resource, value); // Closed (synchronous).
+            ConcurrentFuture<Void> future = new ConcurrentFuture<Void>();
+            future.complete(null);
+            return future;
+        }
+
+        void await() { // Holding this lock.
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for the storage queue", e);
+            }
+        }
+
+        synchronized void flush() {
+            if (Thread.currentThread() == writer) return; // From a future dependent (cannot wait for itself).
+            long target = committing.isEmpty() ? (pending.isEmpty() ? committed : batch)
+                    : (pending.isEmpty() ? batch : batch + 1); // The pending group follows the one committing.
+            try {
+                while (committed < target)
+                    wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        void close() {
+            synchronized (this) {
+                if (closed) return;
+                closed = true;
+                notifyAll();
+            }
+            if (Thread.currentThread() != writer) {
+                try {
+                    writer.join();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            try {
+                Runtime.getRuntime().removeShutdownHook(shutdownHook);
+            } catch (IllegalStateException e) {
+                // Shutting down.
+            }
+        }
+
+        @Override
+        public void run() {
+            AbstractContext.inherit(context); // Same contexts as the writers.
+            Resource<?>[] resources = new Resource<?>[0];
+            Serializable[] values = new Serializable[0];
+            while (true) {
+                Map<String, Pending> group;
+                synchronized (this) {
+                    while (pending.isEmpty() && !closed)
+                        try {
+                            wait();
+                        } catch (InterruptedException e) {
+                            // Exits when closed.
+                        }
+                    if (pending.isEmpty()) return; // Closed and drained.
+                    committing = group = pending;
+                    pending = new LinkedHashMap<String, Pending>();
+                    notifyAll(); // Room for writers.
+                }
+                int n = group.size();
+                if (resources.length < n) {
+                    resources = new Resource<?>[n];
+                    values = new Serializable[n];
+                }
+                int i = 0;
+                StorageContext target = null;
+                for (Pending p : group.values()) { // Consecutive values of the same context committed together.
+                    if ((p.storage != target) && (i != 0)) {
+                        commit(target, resources, values, i, group);
+                        i = 0;
+                    }
+                    target = p.storage;
+                    resources[i] = p.resource;
+                    values[i++] = p.value;
+                }
+                commit(target, resources, values, i, group);
+                for (Pending p : group.values()) // Before flush returns.
+                    if (p.error == null) p.future.complete(null);
+                    else p.future.completeExceptionally(p.error);
+                synchronized (this) {
+                    committing = Collections.emptyMap();
+                    committed = batch++;
+                    notifyAll();
+                }
+            }
+        }
+
+        /** Commits the specified values with the codecs of the context they have been written through. */
+        private void commit(StorageContext target, Resource<?>[] resources, Serializable[] values, int n,
+                Map<String, Pending> group) {
+            try {
+                target.commit(resources, values, n);
+            } catch (Throwable e) {
+                LogContext.error(e, "Asynchronous storage write failed");
+                for (int i = 0; i < n; i++)
+                    group.get(resources[i].uniqueID()).error = e;
+            }
+            for (int i = 0; i < n; i++) { // No reference retained.
+                resources[i] = null;
+                values[i] = null;
+            }
+        }
+    }
+
+    /** A pending write (coalesced). */
+    private static final class Pending {
+        final ConcurrentFuture<Void> future = new ConcurrentFuture<Void>();
+        StorageContext storage; // The storage context written through (codecs).
+        Resource<?> resource;
+        Serializable value;
+        Throwable error;
+
+        Pending(StorageContext storage, Resource<?> resource, Serializable value) {
+            this.storage = storage;
+            this.resource = resource;
+            this.value = value;
+        }
+    }
+
+}
@@ -0,0 +1,270 @@
+/*
+ * Javolution - Java(TM) Solution for Real-Time and Embedded Systems
+ * Copyright (C) 2012 - Javolution (http://javolution.org/)
+ * All rights reserved.
+ * 
+ * Permission to use, copy, modify, and distribute this software is
+ * freely granted, provided that this notice is preserved.
+ */
+package org.javolution.context;
+
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.javolution.context.SecurityContext.Permission;
+
+/**
+ * A storage context keeping the values read from the current storage context in memory (read-through cache).
+ * 
+ * ```java
+ * CachedStorageContext ctx = CachedStorageContext.enter(1000); // Caches up to 1000 resource values.
+ * try {
+ *     ...
+ *     Configuration config = StorageContext.enter().read(configId); // Deserialized only once.
+ *     ...
+ *     LogContext.info("Configuration hits: ", ctx.getHitCount(configId), ", misses: ", ctx.getMissCount(configId));
+ * } finally {
+ *     ctx.exit(); 
+ * }
+ * ```
+ * 
+ * The least recently used values are evicted when the cache is full. Values are invalidated when written 
+ * through this context or when the {@link StorageContext#lastModified modification stamp} of the resource 
+ * changes (e.g. resource file modified by another process). With the {@link StorageContext.Engine#MAPPED_LOG 
+ * MAPPED_LOG} engine, the stamp only changes with the writes of this process (the log is locked, external 
+ * modifications are not detected). Since the same instances are returned to all readers, the values read 
+ * should not be modified.
+ * 
+ * Codecs are inherited from the storage context cached; codecs set through this context (or its inner 
+ * contexts) apply only to them. Inner contexts share the same cache.
+ * 
+ * @author  <a href="mailto:jean-marie@dautelle.com">Jean-Marie Dautelle</a>
+ * @version 7.0, October 18, 2026
+ */
+public final class CachedStorageContext extends StorageContext {
+
+    private final StorageContext storage; // Inner context of the storage context cached (own codecs).
+    private final Cache cache;
+
+    private CachedStorageContext(StorageContext storage, Cache cache) {
+        this.storage = storage;
+        this.cache = cache;
+    }
+
+    /**
+     * Enters a context caching up to the specified number of values read from the current storage context.
+     * 
+     * @param capacity the maximum number of values cached.
+     * @return the caching context entered.
+     * @throws IllegalArgumentException if the specified capacity is negative.
+     */
+    public static CachedStorageContext enter(int capacity) {
+        if (capacity < 0) throw new IllegalArgumentException("Negative capacity: " + capacity);
+        CachedStorageContext ctx = new CachedStorageContext(currentStorageContext(), new Cache(capacity));
+        return (CachedStorageContext) ctx.enterInner();
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public <V extends Serializable> V read(Resource<V> resource) throws SecurityException {
+        SecurityContext.check(new Permission<Resource<V>>(Resource.class, "read", resource));
+        String id = resource.uniqueID();
+        long stamp = storage.lastModified(resource);
+        Entry entry;
+        long writes;
+        synchronized (cache) {
+            entry = cache.get(id);
+            writes = cache.writeCount;
+        }
+        if ((entry != null) && (entry.value != INVALID) && (entry.stamp == stamp)) {
+            entry.counters.hits.increment();
+            cache.hits.increment();
+            return (V) entry.value;
+        }
+        cache.misses.increment();
+        V value = storage.read(resource);
+        synchronized (cache) {
+            Entry current = cache.get(id);
+            Counters counters = (current != null) ? current.counters : new Counters();
+            counters.misses.increment();
+            if (cache.writeCount == writes) { // No concurrent write.
+                cache.put(id, new Entry(value, stamp, counters));
+            } else if (current == null) { // Counters kept, value not.
+                cache.put(id, new Entry(INVALID, stamp, counters));
+            }
+        }
+        return value;
+    }
+
+    @Override
+    public <V extends Serializable> void write(Resource<V> resource, V value) throws SecurityException {
+        try {
+            storage.write(resource, value);
+        } finally {
+            synchronized (cache) {
+                cache.writeCount++;
+                Entry entry = cache.get(resource.uniqueID());
+                if (entry != null) cache.put(resource.uniqueID(), new Entry(INVALID, 0, entry.counters));
+            }
+        }
+    }
+
+    /**
+     * Removes all the values cached (and their hit/miss counts).
+     */
+    public void clear() {
+        synchronized (cache) {
+            cache.writeCount++;
+            cache.clear();
+        }
+    }
+
+    /**
+     * Returns the maximum number of values cached.
+     * 
+     * @return the capacity of the cache.
+     */
+    public int getCapacity() {
+        return cache.capacity;
+    }
+
+    /**
+     * Returns the number of values currently cached.
+     * 
+     * @return the size of the cache.
+     */
+    public int size() {
+        synchronized (cache) {
+            int n = 0;
+            for (Entry entry : cache.values())
+                if (entry.value != INVALID) n++;
+            return n;
+        }
+    }
+
+    /**
+     * Returns the number of reads served from the cache.
+     * 
+     * @return the total number of cache hits.
+     */
+    public long getHitCount() {
+        return cache.hits.sum();
+    }
+
+    /**
+     * Returns the number of reads delegated to the storage context cached.
+     * 
+     * @return the total number of cache misses.
+     */
+    public long getMissCount() {
+        return cache.misses.sum();
+    }
+
+    /**
+     * Returns the number of reads of the specified resource served from the cache since the resource 
+     * was last evicted (counts are kept only for the resources cached).
+     * 
+     * @param resource the resource.
+     * @return the number of cache hits for the specified resource.
+     */
+    public long getHitCount(Resource<?> resource) {
+        Counters counters = cache.countersOf(resource.uniqueID());
+        return (counters != null) ? counters.hits.sum() : 0;
+    }
+
+    /**
+     * Returns the number of reads of the specified resource delegated to the storage context cached
+     * since the resource was last evicted (counts are kept only for the resources cached).
+     * 
+     * @param resource the resource.
+     * @return the number of cache misses for the specified resource.
+     */
+    public long getMissCount(Resource<?> resource) {
+        Counters counters = cache.countersOf(resource.uniqueID());
+        return (counters != null) ? counters.misses.sum() : 0;
+    }
+
+    @Override
+    public <T> void setCodec(Class<? extends T> type, Codec<T> codec) {
+        storage.setCodec(type, codec);
+    }
+
+    @Override
+    protected <T> Codec<T> searchCodec(Class<? extends T> type) {
+        return storage.searchCodec(type);
+    }
+
+    @Override
+    protected long lastModified(Resource<?> resource) {
+        return storage.lastModified(resource);
+    }
+
+    @Override
+    protected StorageContext inner() {
+        return new CachedStorageContext((StorageContext) storage.inner(), cache);
+    }
+
+    /** The value of entries invalidated by a write (their counters are kept until eviction). */
+    private static final Object INVALID = new Object();
+
+    /** The values cached, least recently used first (guarded by itself). */
+    private static final class Cache extends LinkedHashMap<String, Entry> {
+        private static final long serialVersionUID = 0x700L; // Version.
+        final int capacity;
+        final LongAdder hits = new LongAdder();
+        final LongAdder misses = new LongAdder();
+        final HashMap<String, Counters> counters = new HashMap<String, Counters>(); // Of the entries cached.
+        long writeCount; // Incremented on each write (stale values read concurrently are not cached).
+
+        Cache(int capacity) {
+            super(16, 0.75f, true); // Access order.
+            this.capacity = capacity;
+        }
+
+        synchronized Counters countersOf(String id) { // Does not change the access order.
+            return counters.get(id);
+        }
+
+        @Override
+        public Entry put(String id, Entry entry) {
+            counters.put(id, entry.counters);
+            return super.put(id, entry);
+        }
+
+        @Override
+        public void clear() {
+            counters.clear();
+            super.clear();
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+            if (size() <= capacity) return false;
+            counters.remove(eldest.getKey());
+            return true;
+        }
+    }
+
+    /** A value cached. */
+    private static final class Entry {
+        final Object value;
+        final long stamp; // Modification stamp when read.
+        final Counters counters;
+
+        Entry(Object value, long stamp, Counters counters) {
+            this.value = value;
+            this.stamp = stamp;
+            this.counters = counters;
+        }
+    }
+
+    /** The hits/misses of a resource. */
+    private static final class Counters {
+        final LongAdder hits = new LongAdder();
+        final LongAdder misses = new LongAdder();
+    }
+
+}
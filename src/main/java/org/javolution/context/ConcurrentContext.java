@@ -8,17 +8,23 @@
  */
 package org.javolution.context;
 
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntConsumer;
+
 import org.javolution.lang.Configurable;
 import org.javolution.lang.MathLib;
 import org.javolution.osgi.internal.OSGiServices;
+import org.javolution.util.function.Supplier;
 
 /**
  * A context able to take advantage of concurrent algorithms on multi-processors systems.
  *     
  * When a thread enters a concurrent context, it may performs concurrent executions by calling the 
- * {@link #execute(Runnable)} static method. The logic is then executed by a concurrent thread or by the current 
- * thread itself if there is no concurrent thread immediately available (the number of concurrent threads is limited, 
- * see {@link #CONCURRENCY}).
+ * {@link #execute(Runnable)} static method. The logic is then scheduled for execution by a concurrent thread or 
+ * executed by the current thread itself if the concurrency limit is reached (the number of concurrent threads is 
+ * limited, see {@link #CONCURRENCY}). Concurrent threads steal work from each other when idle, and a thread exiting
+ * a concurrent context executes pending logics while waiting; nested (recursive) concurrent contexts are therefore
+ * load-balanced over all the concurrent threads.
  * 
  * ```java
  * ConcurrentContext ctx = ConcurrentContext.enter(); 
@@ -133,6 +139,34 @@ import org.javolution.osgi.internal.OSGiServices;
  * }
  * ```
  *          
+ * Fine-grained logics should be scheduled in bulk using {@link #executeAll(Runnable...)} or 
+ * {@link #parallelFor(int, int, int, IntConsumer)}; the work is then split once and shared among the concurrent 
+ * threads (and the current thread) instead of being handed-off logic per logic.
+ * 
+ * ```java
+ * ConcurrentContext ctx = ConcurrentContext.enter(); 
+ * try { 
+ *    ctx.parallelFor(0, pixels.length, 1024, i -> pixels[i] = filter(pixels[i]));
+ * } finally {
+ *    ctx.exit(); // Waits for all iterations to complete.
+ * }
+ * ```
+ * 
+ * Concurrent executions are scoped: the first error raised cancels the others concurrent logics of the context
+ * (logics not started are skipped, logics running are interrupted) and all the errors are reported upon exit 
+ * (the first one with the others as {@link Throwable#getSuppressed() suppressed} exceptions). 
+ * Executions can also be bounded in time; stragglers are then abandoned (cancelled).
+ * 
+ * ```java
+ * ConcurrentContext ctx = ConcurrentContext.enter(); 
+ * try { 
+ *    for (Shard shard : shards) 
+ *        ctx.execute(() -> results.add(shard.query(request)));
+ * } finally {
+ *    ctx.exit(50, TimeUnit.MILLISECONDS); // Throws CancellationException if shards did not respond in time.
+ * }
+ * ```
+ * 
  * Concurrency can be adjusted or disabled. The default concurrency is defined by the {@link #CONCURRENCY} configurable. 
  * 
  * ```java
@@ -153,7 +187,9 @@ public abstract class ConcurrentContext extends AbstractContext {
     /**
      * Holds the maximum concurrency (default: `Runtime.getRuntime().availableProcessors() - 1`).
      * The maximum concurrency is configurable. 
-     * For example, the JVM option `-Djavolution.context.ConcurrentContext#CONCURRENCY=0` disables concurrency. 
+     * For example, the JVM option `-Dorg.javolution.context.ConcurrentContext#CONCURRENCY=0` disables concurrency. 
+     * The maximum concurrency can also be reconfigured at runtime (e.g. when the CPU quota of the container 
+     * changes), in which case the workers of the default concurrent context are started or retired accordingly.
      */
     public static final Configurable<Integer> CONCURRENCY = new Configurable<Integer>() {
         @Override
@@ -161,6 +197,16 @@ public abstract class ConcurrentContext extends AbstractContext {
             return Runtime.getRuntime().availableProcessors() - 1;
         }
 
+        @Override
+        public String getName() {
+            return ConcurrentContext.class.getName() + "#CONCURRENCY";
+        }
+
+        @Override
+        protected Integer parse(String str) {
+            return Integer.valueOf(str);
+        }
+
         @Override
         protected Integer initialized(Integer value) {
             return MathLib.min(value, 65536); // Hard-limiting
@@ -168,8 +214,59 @@ public abstract class ConcurrentContext extends AbstractContext {
 
         @Override
         protected Integer reconfigured(Integer oldCount, Integer newCount) {
-            throw new UnsupportedOperationException(
-                    "Concurrency reconfiguration not supported.");
+            int count = MathLib.max(0, MathLib.min(newCount, 65536)); // Hard-limiting
+            if (!VIRTUAL_THREADS.get()) OSGiServices.getConcurrentContext().setConcurrency(count); // Root.
+            return count;
+        }
+    };
+
+    /**
+     * Indicates if each concurrent logic should be executed on its own virtual thread (default `false`).
+     * Virtual threads are well suited for blocking (I/O-bound) logics such as remote calls fan-out, 
+     * in which case thousands of logics may execute concurrently (JDK 21+, platform threads are used
+     * on earlier runtimes). This setting is ignored if a {@link ConcurrentContext} OSGi service is published.
+     * For example, the JVM option `-Dorg.javolution.context.ConcurrentContext#VIRTUAL_THREADS=true` enables
+     * virtual threads.
+     */
+    public static final Configurable<Boolean> VIRTUAL_THREADS = new Configurable<Boolean>() {
+        @Override
+        protected Boolean getDefault() {
+            return false;
+        }
+
+        @Override
+        public String getName() {
+            return ConcurrentContext.class.getName() + "#VIRTUAL_THREADS";
+        }
+
+        @Override
+        protected Boolean parse(String str) {
+            return Boolean.valueOf(str);
+        }
+    };
+
+    /**
+     * Indicates if the concurrent threads are placed according to the NUMA topology of the platform 
+     * (default `false`). When set, the concurrent threads are grouped per NUMA node and pinned to the node's 
+     * CPUs when supported (Linux); logics executed {@link #execute(Runnable, int) with the same affinity} 
+     * are then processed on the same node. 
+     * For example, the JVM option `-Dorg.javolution.context.ConcurrentContext#NUMA_AWARE=true` enables 
+     * NUMA placement.
+     */
+    public static final Configurable<Boolean> NUMA_AWARE = new Configurable<Boolean>() {
+        @Override
+        protected Boolean getDefault() {
+            return false;
+        }
+
+        @Override
+        public String getName() {
+            return ConcurrentContext.class.getName() + "#NUMA_AWARE";
+        }
+
+        @Override
+        protected Boolean parse(String str) {
+            return Boolean.valueOf(str);
         }
     };
 
@@ -218,6 +315,49 @@ public abstract class ConcurrentContext extends AbstractContext {
         }
     }
 
+    /**
+     * Submits the specified computation for asynchronous execution by the concurrent threads of the current 
+     * concurrent context (or the default concurrent context if none) and returns its future result. 
+     * Unlike {@link #execute(Runnable)} no context has to be entered/exited; the computation executes within 
+     * the {@link AbstractContext context} of the current thread and any exception or error is reported by the 
+     * returned future.
+     * 
+     * ```java
+     * ConcurrentFuture<Quote> a = ConcurrentContext.submit(() -> providerA.quote(order));
+     * ConcurrentFuture<Quote> b = ConcurrentContext.submit(() -> providerB.quote(order));
+     * Quote best = a.thenCombine(b, Quote::best).join();
+     * ```
+     * 
+     * @param <T> the type of the result.
+     * @param computation the computation to execute asynchronously.
+     * @return the future result of the computation.
+     */
+    public static <T> ConcurrentFuture<T> submit(Supplier<? extends T> computation) {
+        ConcurrentContext ctx = current(ConcurrentContext.class);
+        if (ctx == null) { // Root.
+            ctx = OSGiServices.getConcurrentContext();
+        }
+        return ctx.async(computation);
+    }
+
+    /**
+     * Schedules the specified computation for asynchronous execution (see {@link #submit}). The default 
+     * implementation performs the computation immediately (current thread).
+     * 
+     * @param <T> the type of the result.
+     * @param computation the computation to execute asynchronously.
+     * @return the future result of the computation.
+     */
+    protected <T> ConcurrentFuture<T> async(Supplier<? extends T> computation) {
+        ConcurrentFuture<T> future = new ConcurrentFuture<T>();
+        try {
+            future.complete(computation.get());
+        } catch (Throwable error) {
+            future.completeExceptionally(error);
+        }
+        return future;
+    }
+
     /**
      * Executes the specified logic by a concurrent thread if one available; otherwise the logic is executed by 
      * the current thread. Any exception or error occurring during the concurrent execution is propagated to 
@@ -227,14 +367,72 @@ public abstract class ConcurrentContext extends AbstractContext {
      */
     public abstract void execute(Runnable logic);
 
+    /**
+     * Executes the specified logic concurrently with the specified affinity hint. Logics with the same affinity 
+     * are preferably executed by the same group of concurrent threads (e.g. on the same {@link #NUMA_AWARE NUMA}
+     * node); for example the i<sup>th</sup> partition of a {@link org.javolution.util.AbstractCollection#trySplit 
+     * split} collection can be processed with the affinity `i` so that it is always processed close to the memory
+     * it has been first touched with. The default implementation ignores the affinity.
+     * 
+     * @param logic the logic to be executed concurrently when possible.
+     * @param affinity the affinity hint (positive).
+     */
+    public void execute(Runnable logic, int affinity) {
+        execute(logic);
+    }
+
+    /**
+     * Executes the specified logics concurrently if possible (bulk scheduling). As for {@link #execute(Runnable)}
+     * the logics are all completed upon exit of this context and any exception or error is propagated then.
+     * Implementations should avoid a thread hand-off per logic (e.g. concurrent threads claim logics from the
+     * shared array); the default implementation calls {@link #execute(Runnable)} for each logic.
+     * 
+     * @param logics the logics to be executed concurrently when possible.
+     */
+    public void executeAll(Runnable... logics) {
+        for (Runnable logic : logics)
+            execute(logic);
+    }
+
+    /**
+     * Executes the specified action for each index in the range `[from, to)` concurrently if possible.
+     * The range is split in chunks of `grain` indices; chunks are executed by the concurrent threads and 
+     * by the current thread (which returns when there is no more chunk to start). All the iterations are 
+     * completed upon exit of this context and any exception or error is propagated then.
+     * 
+     * @param from the first index (inclusive).
+     * @param to the last index (exclusive).
+     * @param grain the minimum number of consecutive indices executed by the same thread 
+     *        (chunks should take at least a few microseconds to execute).
+     * @param action the action to execute for each index.
+     */
+    public void parallelFor(int from, int to, int grain, IntConsumer action) {
+        grain = MathLib.max(1, grain);
+        for (int start = from; start < to; start = (to - start > grain) ? start + grain : to)
+            execute(new RangeLogic(start, (to - start > grain) ? start + grain : to, action));
+    }
+
     /**
      * Sets the maximum concurrency. Setting a value greater than the {@link #getConcurrency() current concurrency} 
-     * has no effect (concurrency can only be reduced).
+     * has no effect (concurrency can only be reduced), except for root contexts (not entered) for which
+     * the number of concurrent threads is adjusted (e.g. the root context being resized when 
+     * {@link #CONCURRENCY} is reconfigured).
      * 
      * @param concurrency number of concurrent threads authorised
      */
     public abstract void setConcurrency(int concurrency);
 
+    /**
+     * Returns a snapshot of the activity of the concurrent threads of this context (shared with its outer 
+     * and inner concurrent contexts). The default implementation returns metrics with no activity.
+     * 
+     * @return the concurrency metrics.
+     */
+    public ConcurrentMetrics getMetrics() {
+        return new ConcurrentMetrics(getConcurrency(), new long[0], new double[0], 0, 0, 0,
+                new long[ConcurrentMetrics.getJoinWaitBounds().length + 1]);
+    }
+
     /**
      * Returns the current concurrency which is basically the number of concurrent threads authorised 
      * to do concurrent work (on top of all others threads of course).
@@ -254,4 +452,48 @@ public abstract class ConcurrentContext extends AbstractContext {
     public void exit() { // Redefine here for documentation purpose.
         super.exit();
     }
+
+    /**
+     * Exits the scope of this concurrent context; this method blocks until all the concurrent executions are 
+     * completed or the specified timeout has elapsed, in which case the executions not completed are 
+     * {@link #cancel() cancelled} and abandoned. The default implementation ignores the timeout.
+     * 
+     * @param timeout the maximum time to wait.
+     * @param unit the time unit of the timeout argument.
+     * @throws java.util.concurrent.CancellationException if the timeout has elapsed (any error raised during 
+     *         concurrent executions is added as suppressed exception).
+     * @throws RuntimeException re-exports any exception raised during concurrent executions.
+     * @throws Error re-exports any error raised during concurrent executions.
+     * @throws IllegalStateException if this context is not the current context.
+     */
+    public void exit(long timeout, TimeUnit unit) {
+        exit();
+    }
+
+    /**
+     * Cancels the concurrent executions of this context: logics not started yet are skipped, logics being 
+     * executed are interrupted and further calls to {@link #execute(Runnable)} have no effect. 
+     * This method is called automatically when a concurrent logic raises an error. 
+     * The default implementation does nothing.
+     */
+    public void cancel() {}
+
+    /** A chunk of a parallel for loop (default implementation). */
+    private static final class RangeLogic implements Runnable {
+        private final int from;
+        private final int to;
+        private final IntConsumer action;
+
+        RangeLogic(int from, int to, IntConsumer action) {
+            this.from = from;
+            this.to = to;
+            this.action = action;
+        }
+
+        @Override
+        public void run() {
+            for (int i = from; i < to; i++)
+                action.accept(i);
+        }
+    }
 }
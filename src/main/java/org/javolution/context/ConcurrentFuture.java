@@ -0,0 +1,345 @@
+/*
+ * Javolution - Java(TM) Solution for Real-Time and Embedded Systems
+ * Copyright (C) 2012 - Javolution (http://javolution.org/)
+ * All rights reserved.
+ *
+ * Permission to use, copy, modify, and distribute this software is
+ * freely granted, provided that this notice is preserved.
+ */
+package org.javolution.context;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+
+import org.javolution.util.function.Function;
+
+/**
+ * The result of an asynchronous computation {@link ConcurrentContext#submit submitted} to a concurrent context.
+ *
+ * Unlike {@link ConcurrentContext#execute(Runnable) concurrent executions} which are joined upon
+ * {@link ConcurrentContext#exit() exit}, futures can be chained; dependent stages are executed as soon as
+ * their inputs are available (by the thread completing the last input) so that pipelines of dependent
+ * computations overlap.
+ *
+ * ```java
+ * ConcurrentFuture<Image> image = ConcurrentContext.submit(() -> loadImage(file));
+ * ConcurrentFuture<Profile> profile = ConcurrentContext.submit(() -> loadProfile(file));
+ * ConcurrentFuture<Image> result = image.thenCombine(profile, (img, p) -> p.apply(img)).thenApply(Image::scale);
+ * ...
+ * display(result.join()); // Or result.toCompletableFuture() to interoperate with CompletableFuture API.
+ * ```
+ *
+ * As for concurrent executions, dependent stages execute within the {@link AbstractContext context} of the
+ * thread which has created them (e.g. the {@link LocalContext local settings} at the time
+ * {@link #thenApply thenApply} is called).
+ *
+ * @param <T> the type of the result.
+ *
+ * @author <a href="mailto:jean-marie@dautelle.com">Jean-Marie Dautelle</a>
+ * @version 7.0, October 18, 2026
+ */
+public class ConcurrentFuture<T> {
+
+    private static final Object NONE = new Object(); // Not completed.
+
+    private volatile Object result = NONE; // The value or the Failure.
+    private Dependent dependents; // Guarded by this.
+
+    /**
+     * Creates a future not completed.
+     */
+    public ConcurrentFuture() {}
+
+    /**
+     * Returns a future completed when the specified completion stage completes (e.g. a {@link CompletableFuture}).
+     *
+     * @param <T> the type of the result.
+     * @param stage the completion stage.
+     * @return the corresponding future.
+     */
+    public static <T> ConcurrentFuture<T> of(CompletionStage<? extends T> stage) {
+        final ConcurrentFuture<T> future = new ConcurrentFuture<T>();
+        stage.whenComplete(new BiConsumer<T, Throwable>() {
+            @Override
+            public void accept(T value, Throwable error) {
+                if (error == null) {
+                    future.complete(value);
+                } else {
+                    future.completeExceptionally(((error instanceof CompletionException)
+                            && (error.getCause() != null)) ? error.getCause() : error);
+                }
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Completes this future with the specified value (if not already completed).
+     *
+     * @param value the result value.
+     * @return `true` if this call caused this future to complete; `false` otherwise.
+     */
+    public boolean complete(T value) {
+        return set(value);
+    }
+
+    /**
+     * Completes this future with the specified error (if not already completed).
+     *
+     * @param error the error raised by the computation.
+     * @return `true` if this call caused this future to complete; `false` otherwise.
+     */
+    public boolean completeExceptionally(Throwable error) {
+        return set(new Failure(error));
+    }
+
+    /**
+     * Indicates if this future is completed (normally or exceptionally).
+     *
+     * @return `true` if completed; `false` otherwise.
+     */
+    public boolean isDone() {
+        return result != NONE;
+    }
+
+    /**
+     * Waits if necessary for this future to complete and returns its result. Concurrent logics should
+     * avoid blocking (waiting for others logics to complete); dependent stages should be used instead.
+     * Futures {@link ConcurrentContext#submit submitted} to a concurrent context are computed by the
+     * joining thread if their computation has not started yet, and concurrent threads joining execute
+     * pending logics while waiting (no deadlock if all the concurrent threads are joining).
+     *
+     * @return the result value.
+     * @throws RuntimeException re-exports any exception raised during the computation.
+     * @throws Error re-exports any error raised during the computation.
+     */
+    @SuppressWarnings("unchecked")
+    public T join() {
+        Object r = result;
+        if (r == NONE) {
+            boolean interrupted = false;
+            while ((r = result) == NONE) {
+                try {
+                    await();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) Thread.currentThread().interrupt();
+        }
+        if (!(r instanceof Failure)) return (T) r;
+        Throwable error = ((Failure) r).error;
+        if (error instanceof RuntimeException) throw (RuntimeException) error;
+        if (error instanceof Error) throw (Error) error;
+        throw new RuntimeException(error);
+    }
+
+    /**
+     * Waits for this future to complete (called by {@link #join} while this future is not completed).
+     * Sub-classes may override this method to execute pending work instead of blocking.
+     *
+     * @throws InterruptedException if the current thread is interrupted while waiting.
+     */
+    protected void await() throws InterruptedException {
+        await(0);
+    }
+
+    /**
+     * Waits at most the specified time for this future to complete.
+     *
+     * @param millis the maximum time to wait in milliseconds ({@code 0} to wait until completion).
+     * @throws InterruptedException if the current thread is interrupted while waiting.
+     */
+    protected final void await(long millis) throws InterruptedException {
+        synchronized (this) {
+            if (result == NONE) wait(millis);
+        }
+    }
+
+    /**
+     * Returns a future holding the result of the specified function applied to this future result.
+     *
+     * @param <R> the type of the new result.
+     * @param function the function to apply.
+     * @return the future result.
+     */
+    public <R> ConcurrentFuture<R> thenApply(final Function<? super T, ? extends R> function) {
+        final ConcurrentFuture<R> future = new ConcurrentFuture<R>();
+        onCompletion(new Dependent() {
+            @SuppressWarnings("unchecked")
+            @Override
+            void apply() {
+                Object r = result;
+                if (r instanceof Failure) {
+                    future.set(r);
+                } else {
+                    future.complete(function.apply((T) r));
+                }
+            }
+
+            @Override
+            void failed(Throwable error) {
+                future.completeExceptionally(error);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Returns a future holding the result of the specified function applied to this future result and
+     * the other future result (when both are completed).
+     *
+     * @param <U> the type of the other result.
+     * @param <R> the type of the new result.
+     * @param other the other future.
+     * @param function the function to apply (JDK type, the library has no two-parameters function).
+     * @return the future result.
+     */
+    public <U, R> ConcurrentFuture<R> thenCombine(final ConcurrentFuture<? extends U> other,
+            final BiFunction<? super T, ? super U, ? extends R> function) {
+        final ConcurrentFuture<R> future = new ConcurrentFuture<R>();
+        onCompletion(new Dependent() {
+            @Override
+            void apply() {
+                other.onCompletion(new Dependent() {
+                    @SuppressWarnings("unchecked")
+                    @Override
+                    void apply() {
+                        Object r1 = result;
+                        Object r2 = other.result;
+                        if (r1 instanceof Failure) {
+                            future.set(r1);
+                        } else if (r2 instanceof Failure) {
+                            future.set(r2);
+                        } else {
+                            future.complete(function.apply((T) r1, (U) r2));
+                        }
+                    }
+
+                    @Override
+                    void failed(Throwable error) {
+                        future.completeExceptionally(error);
+                    }
+                });
+            }
+
+            @Override
+            void failed(Throwable error) {
+                future.completeExceptionally(error);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Returns a {@link CompletableFuture} completed when this future completes.
+     *
+     * @return the corresponding completable future.
+     */
+    public CompletableFuture<T> toCompletableFuture() {
+        final CompletableFuture<T> future = new CompletableFuture<T>();
+        onCompletion(new Dependent() {
+            @SuppressWarnings("unchecked")
+            @Override
+            void apply() {
+                Object r = result;
+                if (r instanceof Failure) {
+                    future.completeExceptionally(((Failure) r).error);
+                } else {
+                    future.complete((T) r);
+                }
+            }
+
+            @Override
+            void failed(Throwable error) {
+                future.completeExceptionally(error);
+            }
+        });
+        return future;
+    }
+
+    @Override
+    public String toString() {
+        Object r = result;
+        return super.toString() + ((r == NONE) ? "[Not completed]"
+                : (r instanceof Failure) ? "[Completed exceptionally: " + ((Failure) r).error + "]"
+                        : "[Completed normally]");
+    }
+
+    /** Sets the result and executes the dependents. */
+    private boolean set(Object r) {
+        Dependent list;
+        synchronized (this) {
+            if (result != NONE) return false;
+            result = r;
+            list = dependents;
+            dependents = null;
+            notifyAll();
+        }
+        for (Dependent d = reverse(list); d != null; d = d.next)
+            d.run(); // In registration order.
+        return true;
+    }
+
+    /** Registers the specified dependent, it is executed immediately if this future is completed. */
+    private void onCompletion(Dependent dependent) {
+        if (result == NONE) {
+            synchronized (this) {
+                if (result == NONE) {
+                    dependent.next = dependents;
+                    dependents = dependent;
+                    return;
+                }
+            }
+        }
+        dependent.run();
+    }
+
+    private static Dependent reverse(Dependent list) {
+        Dependent reversed = null;
+        while (list != null) {
+            Dependent next = list.next;
+            list.next = reversed;
+            reversed = list;
+            list = next;
+        }
+        return reversed;
+    }
+
+    /** A dependent stage executing within the context of the thread which has created it. */
+    private static abstract class Dependent {
+        private final AbstractContext inherited = AbstractContext.current();
+        Dependent next;
+
+        /** Executes this dependent (the future it depends upon is completed). */
+        abstract void apply();
+
+        /** Reports an error raised by this dependent. */
+        abstract void failed(Throwable error);
+
+        final void run() {
+            AbstractContext previous = AbstractContext.current();
+            try {
+                AbstractContext.inherit(inherited);
+                apply();
+            } catch (Throwable error) {
+                failed(error);
+            } finally {
+                AbstractContext.inherit(previous);
+            }
+        }
+    }
+
+    /** Holds the error of a future completed exceptionally. */
+    private static final class Failure {
+        final Throwable error;
+
+        Failure(Throwable error) {
+            this.error = error;
+        }
+    }
+
+}
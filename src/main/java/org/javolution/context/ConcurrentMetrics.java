@@ -0,0 +1,195 @@
+/*
+ * Javolution - Java(TM) Solution for Real-Time and Embedded Systems
+ * Copyright (C) 2012 - Javolution (http://javolution.org/)
+ * All rights reserved.
+ *
+ * Permission to use, copy, modify, and distribute this software is
+ * freely granted, provided that this notice is preserved.
+ */
+package org.javolution.context;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * A snapshot of the activity of the concurrent threads (workers) of a {@link ConcurrentContext}, 
+ * intended to size the {@link ConcurrentContext#CONCURRENCY concurrency} from data.
+ * 
+ * ```java
+ * ConcurrentMetrics metrics = ConcurrentContext.enter().getMetrics(); ... 
+ * if (metrics.getInlineRatio() > 0.5) ... // Workers are saturated (logics executed by the calling threads).
+ * ```
+ * 
+ * The same information is available through JMX (`org.javolution:type=ConcurrentContext` MBean).
+ * 
+ * @author <a href="mailto:jean-marie@dautelle.com">Jean-Marie Dautelle</a>
+ * @version 7.0, October 18, 2026
+ */
+public final class ConcurrentMetrics implements Serializable {
+
+    private static final long serialVersionUID = 0x700L; // Version.
+
+    /**
+     * Holds the upper bounds (inclusive, in nanoseconds) of the join wait histogram buckets; the last bucket 
+     * holds the waits greater than the last bound (1 µs, 4 µs, 16 µs, ..., 1 s).
+     */
+    private static final long[] JOIN_WAIT_BOUNDS = { 1000L, 4000L, 16000L, 64000L, 256000L, 1000000L, 4000000L,
+            16000000L, 64000000L, 256000000L, 1000000000L };
+
+    private final int concurrency;
+    private final long[] executedCounts;
+    private final double[] utilizations;
+    private final long scheduledCount;
+    private final long inlineCount;
+    private final int queueDepth;
+    private final long[] joinWaits;
+
+    /**
+     * Creates a snapshot (implementations).
+     * 
+     * @param concurrency the concurrency of the context.
+     * @param executedCounts the number of logics executed by each worker.
+     * @param utilizations the ratio of time each worker has been busy since it started.
+     * @param scheduledCount the number of logics scheduled for concurrent execution.
+     * @param inlineCount the number of logics executed by the calling thread (workers saturated).
+     * @param queueDepth the number of logics waiting to be executed.
+     * @param joinWaits the join wait histogram (see {@link #getJoinWaitBounds()}).
+     */
+    public ConcurrentMetrics(int concurrency, long[] executedCounts, double[] utilizations, long scheduledCount,
+            long inlineCount, int queueDepth, long[] joinWaits) {
+        this.concurrency = concurrency;
+        this.executedCounts = executedCounts.clone();
+        this.utilizations = utilizations.clone();
+        this.scheduledCount = scheduledCount;
+        this.inlineCount = inlineCount;
+        this.queueDepth = queueDepth;
+        this.joinWaits = joinWaits.clone();
+    }
+
+    /**
+     * Returns the join wait histogram bucket of the specified wait time.
+     * 
+     * @param nanos the wait time in nanoseconds.
+     * @return the corresponding index in the join wait histogram.
+     */
+    public static int joinWaitBucket(long nanos) {
+        for (int i = 0; i < JOIN_WAIT_BOUNDS.length; i++)
+            if (nanos <= JOIN_WAIT_BOUNDS[i]) return i;
+        return JOIN_WAIT_BOUNDS.length;
+    }
+
+    /**
+     * Returns the upper bounds (inclusive, in nanoseconds) of the join wait histogram buckets; the histogram 
+     * has one more bucket for the waits above the last bound.
+     * 
+     * @return the buckets upper bounds.
+     */
+    public static long[] getJoinWaitBounds() {
+        return JOIN_WAIT_BOUNDS.clone();
+    }
+
+    /** 
+     * Returns the concurrency of the context.
+     * 
+     * @return the maximum number of concurrent threads.
+     */
+    public int getConcurrency() {
+        return concurrency;
+    }
+
+    /** 
+     * Returns the number of logics executed by each worker.
+     * 
+     * @return the logics executed per worker.
+     */
+    public long[] getExecutedCounts() {
+        return executedCounts.clone();
+    }
+
+    /** 
+     * Returns the ratio of time each worker has been busy (executing logics) since it started.
+     * 
+     * @return the utilization (between {@code 0} and {@code 1}) per worker.
+     */
+    public double[] getUtilizations() {
+        return utilizations.clone();
+    }
+
+    /** 
+     * Returns the average utilization of the workers.
+     * 
+     * @return the utilization (between {@code 0} and {@code 1}).
+     */
+    public double getUtilization() {
+        double sum = 0;
+        for (double utilization : utilizations)
+            sum += utilization;
+        return (utilizations.length != 0) ? sum / utilizations.length : 0;
+    }
+
+    /** 
+     * Returns the number of logics scheduled for concurrent execution.
+     * 
+     * @return the logics handed to concurrent threads.
+     */
+    public long getScheduledCount() {
+        return scheduledCount;
+    }
+
+    /** 
+     * Returns the number of logics executed by the calling thread because no concurrent thread was available.
+     * 
+     * @return the inline fallback count.
+     */
+    public long getInlineCount() {
+        return inlineCount;
+    }
+
+    /** 
+     * Returns the ratio of logics executed by the calling thread because no concurrent thread was available.
+     * 
+     * @return the inline fallback rate (between {@code 0} and {@code 1}).
+     */
+    public double getInlineRatio() {
+        long total = scheduledCount + inlineCount;
+        return (total != 0) ? (double) inlineCount / total : 0;
+    }
+
+    /** 
+     * Returns the number of logics waiting to be executed (approximation).
+     * 
+     * @return the queue depth.
+     */
+    public int getQueueDepth() {
+        return queueDepth;
+    }
+
+    /** 
+     * Returns the histogram of the time spent by threads exiting concurrent contexts (joining).
+     * 
+     * @return the number of joins per {@link #getJoinWaitBounds() bucket}.
+     */
+    public long[] getJoinWaits() {
+        return joinWaits.clone();
+    }
+
+    /** 
+     * Returns the number of concurrent contexts exited (joins).
+     * 
+     * @return the total count of the join wait histogram.
+     */
+    public long getJoinCount() {
+        long count = 0;
+        for (long n : joinWaits)
+            count += n;
+        return count;
+    }
+
+    @Override
+    public String toString() {
+        return "ConcurrentMetrics[concurrency=" + concurrency + ", executed=" + Arrays.toString(executedCounts)
+                + ", utilization=" + Arrays.toString(utilizations) + ", scheduled=" + scheduledCount + ", inline="
+                + inlineCount + ", queueDepth=" + queueDepth + ", joinWaits=" + Arrays.toString(joinWaits) + "]";
+    }
+
+}
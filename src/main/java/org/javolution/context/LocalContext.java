@@ -8,6 +8,8 @@
  */
 package org.javolution.context;
 
+import java.util.concurrent.atomic.AtomicInteger;
+
 import org.javolution.context.SecurityContext.Permission;
 import org.javolution.lang.Configurable;
 import org.javolution.osgi.internal.OSGiServices;
@@ -55,11 +57,21 @@ public abstract class LocalContext extends AbstractContext {
         public static final Permission<Parameter<?>> SUPERSEDE_PERMISSION = new Permission<Parameter<?>>(
                 Parameter.class, "supersede");
 
+        /**
+         * Holds the number of parameters created (ordinal of the next parameter).
+         */
+        private static final AtomicInteger COUNT = new AtomicInteger();
+
         /**
          * Holds this instance supersede permission.
          */
         private final Permission<Parameter<T>> supersedePermission;
 
+        /**
+         * Holds this parameter ordinal (unique index).
+         */
+        private final int ordinal = COUNT.getAndIncrement();
+
         /**
          * Creates a new parameter (configurable).
          */
@@ -82,7 +94,8 @@ public abstract class LocalContext extends AbstractContext {
          */
         public T get() {
             LocalContext ctx = current(LocalContext.class);
-            return (ctx != null) ? ctx.getValue(this, super.get()) : super.get();
+            T value = (ctx != null) ? ctx.getValue(this, null) : null;
+            return (value != null) ? value : super.get();
         }
     }
 
@@ -91,6 +104,17 @@ public abstract class LocalContext extends AbstractContext {
      */
     protected LocalContext() {}
 
+    /**
+     * Returns the ordinal of the specified parameter; parameters are numbered from {@code 0} in order of creation,
+     * which allows implementations to hold local values in arrays indexed by parameter ordinal.
+     * 
+     * @param param the local parameter.
+     * @return the parameter unique index.
+     */
+    protected static int ordinalOf(Parameter<?> param) {
+        return param.ordinal;
+    }
+
     /**
      * Enters a new local context instance.
      * @return the inner local context entered.
@@ -10,6 +10,7 @@ package org.javolution.context;
 
 import org.javolution.lang.Configurable;
 import org.javolution.osgi.internal.OSGiServices;
+import org.javolution.util.function.Supplier;
 
 /**
  * Context sensitive logging supporting various logging frameworks.
@@ -22,6 +23,8 @@ import org.javolution.osgi.internal.OSGiServices;
  * code (it is context dependant) but always performed asynchronously (in a separate thread). 
  * 
  * The default backend is either [OSGi LogService] or [SLF4J Logging Facade] when running outside of an OSGi container.
+ * For high throughput, the default context can also write directly to a {@link #FILE log file} (rolled by size 
+ * or time).
  * 
  * Custom contexts may superceed the default context either through OSGi publication 
  * (`org.javolution.context.LogContext`) or by entering a local context instance.
@@ -50,6 +53,7 @@ import org.javolution.osgi.internal.OSGiServices;
  *     ...
  *     LogContext.debug("Index: " + index + " at maximum value"); // BAD - Formatting performed but nothing is logged.
  *     LogContext.debug("Index: ", index, " at maximum value"); // OK - No formatting performed when debug disabled.
+ *     LogContext.debug(() -> "State: " + dump()); // OK - Supplier called only when debug enabled.
  * } finally {
  *     ctx.exit(); // Exit local settings.
  * }
@@ -58,6 +62,8 @@ import org.javolution.osgi.internal.OSGiServices;
  * LogContext supports [Mapped Diagnostic Context] to debug complex distributed applications. Typically,
  * while starting to service a new client request, the developpper inserts pertinent contextual information
  * such as the client IP address or the client ID. This mapping gets automatically cleared upon context exit.  
+ * The mapping is inherited by inner log contexts (at no cost) and emitted as structured key/value pairs 
+ * (SLF4J MDC, or fields of the {@link #FILE log file} lines).
  * 
  * ```java
  * LogContext ctx = LogContext.enter(); // Enter local inner context.
@@ -87,9 +93,52 @@ public abstract class LogContext extends AbstractContext {
         DEBUG, INFO, WARNING, ERROR, FATAL
     }
 
+    /**
+     * Defines the format of the {@link #FILE log file} lines.
+     */
+    public enum FileFormat {
+        /** `2026-10-18T14:32:05.123Z INFO <message> key=value ...` followed by the error stack trace (if any). */
+        TEXT, 
+        /** `{"time":"2026-10-18T14:32:05.123Z","level":"INFO","message":"...","key":"value",...,"error":"..."}` */
+        JSON
+    }
+
+    /**
+     * Defines when the content of the {@link #FILE log file} is forced to the storage device.
+     */
+    public enum FileForce {
+        /** Never forced (left to the operating system). */
+        NEVER, 
+        /** Forced when the log file is rolled or closed. */
+        ROLL, 
+        /** Forced after each batch of log events written (safest, slowest). */
+        BATCH
+    }
+
+    /**
+     * Defines what happens when a log event is emitted while the logging queue is full (logging storm).
+     */
+    public enum Overflow {
+        /** The logging thread waits until the queue has room for the event (no event lost). */
+        BLOCK, 
+        /** The event is dropped. */
+        DROP_NEWEST, 
+        /** The event is dropped if its level is below the {@link #OVERFLOW_LEVEL overflow level}; otherwise 
+         *  the logging thread waits. */
+        DROP_BELOW_LEVEL, 
+        /** One event out of 64 is kept (the logging thread waits), the others are dropped. */
+        SAMPLE
+    }
+
+    /** 
+     * The lowest level which might be enabled by any log context (the default level, unless lowered by 
+     * reconfiguration or by log contexts not bounded by the default level).
+     */
+    private static volatile Level lowestLevel = Level.DEBUG;
+
     /**
      * Holds the default logging level (<code>INFO</code>). This level is configurable. For example, running with 
-     * the option `-Djavolution.context.LogContext#DEFAULT_LEVEL=WARNING` causes the debug/info not to be logged. 
+     * the option `-Dorg.javolution.context.LogContext#DEFAULT_LEVEL=WARNING` causes the debug/info not to be logged. 
      */
     public static final Configurable<Level> DEFAULT_LEVEL = new Configurable<Level>() {
         @Override
@@ -97,15 +146,201 @@ public abstract class LogContext extends AbstractContext {
             return Level.INFO;
         }
         @Override
+        public String getName() {
+            return LogContext.class.getName() + "#DEFAULT_LEVEL";
+        }
+        @Override
+        public Level parse(String str) {
+            return Level.valueOf(str);
+        }
+        @Override
+        protected Level initialized(Level value) {
+            lowestLevel = value;
+            return value;
+        }
+        @Override
+        protected Level reconfigured(Level oldLevel, Level newLevel) {
+            if (newLevel.compareTo(lowestLevel) < 0) lowestLevel = newLevel; // Inner contexts may keep old levels.
+            return newLevel;
+        }
+    };
+
+    /**
+     * Holds the maximum number of log events waiting to be processed by the default log context 
+     * (default `8192`, rounded up to the next power of two). The memory used by the logging queue is 
+     * proportional to its capacity.
+     * For example, running with the option `-Dorg.javolution.context.LogContext#QUEUE_CAPACITY=65536` 
+     * allows for longer bursts of log events.
+     */
+    public static final Configurable<Integer> QUEUE_CAPACITY = new Configurable<Integer>() {
+        @Override
+        protected Integer getDefault() {
+            return 8192;
+        }
+        @Override
+        public String getName() {
+            return LogContext.class.getName() + "#QUEUE_CAPACITY";
+        }
+        @Override
+        public Integer parse(String str) {
+            return Integer.valueOf(str);
+        }
+        @Override
+        protected Integer reconfigured(Integer oldCapacity, Integer newCapacity) {
+            throw new UnsupportedOperationException(
+                    "Logging queue capacity reconfiguration not supported.");
+        }
+    };
+
+    /**
+     * Holds the policy when the logging queue is full (default {@link Overflow#BLOCK BLOCK}).
+     */
+    public static final Configurable<Overflow> OVERFLOW = new Configurable<Overflow>() {
+        @Override
+        protected Overflow getDefault() {
+            return Overflow.BLOCK;
+        }
+        @Override
+        public String getName() {
+            return LogContext.class.getName() + "#OVERFLOW";
+        }
+        @Override
+        public Overflow parse(String str) {
+            return Overflow.valueOf(str);
+        }
+    };
+
+    /**
+     * Holds the level below which log events are dropped when the logging queue is full and the overflow 
+     * policy is {@link Overflow#DROP_BELOW_LEVEL DROP_BELOW_LEVEL} (default {@link Level#WARNING WARNING}).
+     */
+    public static final Configurable<Level> OVERFLOW_LEVEL = new Configurable<Level>() {
+        @Override
+        protected Level getDefault() {
+            return Level.WARNING;
+        }
+        @Override
+        public String getName() {
+            return LogContext.class.getName() + "#OVERFLOW_LEVEL";
+        }
+        @Override
         public Level parse(String str) {
             return Level.valueOf(str);
         }
     };
+
+    /**
+     * Holds the path of the file the default log context writes to (default: none). Log events are written 
+     * in batches through a direct byte buffer (high throughput) instead of being forwarded to SLF4J 
+     * (OSGi log services still receive the log events). For example, running with the option 
+     * `-Dorg.javolution.context.LogContext#FILE=/var/log/server.log` logs to the specified file.
+     */
+    public static final Configurable<String> FILE = new Configurable<String>() {
+        @Override
+        protected String getDefault() {
+            return "";
+        }
+        @Override
+        public String getName() {
+            return LogContext.class.getName() + "#FILE";
+        }
+        @Override
+        public String parse(String str) {
+            return str.trim();
+        }
+    };
+
+    /**
+     * Holds the format of the {@link #FILE log file} lines (default {@link FileFormat#TEXT TEXT}).
+     */
+    public static final Configurable<FileFormat> FILE_FORMAT = new Configurable<FileFormat>() {
+        @Override
+        protected FileFormat getDefault() {
+            return FileFormat.TEXT;
+        }
+        @Override
+        public String getName() {
+            return LogContext.class.getName() + "#FILE_FORMAT";
+        }
+        @Override
+        public FileFormat parse(String str) {
+            return FileFormat.valueOf(str);
+        }
+    };
+
+    /**
+     * Holds the size in bytes at which the {@link #FILE log file} is rolled (default 100 MB, `0` for no size limit).
+     */
+    public static final Configurable<Long> FILE_ROLLING_SIZE = new Configurable<Long>() {
+        @Override
+        protected Long getDefault() {
+            return 100L * 1024 * 1024;
+        }
+        @Override
+        public String getName() {
+            return LogContext.class.getName() + "#FILE_ROLLING_SIZE";
+        }
+        @Override
+        public Long parse(String str) {
+            return Long.valueOf(str);
+        }
+    };
+
+    /**
+     * Holds the period in milliseconds at the end of which the {@link #FILE log file} is rolled (default `0`, 
+     * no time-based rolling). Periods are aligned on UTC time (e.g. `86400000` rolls at midnight UTC). 
+     */
+    public static final Configurable<Long> FILE_ROLLING_PERIOD = new Configurable<Long>() {
+        @Override
+        protected Long getDefault() {
+            return 0L;
+        }
+        @Override
+        public String getName() {
+            return LogContext.class.getName() + "#FILE_ROLLING_PERIOD";
+        }
+        @Override
+        public Long parse(String str) {
+            return Long.valueOf(str);
+        }
+    };
+
+    /**
+     * Holds the policy to force the {@link #FILE log file} content to the storage device (default 
+     * {@link FileForce#ROLL ROLL}).
+     */
+    public static final Configurable<FileForce> FILE_FORCE = new Configurable<FileForce>() {
+        @Override
+        protected FileForce getDefault() {
+            return FileForce.ROLL;
+        }
+        @Override
+        public String getName() {
+            return LogContext.class.getName() + "#FILE_FORCE";
+        }
+        @Override
+        public FileForce parse(String str) {
+            return FileForce.valueOf(str);
+        }
+    };
     
     /**
-     * Default constructor.
+     * Default constructor (the level of this context may be below the {@link #DEFAULT_LEVEL default level}).
+     */
+    protected LogContext() {
+        this(false);
+    }
+
+    /**
+     * Creates a log context whose level may or may not be below the {@link #DEFAULT_LEVEL default level}. 
+     * As long as all the log contexts are bounded, messages below the default level are discarded without 
+     * even looking up the current log context (e.g. {@link #isDebugEnabled()} costs a single volatile read).
+     * 
+     * @param bounded `true` if the level of this context is never below the default level; `false` otherwise.
      */
-    protected LogContext() {}
+    protected LogContext(boolean bounded) {
+        if (!bounded) lowestLevel = Level.DEBUG;
+    }
 
     /**
      * Enters an inner log context instance.
@@ -116,24 +351,111 @@ public abstract class LogContext extends AbstractContext {
         return (LogContext) currentLogContext().enterInner();
     }
 
+    /**
+     * Indicates if messages of the specified level are logged by the current log context.
+     * 
+     * @param level the logging level.
+     * @return `true` if the specified level is enabled; `false` otherwise.
+     */
+    public static boolean isEnabled(Level level) {
+        return enabledLogContext(level) != null;
+    }
+
+    /**
+     * Indicates if debug messages are logged by the current log context. When debug messages are globally disabled
+     * this method costs a single volatile read.
+     * 
+     * ```java
+     * if (LogContext.isDebugEnabled()) {
+     *     LogContext.debug("Cache state: ", cache.dump()); // Expensive.
+     * }
+     * ```
+     * 
+     * @return `true` if debug messages are logged; `false` otherwise.
+     */
+    public static boolean isDebugEnabled() {
+        return enabledLogContext(Level.DEBUG) != null;
+    }
+
     /**
      * Logs the specified debug messages.
      * 
      * @param message 
      */
     public static void debug(Object... messages) {
+        if (Level.DEBUG.compareTo(lowestLevel) < 0) return; // Globally disabled.
         currentLogContext().log(Level.DEBUG, null, messages);
     }
 
+    /**
+     * Logs the specified debug message (no allocation if debug is disabled). If the message is an 
+     * array, its elements are logged (as for {@link #debug(Object...)}).
+     * 
+     * @param message the message.
+     */
+    public static void debug(Object message) {
+        LogContext ctx = enabledLogContext(Level.DEBUG);
+        if (ctx != null) ctx.log(Level.DEBUG, null, (message instanceof Object[]) ? (Object[]) message 
+                : new Object[] { message });
+    }
+
+    /**
+     * Logs the specified debug messages (no allocation if debug is disabled).
+     * 
+     * @param message1 the first message.
+     * @param message2 the second message.
+     */
+    public static void debug(Object message1, Object message2) {
+        LogContext ctx = enabledLogContext(Level.DEBUG);
+        if (ctx != null) ctx.log(Level.DEBUG, null, message1, message2);
+    }
+
+    /**
+     * Logs the specified debug messages (no allocation if debug is disabled).
+     * 
+     * @param message1 the first message.
+     * @param message2 the second message.
+     * @param message3 the third message.
+     */
+    public static void debug(Object message1, Object message2, Object message3) {
+        LogContext ctx = enabledLogContext(Level.DEBUG);
+        if (ctx != null) ctx.log(Level.DEBUG, null, message1, message2, message3);
+    }
+
+    /**
+     * Logs the debug message returned by the specified supplier; the supplier is called only if debug is enabled.
+     * 
+     * ```java
+     * LogContext.debug(() -> "Cache state: " + cache.dump());
+     * ```
+     * 
+     * @param message the supplier of the message.
+     */
+    public static void debug(Supplier<?> message) {
+        LogContext ctx = enabledLogContext(Level.DEBUG);
+        if (ctx != null) ctx.log(Level.DEBUG, null, message.get());
+    }
+
     /**
      * Logs the specified info messages.
      * 
      * @param message 
      */
     public static void info(Object... messages) {
+        if (Level.INFO.compareTo(lowestLevel) < 0) return; // Globally disabled.
         currentLogContext().log(Level.INFO, null, messages);
     }
 
+    /**
+     * Logs the info message returned by the specified supplier; the supplier is called only if info is enabled.
+     * 
+     * @param message the supplier of the message.
+     */
+    public static void info(Supplier<?> message) {
+        LogContext ctx = enabledLogContext(Level.INFO);
+        if (ctx != null) ctx.log(Level.INFO, null, message.get());
+    }
+
     /**
      * Logs the specified warning messages.
      * 
@@ -208,13 +530,34 @@ public abstract class LogContext extends AbstractContext {
 
     /**
      * Put a diagnostic context value as identified with the key parameter. The mapping is automatically 
-     * removed upon context exit.
+     * removed upon context exit. Values are formatted when the log events are processed (asynchronously), 
+     * they should not be modified once put (e.g. identifiers).
      * 
      * @param key
      * @param value 
      */
     public abstract void put(String key, Object value);
 
+    /**
+     * Returns the number of log events queued (for asynchronous processing) since the start of the application 
+     * by this context implementation. The default implementation returns `0`.
+     * 
+     * @return the number of events queued.
+     */
+    public long getQueuedCount() {
+        return 0;
+    }
+
+    /**
+     * Returns the number of log events dropped due to the logging queue being full (see {@link #OVERFLOW}) since 
+     * the start of the application by this context implementation. The default implementation returns `0`.
+     * 
+     * @return the number of events dropped.
+     */
+    public long getDroppedCount() {
+        return 0;
+    }
+
     /**
      * Logs the specified message at the specified level.
      * 
@@ -224,6 +567,13 @@ public abstract class LogContext extends AbstractContext {
      */
     protected abstract void log(Level level, Throwable error, Object... message);
 
+    /** Returns the current LogContext if the specified level is enabled; {@code null} otherwise. */
+    private static LogContext enabledLogContext(Level level) {
+        if (level.compareTo(lowestLevel) < 0) return null; // Globally disabled (single volatile read).
+        LogContext ctx = currentLogContext();
+        return (level.compareTo(ctx.level()) >= 0) ? ctx : null;
+    }
+
     /** Returns the current LogContext. */
     private static LogContext currentLogContext() {
         LogContext ctx = current(LogContext.class);
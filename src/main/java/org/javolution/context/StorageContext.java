@@ -8,9 +8,26 @@
  */
 package org.javolution.context;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
 import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
 
+import org.javolution.io.Struct;
+import org.javolution.context.internal.StorageCodecs;
 import org.javolution.lang.Configurable;
 import org.javolution.osgi.internal.OSGiServices;
 
@@ -37,6 +54,11 @@ import org.javolution.osgi.internal.OSGiServices;
  *  }
  * ```
  *  
+ * Resource values are encoded using the {@link Codec codec} of their class (if any) or Java serialization.
+ * Codecs produce compact binary data (variable-length integers) and are much faster than Java serialization; 
+ * they are predefined for the standard types (strings, boxed primitives, primitive arrays, standard collections 
+ * and maps, enums) and for {@link Struct} (raw bytes). Custom codecs can be set for any class.
+ *  
  * Permission to read/write resource values may or not be granted at all or only for particular resources. 
  * Sensitive data should always be encrypted (e.g. using a `SecuredStorageContext` sub-class).
  * There is no limit in the size of the data being stored (except the actual storage available). 
@@ -47,6 +69,17 @@ import org.javolution.osgi.internal.OSGiServices;
  */
 public abstract class StorageContext extends AbstractContext {
 
+    /**
+     * Defines how the default implementation stores the resource values.
+     */
+    public enum Engine {
+        /** One file per resource (named after the resource unique identifier), rewritten on each write. */
+        FILES,
+        /** An append-only log mapped in memory (high throughput, atomic writes, concurrent reads), compacted 
+         *  in the background. */
+        MAPPED_LOG
+    }
+
     /**
      * Holds the default storage location for file based-implementations
      * (default {@code new File("storage")}).
@@ -56,12 +89,37 @@ public abstract class StorageContext extends AbstractContext {
         protected File getDefault() {
             return new File("storage");
         }
-
+        @Override
+        public String getName() {
+            return StorageContext.class.getName() + "#FILE_STORAGE_LOCATION";
+        }
+        @Override
         protected File parse(String pathname) {
             return new File(pathname);
         }
     };
 
+    /**
+     * Holds the storage engine of the default implementation (default {@link Engine#FILES FILES}).
+     * For example, running with the option `-Dorg.javolution.context.StorageContext#ENGINE=MAPPED_LOG` 
+     * stores the resources in an append-only log (suitable for thousands of small resources written 
+     * per second). Values stored by one engine are not visible to the other.
+     */
+    public static final Configurable<Engine> ENGINE = new Configurable<Engine>() {
+        @Override
+        protected Engine getDefault() {
+            return Engine.FILES;
+        }
+        @Override
+        public String getName() {
+            return StorageContext.class.getName() + "#ENGINE";
+        }
+        @Override
+        protected Engine parse(String str) {
+            return Engine.valueOf(str);
+        }
+    };
+
     /**
      * A resource identifier. 
      * 
@@ -76,6 +134,610 @@ public abstract class StorageContext extends AbstractContext {
 
     }
 
+    /**
+     * A codec to encode/decode values of a given type (and its sub-types) as compact binary data; codecs are 
+     * to storage what {@link org.javolution.xml.XMLFormat XMLFormat} is to XML. Values held by the objects 
+     * encoded are written through {@link Output#writeObject} which stores their class (the name of each class 
+     * is stored only once) and uses their own codec. Shared references are not preserved (values are encoded 
+     * "by value"); graphs with cycles should use the {@link #JDK} codec.
+     * 
+     * ```java
+     * StorageContext ctx = StorageContext.enter();
+     * try {
+     *     ctx.setCodec(Point.class, new Codec<Point>() {
+     *         public void write(Point point, Output out) throws IOException {
+     *             out.writeVarInt(point.x);
+     *             out.writeVarInt(point.y);
+     *         }
+     *         public Point read(Class<? extends Point> type, Input in) throws IOException {
+     *             return new Point(in.readVarInt(), in.readVarInt());
+     *         }
+     *     });
+     *     ctx.write(locationId, location); // Points are encoded on 2 to 10 bytes.
+     * } finally {
+     *     ctx.exit();
+     * }
+     * ```
+     * 
+     * @param <T> the type of the values encoded.
+     */
+    public static abstract class Codec<T> {
+
+        /**
+         * Holds the codec based on Java serialization (default for classes without codec).
+         */
+        public static final Codec<Object> JDK = new Codec<Object>() {
+            @Override
+            public void write(Object obj, Output out) throws IOException {
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                ObjectOutputStream oos = new ObjectOutputStream(bytes);
+                oos.writeObject(obj);
+                oos.close();
+                out.writeLength(bytes.size());
+                bytes.writeTo(out.stream());
+            }
+
+            @Override
+            public Object read(Class<? extends Object> type, Input in) throws IOException {
+                int length = in.readLength();
+                ObjectInputStream ois = new ObjectInputStream(
+                        new ByteArrayInputStream(in.bytes, in.position(length), length));
+                try {
+                    return ois.readObject();
+                } catch (ClassNotFoundException error) {
+                    throw new IOException(error);
+                } finally {
+                    ois.close();
+                }
+            }
+        };
+
+        /**
+         * Holds the codec for {@link Struct} (the struct bytes are copied directly from/to its byte buffer; 
+         * structs are created using their public no-arg constructor).
+         */
+        public static final Codec<Struct> STRUCT = new Codec<Struct>() {
+            @Override
+            public void write(Struct struct, Output out) throws IOException {
+                ByteBuffer bytes = struct.getByteBuffer().duplicate();
+                int position = struct.getByteBufferPosition();
+                bytes.limit(position + struct.size()).position(position);
+                out.writeLength(struct.size());
+                out.write(bytes);
+            }
+
+            @Override
+            public Struct read(Class<? extends Struct> type, Input in) throws IOException {
+                Struct struct = newInstance(type);
+                int size = in.readLength();
+                if (size != struct.size()) throw new IOException("Layout of " + type + " has changed");
+                ByteBuffer bytes = struct.getByteBuffer().duplicate();
+                int position = struct.getByteBufferPosition();
+                bytes.limit(position + size).position(position);
+                in.read(bytes);
+                return struct;
+            }
+        };
+
+        /**
+         * Default constructor.
+         */
+        protected Codec() {
+        }
+
+        /**
+         * Encodes the specified object.
+         * 
+         * @param obj the object to encode (never {@code null}).
+         * @param out the binary output.
+         * @throws IOException if the object cannot be encoded.
+         */
+        public abstract void write(T obj, Output out) throws IOException;
+
+        /**
+         * Decodes an object of the specified type.
+         * 
+         * @param type the class of the object encoded.
+         * @param in the binary input.
+         * @return the object decoded.
+         * @throws IOException if the object cannot be decoded.
+         */
+        public abstract T read(Class<? extends T> type, Input in) throws IOException;
+
+        /**
+         * Returns a new instance of the specified type using its public no-arg constructor.
+         * 
+         * @param <T> the type of the instance.
+         * @param type the class of the instance.
+         * @return the new instance.
+         * @throws IOException if the instance cannot be created.
+         */
+        protected static <T> T newInstance(Class<T> type) throws IOException {
+            try {
+                return type.getConstructor().newInstance();
+            } catch (Exception error) {
+                throw new IOException("Cannot create instance of " + type, error);
+            }
+        }
+    }
+
+    /**
+     * A binary output (growable byte array) holding encoded values. Integers are encoded with a variable 
+     * length (zigzag encoding), strings are encoded as UTF-8 (surrogates are encoded separately).
+     */
+    public static final class Output {
+
+        private byte[] bytes = new byte[256];
+        private int length;
+        private Class<?>[] classes = PREDEFINED_CLASSES.clone(); // Classes encoded (by index).
+        private Codec<?>[] codecs = new Codec<?>[classes.length];
+        private int classCount = PREDEFINED_CLASSES.length;
+        private final StorageContext context; // Holds the codecs (current storage context if null).
+
+        /**
+         * Default constructor (empty output using the codecs of the current storage context).
+         */
+        public Output() {
+            this(null);
+        }
+
+        /**
+         * Creates an empty output using the codecs of the specified storage context.
+         * 
+         * @param context the storage context whose codecs are used or {@code null} for the current one.
+         */
+        public Output(StorageContext context) {
+            this.context = context;
+        }
+
+        /**
+         * Returns the number of bytes written.
+         * 
+         * @return the size of this output.
+         */
+        public int size() {
+            return length;
+        }
+
+        /**
+         * Returns a copy of the bytes written.
+         * 
+         * @return the content of this output.
+         */
+        public byte[] toByteArray() {
+            return Arrays.copyOf(bytes, length);
+        }
+
+        /**
+         * Writes the specified object preceded by its class (or {@code null}) using the codec for its class.
+         * 
+         * @param obj the object to write or {@code null}.
+         * @throws IOException if the object cannot be encoded.
+         */
+        @SuppressWarnings("unchecked")
+        public void writeObject(Object obj) throws IOException {
+            if (obj == null) {
+                writeLength(0);
+                return;
+            }
+            Class<?> type = obj.getClass();
+            int i = 0;
+            while ((i < classCount) && (classes[i] != type))
+                i++;
+            if (i == classCount) { // New class.
+                writeLength(1);
+                writeString(type.getName());
+                if (i == classes.length) {
+                    classes = Arrays.copyOf(classes, i * 2);
+                    codecs = Arrays.copyOf(codecs, i * 2);
+                }
+                classes[classCount++] = type;
+            } else {
+                writeLength(i + 2);
+            }
+            Codec<Object> codec = (Codec<Object>) codecs[i];
+            if (codec == null) codecs[i] = codec = (context != null) ? context.searchCodec(type) : getCodec(type);
+            codec.write(obj, this);
+        }
+
+        /**
+         * Writes the specified string (or {@code null}).
+         * 
+         * @param str the string to write or {@code null}.
+         */
+        public void writeString(String str) {
+            if (str == null) {
+                writeLength(0);
+                return;
+            }
+            int n = str.length();
+            writeLength(n + 1);
+            ensureCapacity(n * 3);
+            byte[] b = bytes;
+            int pos = length;
+            for (int i = 0; i < n; i++) {
+                char c = str.charAt(i);
+                if (c < 0x80) {
+                    b[pos++] = (byte) c;
+                } else if (c < 0x800) {
+                    b[pos++] = (byte) (0xC0 | (c >> 6));
+                    b[pos++] = (byte) (0x80 | (c & 0x3F));
+                } else {
+                    b[pos++] = (byte) (0xE0 | (c >> 12));
+                    b[pos++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                    b[pos++] = (byte) (0x80 | (c & 0x3F));
+                }
+            }
+            length = pos;
+        }
+
+        /**
+         * Writes the specified integer on 1 to 5 bytes (small absolute values use fewer bytes).
+         * 
+         * @param value the value to write.
+         */
+        public void writeVarInt(int value) {
+            writeLength((value << 1) ^ (value >> 31));
+        }
+
+        /**
+         * Writes the specified long integer on 1 to 10 bytes (small absolute values use fewer bytes).
+         * 
+         * @param value the value to write.
+         */
+        public void writeVarLong(long value) {
+            ensureCapacity(10);
+            long v = (value << 1) ^ (value >> 63);
+            while ((v & ~0x7FL) != 0) {
+                bytes[length++] = (byte) ((v & 0x7F) | 0x80);
+                v >>>= 7;
+            }
+            bytes[length++] = (byte) v;
+        }
+
+        /**
+         * Writes the specified byte.
+         * 
+         * @param value the byte to write (the 8 low-order bits).
+         */
+        public void writeByte(int value) {
+            ensureCapacity(1);
+            bytes[length++] = (byte) value;
+        }
+
+        /**
+         * Writes the specified boolean on one byte.
+         * 
+         * @param value the value to write.
+         */
+        public void writeBoolean(boolean value) {
+            writeByte(value ? 1 : 0);
+        }
+
+        /**
+         * Writes the specified float on 4 bytes.
+         * 
+         * @param value the value to write.
+         */
+        public void writeFloat(float value) {
+            writeFixed(Float.floatToRawIntBits(value), 4);
+        }
+
+        /**
+         * Writes the specified double on 8 bytes.
+         * 
+         * @param value the value to write.
+         */
+        public void writeDouble(double value) {
+            writeFixed(Double.doubleToRawLongBits(value), 8);
+        }
+
+        /**
+         * Writes the specified bytes.
+         * 
+         * @param b the bytes to write.
+         * @param off the offset of the first byte to write.
+         * @param len the number of bytes to write.
+         */
+        public void write(byte[] b, int off, int len) {
+            ensureCapacity(len);
+            System.arraycopy(b, off, bytes, length, len);
+            length += len;
+        }
+
+        /**
+         * Writes the remaining bytes of the specified buffer.
+         * 
+         * @param src the buffer whose remaining bytes are written.
+         */
+        public void write(ByteBuffer src) {
+            int len = src.remaining();
+            ensureCapacity(len);
+            src.get(bytes, length, len);
+            length += len;
+        }
+
+        /** Writes the specified positive value (unsigned variable length). */
+        void writeLength(int value) {
+            ensureCapacity(5);
+            while ((value & ~0x7F) != 0) {
+                bytes[length++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            bytes[length++] = (byte) value;
+        }
+
+        private void writeFixed(long bits, int size) {
+            ensureCapacity(size);
+            for (int i = (size - 1) * 8; i >= 0; i -= 8)
+                bytes[length++] = (byte) (bits >>> i);
+        }
+
+        private void ensureCapacity(int n) {
+            if (length + n > bytes.length) bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, length + n));
+        }
+
+        /** Returns a stream view of this output. */
+        OutputStream stream() {
+            return new OutputStream() {
+                @Override
+                public void write(int b) {
+                    writeByte(b);
+                }
+
+                @Override
+                public void write(byte[] b, int off, int len) {
+                    Output.this.write(b, off, len);
+                }
+            };
+        }
+    }
+
+    /**
+     * A binary input reading values encoded by an {@link Output}.
+     */
+    public static final class Input {
+
+        private final byte[] bytes;
+        private final int end;
+        private int pos;
+        private Class<?>[] classes = PREDEFINED_CLASSES.clone(); // Classes decoded (by index).
+        private Codec<?>[] codecs = new Codec<?>[classes.length];
+        private int classCount = PREDEFINED_CLASSES.length;
+        private final StorageContext context; // Holds the codecs (current storage context if null).
+
+        /**
+         * Creates an input reading the specified bytes using the codecs of the current storage context.
+         * 
+         * @param bytes the encoded bytes.
+         * @param offset the offset of the first byte.
+         * @param length the number of bytes.
+         */
+        public Input(byte[] bytes, int offset, int length) {
+            this(null, bytes, offset, length);
+        }
+
+        /**
+         * Creates an input reading the specified bytes using the codecs of the specified storage context.
+         * 
+         * @param context the storage context whose codecs are used or {@code null} for the current one.
+         * @param bytes the encoded bytes.
+         * @param offset the offset of the first byte.
+         * @param length the number of bytes.
+         */
+        public Input(StorageContext context, byte[] bytes, int offset, int length) {
+            this.context = context;
+            this.bytes = bytes;
+            this.pos = offset;
+            this.end = offset + length;
+        }
+
+        /**
+         * Returns the number of bytes not yet read.
+         * 
+         * @return the number of bytes remaining.
+         */
+        public int remaining() {
+            return end - pos;
+        }
+
+        /**
+         * Reads an object written using {@link Output#writeObject}.
+         * 
+         * @param <T> the type of the object read.
+         * @return the object read or {@code null}.
+         * @throws IOException if the object cannot be decoded.
+         */
+        @SuppressWarnings("unchecked")
+        public <T> T readObject() throws IOException {
+            int tag = readLength();
+            if (tag == 0) return null;
+            int i = tag - 2;
+            if (tag == 1) { // New class.
+                Class<?> type = classForName(readString());
+                if (classCount == classes.length) {
+                    classes = Arrays.copyOf(classes, classCount * 2);
+                    codecs = Arrays.copyOf(codecs, classCount * 2);
+                }
+                i = classCount++;
+                classes[i] = type;
+            } else if (i >= classCount) {
+                throw new IOException("Corrupted data (unknown class index " + i + ")");
+            }
+            Codec<Object> codec = (Codec<Object>) codecs[i];
+            if (codec == null) {
+                Class<Object> type = (Class<Object>) classes[i];
+                codecs[i] = codec = (context != null) ? context.searchCodec(type) : getCodec(type);
+            }
+            return (T) codec.read((Class<Object>) classes[i], this);
+        }
+
+        /**
+         * Reads a string written using {@link Output#writeString}.
+         * 
+         * @return the string read or {@code null}.
+         * @throws IOException if the end of the input is reached.
+         */
+        public String readString() throws IOException {
+            int n = readLength() - 1;
+            if (n < 0) return null;
+            char[] chars = new char[n];
+            byte[] b = bytes;
+            for (int i = 0; i < n; i++) {
+                int c = readByte();
+                if (c >= 0) {
+                    chars[i] = (char) c;
+                } else if ((c & 0xE0) == 0xC0) {
+                    chars[i] = (char) (((c & 0x1F) << 6) | (readByte() & 0x3F));
+                } else {
+                    int p = position(2);
+                    chars[i] = (char) (((c & 0x0F) << 12) | ((b[p] & 0x3F) << 6) | (b[p + 1] & 0x3F));
+                }
+            }
+            return new String(chars);
+        }
+
+        /**
+         * Reads an integer written using {@link Output#writeVarInt}.
+         * 
+         * @return the value read.
+         * @throws IOException if the end of the input is reached.
+         */
+        public int readVarInt() throws IOException {
+            int v = readLength();
+            return (v >>> 1) ^ -(v & 1);
+        }
+
+        /**
+         * Reads a long integer written using {@link Output#writeVarLong}.
+         * 
+         * @return the value read.
+         * @throws IOException if the end of the input is reached.
+         */
+        public long readVarLong() throws IOException {
+            long v = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                int b = readByte();
+                v |= (long) (b & 0x7F) << shift;
+                if (b >= 0) return (v >>> 1) ^ -(v & 1);
+            }
+            throw new IOException("Corrupted data (variable length integer)");
+        }
+
+        /**
+         * Reads a byte.
+         * 
+         * @return the byte read.
+         * @throws IOException if the end of the input is reached.
+         */
+        public byte readByte() throws IOException {
+            if (pos >= end) throw new IOException("End of input");
+            return bytes[pos++];
+        }
+
+        /**
+         * Reads a boolean written using {@link Output#writeBoolean}.
+         * 
+         * @return the value read.
+         * @throws IOException if the end of the input is reached.
+         */
+        public boolean readBoolean() throws IOException {
+            return readByte() != 0;
+        }
+
+        /**
+         * Reads a float written using {@link Output#writeFloat}.
+         * 
+         * @return the value read.
+         * @throws IOException if the end of the input is reached.
+         */
+        public float readFloat() throws IOException {
+            return Float.intBitsToFloat((int) readFixed(4));
+        }
+
+        /**
+         * Reads a double written using {@link Output#writeDouble}.
+         * 
+         * @return the value read.
+         * @throws IOException if the end of the input is reached.
+         */
+        public double readDouble() throws IOException {
+            return Double.longBitsToDouble(readFixed(8));
+        }
+
+        /**
+         * Reads the specified number of bytes.
+         * 
+         * @param b the destination array.
+         * @param off the offset of the first byte read in the destination array.
+         * @param len the number of bytes to read.
+         * @throws IOException if the end of the input is reached.
+         */
+        public void read(byte[] b, int off, int len) throws IOException {
+            System.arraycopy(bytes, position(len), b, off, len);
+        }
+
+        /**
+         * Reads the remaining bytes of the specified buffer.
+         * 
+         * @param dst the destination buffer.
+         * @throws IOException if the end of the input is reached.
+         */
+        public void read(ByteBuffer dst) throws IOException {
+            int len = dst.remaining();
+            dst.put(bytes, position(len), len);
+        }
+
+        /** Reads a positive value (unsigned variable length). */
+        int readLength() throws IOException {
+            int v = 0;
+            for (int shift = 0; shift < 32; shift += 7) {
+                int b = readByte();
+                v |= (b & 0x7F) << shift;
+                if (b >= 0) return v;
+            }
+            throw new IOException("Corrupted data (variable length integer)");
+        }
+
+        /** Skips the specified number of bytes, returns the position of the first byte skipped. */
+        int position(int len) throws IOException {
+            if ((len < 0) || (len > end - pos)) throw new IOException("End of input");
+            int start = pos;
+            pos += len;
+            return start;
+        }
+
+        private long readFixed(int size) throws IOException {
+            long bits = 0;
+            for (int i = position(size), n = i + size; i < n; i++)
+                bits = (bits << 8) | (bytes[i] & 0xFF);
+            return bits;
+        }
+
+        private static Class<?> classForName(String name) throws IOException {
+            ClassLoader loader = Thread.currentThread().getContextClassLoader();
+            try {
+                return Class.forName(name, false, (loader != null) ? loader : StorageContext.class.getClassLoader());
+            } catch (ClassNotFoundException error) {
+                try {
+                    return Class.forName(name, false, StorageContext.class.getClassLoader());
+                } catch (ClassNotFoundException e) {
+                    throw new IOException(error);
+                }
+            }
+        }
+    }
+
+    /** 
+     * Holds the classes which are never named in encoded data (part of the encoding format, new classes 
+     * should only be appended). 
+     */
+    private static final Class<?>[] PREDEFINED_CLASSES = { String.class, Boolean.class, Byte.class, 
+        Short.class, Character.class, Integer.class, Long.class, Float.class, Double.class, byte[].class, 
+        int[].class, long[].class, float[].class, double[].class, String[].class, ArrayList.class, 
+        LinkedList.class, ArrayDeque.class, HashSet.class, LinkedHashSet.class, HashMap.class, 
+        LinkedHashMap.class };
+
     /**
      * Default constructor.
      */
@@ -90,6 +752,42 @@ public abstract class StorageContext extends AbstractContext {
         return (StorageContext) currentStorageContext().enterInner();
     }
 
+    /**
+     * Returns the codec for the specified type (or the {@link Codec#JDK} codec if none).
+     * 
+     * @param <T> the type of the values encoded.
+     * @param type the class of the values encoded.
+     * @return the codec for the specified type.
+     */
+    public static <T> Codec<T> getCodec(Class<? extends T> type) {
+        return currentStorageContext().searchCodec(type);
+    }
+
+    /**
+     * Sets the codec for the specified type (and its sub-types unless they have their own codec).
+     * The default implementation throws {@link UnsupportedOperationException} (predefined codecs only).
+     * 
+     * @param <T> the type of the values encoded.
+     * @param type the class of the values encoded.
+     * @param codec the codec for the specified type.
+     * @throws UnsupportedOperationException if this context does not support custom codecs.
+     */
+    public <T> void setCodec(Class<? extends T> type, Codec<T> codec) {
+        throw new UnsupportedOperationException("Custom codecs not supported by " + getClass().getName());
+    }
+
+    /**
+     * Searches the codec for the specified type. The default implementation returns the predefined codec 
+     * for the specified type (or the {@link Codec#JDK} codec if none).
+     * 
+     * @param <T> the type of the values encoded.
+     * @param type the class of the values encoded.
+     * @return the codec for the specified type (or the {@link Codec#JDK} codec if none).
+     */
+    protected <T> Codec<T> searchCodec(Class<? extends T> type) {
+        return StorageCodecs.defaultCodec(type);
+    }
+
     /**
      * Reads the persistent value of the specified resource value. 
      * 
@@ -114,10 +812,39 @@ public abstract class StorageContext extends AbstractContext {
      */
     public abstract <V extends Serializable> void write(Resource<V> resource, V value) throws SecurityException;
 
+    /**
+     * Writes the specified resource values as a group (group commit) and, if supported, forces them to the 
+     * storage device. Unlike {@link #write}, this method does not check the permission to write the resources 
+     * (callers are expected to have checked it) and I/O errors are raised. The default implementation 
+     * writes the values one by one.
+     * 
+     * @param resources the resources whose values are stored.
+     * @param values the values to store.
+     * @param length the number of resources to write.
+     * @throws IOException if the values cannot be written.
+     */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    protected void commit(Resource<?>[] resources, Serializable[] values, int length) throws IOException {
+        for (int i = 0; i < length; i++)
+            write((Resource) resources[i], values[i]);
+    }
+
+    /**
+     * Returns a stamp which changes whenever the value of the specified resource is modified (e.g. the time of 
+     * last modification of the resource file), including by other processes. Caches use this stamp to detect 
+     * external modifications. The default implementation returns {@code 0} (unknown).
+     * 
+     * @param resource the resource whose value is checked.
+     * @return the modification stamp of the resource value or {@code 0} if unknown.
+     */
+    protected long lastModified(Resource<?> resource) {
+        return 0;
+    }
+
     /**
      * Returns the current storage context. 
      */
-    private static StorageContext currentStorageContext() {
+    static StorageContext currentStorageContext() {
         StorageContext ctx = current(StorageContext.class);
         if (ctx != null)
             return ctx;
@@ -0,0 +1,70 @@
+/*
+ * Javolution - Java(TM) Solution for Real-Time and Embedded Systems
+ * Copyright (C) 2012 - Javolution (http://javolution.org/)
+ * All rights reserved.
+ *
+ * Permission to use, copy, modify, and distribute this software is
+ * freely granted, provided that this notice is preserved.
+ */
+package org.javolution.context.internal;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.javolution.context.ConcurrentFuture;
+import org.javolution.util.function.Supplier;
+
+/**
+ * A logic completing a future with the result of a computation. The computation is executed once, either 
+ * by the thread executing the task scheduled or by the first thread joining the future if not started yet.
+ * Workers joining the future execute pending tasks of their pool while waiting. 
+ */
+final class AsyncLogic<T> implements Runnable {
+
+    private static final long HELP_PERIOD = 1; // Milliseconds between attempts to help while joining.
+
+    final ConcurrentFuture<T> future = new AsyncFuture();
+    final ConcurrentTaskImpl task; // The task to schedule (executes within the context of the submitter).
+    private final Supplier<? extends T> computation;
+    private final WorkStealingPool pool; // Null if executed by a dedicated thread.
+    private final AtomicBoolean started = new AtomicBoolean();
+
+    AsyncLogic(Supplier<? extends T> computation, WorkStealingPool pool) {
+        this.computation = computation;
+        this.pool = pool;
+        this.task = new ConcurrentTaskImpl(this, null);
+    }
+
+    @Override
+    public void run() {
+        if (!started.compareAndSet(false, true)) return; // Already executed by a thread joining.
+        try {
+            future.complete(computation.get());
+        } catch (Throwable error) {
+            future.completeExceptionally(error);
+        }
+    }
+
+    /** The future helping while joining. */
+    private final class AsyncFuture extends ConcurrentFuture<T> {
+
+        @Override
+        protected void await() throws InterruptedException {
+            if (!started.get()) { // Does it ourself.
+                task.run();
+                if (isDone()) return;
+            }
+            ConcurrentThreadImpl worker = (pool != null) ? pool.workerOf(Thread.currentThread()) : null;
+            if (worker == null) {
+                await(0);
+                return;
+            }
+            ConcurrentTaskImpl pending = pool.find(worker);
+            if (pending != null) {
+                worker.execute(pending);
+            } else { // Tasks may still be scheduled by the threads we are waiting for.
+                await(HELP_PERIOD);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,180 @@
+/*
+ * Javolution - Java(TM) Solution for Real-Time and Embedded Systems
+ * Copyright (C) 2012 - Javolution (http://javolution.org/)
+ * All rights reserved.
+ *
+ * Permission to use, copy, modify, and distribute this software is
+ * freely granted, provided that this notice is preserved.
+ */
+package org.javolution.context.internal;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Keeps track of the concurrent tasks of a context (number of tasks pending and errors raised)
+ * and allows the thread exiting the context to wait for their completion. 
+ * 
+ * No monitor is involved; the waiting thread spins briefly (fine-grained tasks complete quickly) then parks 
+ * until unparked by the completion of the last task.
+ * 
+ * The first error raised cancels the tasks: tasks not started yet are skipped and tasks running are 
+ * interrupted. Subsequent errors are added as suppressed exceptions of the first one. Only the tasks running
+ * are kept (lock-free list, tasks are unlinked when they stop).
+ */
+final class Completion {
+
+    private static final int SPINS = (Runtime.getRuntime().availableProcessors() > 1) ? 1 << 10 : 0;
+
+    private final AtomicInteger pending = new AtomicInteger(); // Nbr of tasks scheduled and not completed.
+    private final AtomicReference<ConcurrentTaskImpl> started = new AtomicReference<ConcurrentTaskImpl>();
+    private Throwable error; // The first error raised (guarded by this).
+    private volatile boolean cancelled;
+    private volatile Thread waiter; // The thread parked waiting for completion.
+
+    /** Returns the number of tasks scheduled and not completed yet. */
+    int pending() {
+        return pending.get();
+    }
+
+    /** Records a new task scheduled. */
+    void scheduled() {
+        pending.incrementAndGet();
+    }
+
+    /** Records the specified number of new tasks scheduled. */
+    void scheduled(int count) {
+        pending.addAndGet(count);
+    }
+
+    /** 
+     * Records the specified task as being executed; returns {@code false} if the task should not be executed
+     * (cancelled).
+     */
+    boolean started(ConcurrentTaskImpl task) {
+        task.running = true;
+        ConcurrentTaskImpl head;
+        do {
+            head = started.get();
+            task.nextStarted = head;
+        } while (!started.compareAndSet(head, task));
+        return !cancelled; // Checked after being visible to cancel().
+    }
+
+    /** 
+     * Records the specified task as not executing anymore; the tasks stopped are unlinked (only done tasks are 
+     * skipped, so concurrent unlinking never loses a task running).
+     */
+    void stopped(ConcurrentTaskImpl task) {
+        task.running = false;
+        ConcurrentTaskImpl head = started.get();
+        while ((head != null) && !head.running)
+            head = started.compareAndSet(head, head.nextStarted) ? head.nextStarted : started.get();
+        for (ConcurrentTaskImpl t = head; t != null; t = t.nextStarted) {
+            ConcurrentTaskImpl next = t.nextStarted;
+            while ((next != null) && !next.running)
+                next = next.nextStarted;
+            if (next != t.nextStarted) t.nextStarted = next;
+        }
+    }
+
+    /** Informs of the completion of a task (with possible error). */
+    void completed(Throwable error) {
+        if (error != null) failed(error);
+        if (pending.decrementAndGet() == 0) {
+            Thread thread = waiter;
+            if (thread != null) LockSupport.unpark(thread);
+        }
+    }
+
+    /** Records an error raised (by a task or by a logic executed inline); the tasks are cancelled. */
+    void failed(Throwable error) {
+        synchronized (this) {
+            if (this.error == null) {
+                this.error = error;
+            } else if (this.error != error) {
+                this.error.addSuppressed(error);
+            }
+        }
+        cancel();
+    }
+
+    /** Cancels the tasks (tasks not started are skipped, tasks running are interrupted). */
+    void cancel() {
+        if (cancelled) return;
+        cancelled = true; // Set before looking at the tasks started (see started).
+        for (ConcurrentTaskImpl task = started.get(); task != null; task = task.nextStarted)
+            task.interrupt();
+    }
+
+    /** Indicates if the tasks are cancelled. */
+    boolean isCancelled() {
+        return cancelled;
+    }
+
+    /** Returns the deadline ({@link System#nanoTime()}) corresponding to the specified timeout from now. */
+    static long deadline(long timeout, TimeUnit unit) {
+        long nanos = unit.toNanos(timeout);
+        return (nanos < Long.MAX_VALUE >> 1) ? System.nanoTime() + nanos : Long.MAX_VALUE; // No overflow.
+    }
+
+    /** Waits until all the tasks scheduled are completed. */
+    void await() throws InterruptedException {
+        await(Long.MAX_VALUE);
+    }
+
+    /** 
+     * Waits until all the tasks scheduled are completed or the specified deadline ({@link System#nanoTime()}) 
+     * is reached; returns {@code true} if the tasks are completed. 
+     */
+    boolean await(long deadline) throws InterruptedException {
+        for (int i = 0; i < SPINS; i++)
+            if (pending.get() == 0) return true;
+        waiter = Thread.currentThread(); // Set before checking pending (see completed).
+        try {
+            while (pending.get() != 0) {
+                if (deadline == Long.MAX_VALUE) {
+                    LockSupport.park(this);
+                } else {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) return false;
+                    LockSupport.parkNanos(this, remaining);
+                }
+                if (Thread.interrupted()) throw new InterruptedException();
+            }
+            return true;
+        } finally {
+            waiter = null;
+        }
+    }
+
+    /** Re-exports any error raised. */
+    void rethrow() {
+        Throwable error;
+        synchronized (this) {
+            error = this.error;
+        }
+        if (error == null)
+            return; // Everything fine.
+        if (error instanceof RuntimeException)
+            throw (RuntimeException) error;
+        if (error instanceof Error)
+            throw (Error) error;
+        throw new RuntimeException(error);
+    }
+
+    /** Cancels the tasks and throws the exception reporting the deadline exceeded (with any error suppressed). */
+    void timeout(long timeout, TimeUnit unit) {
+        cancel();
+        CancellationException exception = new CancellationException(
+                "Concurrent executions not completed after " + timeout + " " + unit);
+        synchronized (this) {
+            if (error != null) exception.addSuppressed(error);
+        }
+        throw exception;
+    }
+
+}
@@ -2,39 +2,74 @@
  * Javolution - Java(TM) Solution for Real-Time and Embedded Systems
  * Copyright (C) 2012 - Javolution (http://javolution.org/)
  * All rights reserved.
- * 
+ *
  * Permission to use, copy, modify, and distribute this software is
  * freely granted, provided that this notice is preserved.
  */
 package org.javolution.context.internal;
 
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntConsumer;
+
 import org.javolution.context.ConcurrentContext;
+import org.javolution.context.ConcurrentFuture;
+import org.javolution.context.ConcurrentMetrics;
 import org.javolution.lang.MathLib;
+import org.javolution.util.function.Supplier;
 
 /**
- * Holds the default implementation of ConcurrentContext.
+ * Holds the default implementation of ConcurrentContext (work-stealing).
+ *
+ * Tasks executed by a worker thread are pushed to the worker's own deque, so that nested (recursive)
+ * concurrent contexts keep spreading their work over idle workers. Threads exiting a context execute
+ * pending tasks themselves while waiting (help-while-join) instead of blocking.
+ * 
+ * Bulk executions ({@link #executeAll executeAll}, {@link #parallelFor parallelFor}) schedule at most one task 
+ * per available worker; these tasks (and the current thread) then claim chunks of work from a shared atomic index.
+ * 
+ * Workers are started on demand (up to the root concurrency) and retired when idle for some time; the root
+ * concurrency can be changed at any time (e.g. when the {@link ConcurrentContext#CONCURRENCY} is reconfigured).
  */
 public final class ConcurrentContextImpl extends ConcurrentContext {
 
-    private int completedCount; // Nbr of concurrent task completed.
-    private Throwable error; // Any error raised.
+    private static final int MAX_CONCURRENCY = 65536;
 
-    private int initiatedCount; // Nbr of concurrent task initiated.
+    private final WorkStealingPool pool;
     private final ConcurrentContextImpl parent;
-    private ConcurrentThreadImpl[] threads;
-    private int lastThreadInitiated; // Holds index of the last thread initiated. 
+    private volatile int concurrency; // Root concurrency can be changed at any time.
+    private final Completion completion = new Completion();
 
     /**
      * Default constructor (root).
      */
     public ConcurrentContextImpl() {
+        this(ConcurrentContext.CONCURRENCY.get(), ConcurrentContext.NUMA_AWARE.get() ? NumaTopology.detect()
+                : NumaTopology.single());
+        ConcurrentStatistics.register(false, "ConcurrentContext"); // Once for the root published.
+    }
+
+    /**
+     * Root context having the specified number of workers.
+     */
+    ConcurrentContextImpl(int concurrency) {
+        this(concurrency, NumaTopology.single());
+    }
+
+    /**
+     * Root context having the specified number of workers placed according to the specified topology.
+     */
+    ConcurrentContextImpl(int concurrency, NumaTopology topology) {
+        this(new WorkStealingPool(concurrency, topology));
+    }
+
+    /**
+     * Root context using the specified pool of workers.
+     */
+    ConcurrentContextImpl(WorkStealingPool pool) {
         this.parent = null;
-        int nbThreads = ConcurrentContext.CONCURRENCY.get();
-        threads = new ConcurrentThreadImpl[nbThreads];
-        for (int i = 0; i < nbThreads; i++) {
-            threads[i] = new ConcurrentThreadImpl();
-            threads[i].start();
-        }
+        this.concurrency = pool.getMaxWorkers();
+        this.pool = pool;
     }
 
     /**
@@ -42,74 +77,160 @@ public final class ConcurrentContextImpl extends ConcurrentContext {
      */
     public ConcurrentContextImpl(ConcurrentContextImpl parent) {
         this.parent = parent;
-        this.threads = parent.threads; // Inherit threads from parents.
+        this.pool = parent.pool; // Inherit workers from parents.
+        this.concurrency = parent.concurrency;
     }
 
-    // Informs this context of the completion of a task (with possible error).
-    public synchronized void completed(Throwable error) {
-        if (error != null) {
-            this.error = error;
-        }
-        completedCount++;
-        this.notify();
+    @Override
+    public void execute(Runnable logic) {
+        execute(logic, -1);
     }
 
     @Override
-    public void execute(Runnable logic) {
-        if (threads.length > 0) { 
-            int i = lastThreadInitiated;
-            while (true) { // Searches available thread. 
-                i++;
-                if (i >= threads.length) i = 0;
-                if (threads[i].execute(logic, this)) {
-                    initiatedCount++;
-                    lastThreadInitiated = i;
-                    return;
-                }
-                if (i == lastThreadInitiated) break; // Cycled through.    
+    public void execute(Runnable logic, int affinity) {
+        if (completion.isCancelled()) return;
+        if (completion.pending() < concurrency) {
+            ConcurrentTaskImpl task = new ConcurrentTaskImpl(logic, completion);
+            completion.scheduled();
+            if (pool.submit(task, affinity)) {
+                pool.statistics.scheduled(1);
+                return;
             }
+            completion.completed(null); // Saturated.
         }
         // No concurrent thread to do the job, lets do it ourself.
+        pool.statistics.inline();
         try {
             logic.run();
         } catch (Throwable e) {
-            error = e;
+            completion.failed(e);
+        }
+    }
+
+    @Override
+    public void executeAll(final Runnable... logics) {
+        parallelFor(0, logics.length, 1, new IntConsumer() {
+            @Override
+            public void accept(int i) {
+                logics[i].run();
+            }
+        });
+    }
+
+    @Override
+    public void parallelFor(int from, int to, int grain, IntConsumer action) {
+        if ((from >= to) || completion.isCancelled()) return;
+        grain = MathLib.max(1, grain);
+        long chunks = ((long) to - from + grain - 1) / grain;
+        int helpers = (int) MathLib.min(chunks - 1, concurrency - completion.pending());
+        RangeTask range = new RangeTask(from, to, grain, action, completion);
+        if (helpers > 0) {
+            ConcurrentTaskImpl[] tasks = new ConcurrentTaskImpl[helpers];
+            for (int i = 0; i < helpers; i++)
+                tasks[i] = new ConcurrentTaskImpl(range, completion);
+            completion.scheduled(helpers);
+            int submitted = pool.submitAll(tasks);
+            for (int i = submitted; i < helpers; i++)
+                completion.completed(null); // Saturated.
+            pool.statistics.scheduled(submitted);
+        } else if (chunks > 1) { // No concurrent thread available.
+            pool.statistics.inline();
+        }
+        try { // Current thread needs to work too!
+            range.run();
+        } catch (Throwable e) {
+            completion.failed(e);
         }
     }
 
     @Override
-    public synchronized void exit() {
+    protected <T> ConcurrentFuture<T> async(Supplier<? extends T> computation) {
+        AsyncLogic<T> logic = new AsyncLogic<T>(computation, pool);
+        if ((concurrency == 0) || !pool.submit(logic.task)) 
+            logic.run(); // No concurrent thread to do the job, lets do it ourself.
+        return logic.future;
+    }
+
+    @Override
+    public void cancel() {
+        completion.cancel();
+    }
+
+    @Override
+    public void exit() {
+        join(Long.MAX_VALUE); // Before exiting, concurrent logics inherit this context.
+        super.exit();
+        completion.rethrow();
+    }
+
+    @Override
+    public void exit(long timeout, TimeUnit unit) {
+        boolean completed = join(Completion.deadline(timeout, unit));
         super.exit();
+        if (!completed) completion.timeout(timeout, unit); // Abandons stragglers.
+        completion.rethrow();
+    }
+
+    /** 
+     * Executes pending tasks until all the tasks of this context are completed or the specified deadline
+     * is reached; returns {@code false} if the deadline has been reached. When a deadline is specified,
+     * the current thread does not help (it could not abandon a straggler it executes itself).
+     */
+    private boolean join(long deadline) {
+        long start = System.nanoTime();
         try {
-            while (initiatedCount != completedCount) {
-                this.wait();
+            ConcurrentThreadImpl worker = pool.workerOf(Thread.currentThread());
+            while (completion.pending() != 0) {
+                ConcurrentTaskImpl task = (deadline == Long.MAX_VALUE) ? pool.find(worker) : null;
+                if (task != null) { // Helps.
+                    if (worker != null) worker.execute(task); else task.run();
+                    continue;
+                }
+                try { // Remaining tasks are being executed by others threads.
+                    if (!completion.await(deadline)) return false;
+                } catch (InterruptedException ex) {
+                    completion.failed(ex);
+                    return true;
+                }
             }
-        } catch (InterruptedException ex) {
-            this.error = ex;
+            return true;
+        } finally {
+            pool.statistics.joined(System.nanoTime() - start);
         }
-        if (error == null)
-            return; // Everything fine.
-        if (error instanceof RuntimeException)
-            throw (RuntimeException) error;
-        if (error instanceof Error)
-            throw (Error) error;
-        throw new RuntimeException(error);
+    }
+
+    /** 
+     * Returns the concurrent threads (workers) of this context; their statistics (e.g. number of tasks executed,
+     * stolen, taken from remote nodes) can be read at any time.
+     */
+    public ConcurrentThreadImpl[] getWorkers() {
+        return pool.workers();
+    }
+
+    @Override
+    public ConcurrentMetrics getMetrics() {
+        return pool.statistics.snapshot(concurrency, pool.workers(), pool.queueDepth());
     }
 
     @Override
     public int getConcurrency() {
-        return threads.length;
+        return concurrency;
     }
 
+    /**
+     * Sets the concurrency of this context; for the root context, the maximum number of workers is adjusted 
+     * accordingly (workers are started on demand and workers in excess are retired).
+     */
     @Override
     public void setConcurrency(int concurrency) {
-        // The setting of the concurrency can only reduce the number 
-        // of threads available in the context.
-        int nbThreads = MathLib.min(parent.threads.length, concurrency);
-        threads = new ConcurrentThreadImpl[nbThreads];
-        for (int i = 0; i < nbThreads; i++) { // Reused from parent threads.
-            threads[i] = parent.threads[i];
+        if (parent == null) { // Root, resizes the pool.
+            this.concurrency = MathLib.max(0, MathLib.min(MAX_CONCURRENCY, concurrency));
+            pool.setMaxWorkers(this.concurrency);
+            return;
         }
+        // The setting of the concurrency can only reduce the number
+        // of concurrent tasks allowed in the context.
+        this.concurrency = MathLib.max(0, MathLib.min(parent.concurrency, concurrency));
     }
 
     @Override
@@ -117,4 +238,33 @@ public final class ConcurrentContextImpl extends ConcurrentContext {
         return new ConcurrentContextImpl(this);
     }
 
+    /** A range of indices whose chunks are claimed by the threads executing it. */
+    private static final class RangeTask implements Runnable {
+        private final AtomicInteger next;
+        private final int to;
+        private final int grain;
+        private final IntConsumer action;
+        private final Completion completion;
+
+        RangeTask(int from, int to, int grain, IntConsumer action, Completion completion) {
+            this.next = new AtomicInteger(from);
+            this.to = to;
+            this.grain = grain;
+            this.action = action;
+            this.completion = completion;
+        }
+
+        @Override
+        public void run() {
+            while (!completion.isCancelled()) {
+                int start = next.get();
+                if (start >= to) return; // No more chunk.
+                int end = (to - start > grain) ? start + grain : to; // No overflow.
+                if (!next.compareAndSet(start, end)) continue;
+                for (int i = start; i < end; i++)
+                    action.accept(i);
+            }
+        }
+    }
+
 }
@@ -0,0 +1,39 @@
+/*
+ * Javolution - Java(TM) Solution for Real-Time and Embedded Systems
+ * Copyright (C) 2012 - Javolution (http://javolution.org/)
+ * All rights reserved.
+ *
+ * Permission to use, copy, modify, and distribute this software is
+ * freely granted, provided that this notice is preserved.
+ */
+package org.javolution.context.internal;
+
+/**
+ * The management interface of the default concurrent contexts (see {@link org.javolution.context.ConcurrentMetrics}
+ * for the description of the attributes).
+ */
+public interface ConcurrentContextMXBean {
+
+    int getConcurrency();
+
+    long[] getExecutedCounts();
+
+    double[] getUtilizations();
+
+    double getUtilization();
+
+    long getScheduledCount();
+
+    long getInlineCount();
+
+    double getInlineRatio();
+
+    int getQueueDepth();
+
+    long[] getJoinWaits();
+
+    long[] getJoinWaitBounds();
+
+    long getJoinCount();
+
+}
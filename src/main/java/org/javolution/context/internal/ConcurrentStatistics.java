@@ -0,0 +1,158 @@
+/*
+ * Javolution - Java(TM) Solution for Real-Time and Embedded Systems
+ * Copyright (C) 2012 - Javolution (http://javolution.org/)
+ * All rights reserved.
+ *
+ * Permission to use, copy, modify, and distribute this software is
+ * freely granted, provided that this notice is preserved.
+ */
+package org.javolution.context.internal;
+
+import java.lang.management.ManagementFactory;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.javolution.context.ConcurrentMetrics;
+import org.javolution.osgi.internal.OSGiServices;
+import org.javolution.util.function.Supplier;
+
+/**
+ * The counters of a concurrent context (shared by the root context and its inner contexts). 
+ * Counters are contention-free (striped) so that instrumentation does not impact the concurrent executions.
+ */
+final class ConcurrentStatistics {
+
+    private static final Set<String> REGISTERED = ConcurrentHashMap.newKeySet(); // Types of beans registered.
+
+    private final LongAdder scheduled = new LongAdder();
+    private final LongAdder inline = new LongAdder();
+    private final AtomicLongArray joinWaits = new AtomicLongArray(ConcurrentMetrics.getJoinWaitBounds().length + 1);
+
+    /** Records logics scheduled for concurrent execution. */
+    void scheduled(int count) {
+        scheduled.add(count);
+    }
+
+    /** Records a logic executed by the calling thread (no concurrent thread available). */
+    void inline() {
+        inline.increment();
+    }
+
+    /** Records the time spent waiting for the completion of the concurrent logics of a context. */
+    void joined(long nanos) {
+        joinWaits.incrementAndGet(ConcurrentMetrics.joinWaitBucket(nanos));
+    }
+
+    /** Returns a snapshot of the activity of the specified workers and of this statistics. */
+    ConcurrentMetrics snapshot(int concurrency, ConcurrentThreadImpl[] workers, int queueDepth) {
+        long now = System.nanoTime();
+        long[] executedCounts = new long[workers.length];
+        double[] utilizations = new double[workers.length];
+        for (int i = 0; i < workers.length; i++) {
+            executedCounts[i] = workers[i].getExecutedCount();
+            utilizations[i] = workers[i].getUtilization(now);
+        }
+        long[] waits = new long[joinWaits.length()];
+        for (int i = 0; i < waits.length; i++)
+            waits[i] = joinWaits.get(i);
+        return new ConcurrentMetrics(concurrency, executedCounts, utilizations, scheduled.sum(), inline.sum(),
+                queueDepth, waits);
+    }
+
+    /** 
+     * Registers (once per type) a management bean (platform MBean server) for the metrics of the root context
+     * published for the specified type of context; returns {@code false} if JMX is not available.
+     */
+    static boolean register(final boolean virtual, String type) {
+        if (!REGISTERED.add(type)) return true; // The bean does not reference any root (no leak).
+        return register(new MXBeanImpl(new Supplier<ConcurrentMetrics>() {
+            @Override
+            public ConcurrentMetrics get() {
+                return OSGiServices.getConcurrentContext(virtual).getMetrics();
+            }
+        }), type);
+    }
+
+    private static boolean register(Object mbean, String type) {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName("org.javolution:type=" + type);
+            for (int i = 2; server.isRegistered(name); i++) // Multiple roots.
+                name = new ObjectName("org.javolution:type=" + type + ",id=" + i);
+            server.registerMBean(mbean, name);
+            return true;
+        } catch (Throwable error) { // No JMX (e.g. embedded), security restrictions, etc.
+            return false;
+        }
+    }
+
+    /** The management bean, each attribute is read from a new snapshot. */
+    private static final class MXBeanImpl implements ConcurrentContextMXBean {
+        private final Supplier<ConcurrentMetrics> metrics;
+
+        MXBeanImpl(Supplier<ConcurrentMetrics> metrics) {
+            this.metrics = metrics;
+        }
+
+        @Override
+        public int getConcurrency() {
+            return metrics.get().getConcurrency();
+        }
+
+        @Override
+        public long[] getExecutedCounts() {
+            return metrics.get().getExecutedCounts();
+        }
+
+        @Override
+        public double[] getUtilizations() {
+            return metrics.get().getUtilizations();
+        }
+
+        @Override
+        public double getUtilization() {
+            return metrics.get().getUtilization();
+        }
+
+        @Override
+        public long getScheduledCount() {
+            return metrics.get().getScheduledCount();
+        }
+
+        @Override
+        public long getInlineCount() {
+            return metrics.get().getInlineCount();
+        }
+
+        @Override
+        public double getInlineRatio() {
+            return metrics.get().getInlineRatio();
+        }
+
+        @Override
+        public int getQueueDepth() {
+            return metrics.get().getQueueDepth();
+        }
+
+        @Override
+        public long[] getJoinWaits() {
+            return metrics.get().getJoinWaits();
+        }
+
+        @Override
+        public long[] getJoinWaitBounds() {
+            return ConcurrentMetrics.getJoinWaitBounds();
+        }
+
+        @Override
+        public long getJoinCount() {
+            return metrics.get().getJoinCount();
+        }
+    }
+
+}
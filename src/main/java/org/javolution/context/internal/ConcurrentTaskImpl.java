@@ -0,0 +1,119 @@
+/*
+ * Javolution - Java(TM) Solution for Real-Time and Embedded Systems
+ * Copyright (C) 2012 - Javolution (http://javolution.org/)
+ * All rights reserved.
+ *
+ * Permission to use, copy, modify, and distribute this software is
+ * freely granted, provided that this notice is preserved.
+ */
+package org.javolution.context.internal;
+
+import org.javolution.context.AbstractContext;
+
+/**
+ * A logic scheduled for concurrent execution; it executes within the context of the thread which has
+ * scheduled it (whatever the thread executing it) and reports its completion when done (if a completion
+ * is specified).
+ * 
+ * While its logic executes other tasks (e.g. helping in a nested join), a task is suspended: cancelling it 
+ * does not interrupt its thread (which would interrupt the nested tasks) but only when its logic resumes.
+ */
+final class ConcurrentTaskImpl implements Runnable {
+
+    private static final ThreadLocal<ConcurrentTaskImpl> EXECUTING = new ThreadLocal<ConcurrentTaskImpl>();
+
+    private final Runnable logic;
+    private final Completion completion;
+    private final AbstractContext inherited;
+    private final int priority;
+    private Thread runner; // The thread executing the logic (guarded by this).
+    private boolean suspended; // Executing a nested task (guarded by this).
+    private boolean interruptPending; // Interrupt deferred until resumed (guarded by this).
+    volatile boolean running; // Started and not stopped (see Completion).
+    volatile ConcurrentTaskImpl nextStarted; // Next task started (see Completion).
+
+    ConcurrentTaskImpl(Runnable logic, Completion completion) {
+        this.logic = logic;
+        this.completion = completion;
+        this.inherited = AbstractContext.current();
+        this.priority = Thread.currentThread().getPriority();
+    }
+
+    @Override
+    public void run() {
+        Thread thread = Thread.currentThread();
+        int previousPriority = thread.getPriority();
+        AbstractContext previous = AbstractContext.current();
+        ConcurrentTaskImpl outer = EXECUTING.get();
+        Throwable error = null;
+        if (outer != null) outer.suspend();
+        if (completion != null) {
+            synchronized (this) {
+                runner = thread;
+            }
+            if (!completion.started(this)) { // Cancelled.
+                stopped();
+                completion.completed(null);
+                if (outer != null) outer.resume();
+                return;
+            }
+        }
+        EXECUTING.set(this);
+        try {
+            if (priority != previousPriority) thread.setPriority(priority);
+            AbstractContext.inherit(inherited);
+            logic.run();
+        } catch (Throwable e) {
+            error = e;
+        } finally {
+            AbstractContext.inherit(previous);
+            if (priority != previousPriority) thread.setPriority(previousPriority);
+            EXECUTING.set(outer);
+            if (completion != null) {
+                stopped();
+                completion.completed(error);
+            }
+            if (outer != null) outer.resume();
+        }
+    }
+
+    /** Interrupts the thread executing this task's logic (if any), deferred while suspended. */
+    void interrupt() {
+        synchronized (this) {
+            if (runner == null) return;
+            if (suspended) interruptPending = true;
+            else runner.interrupt();
+        }
+    }
+
+    /** Indicates that the logic executes a nested task (called by the thread executing the logic). */
+    private void suspend() {
+        synchronized (this) {
+            if (runner == null) return;
+            suspended = true;
+            if (completion.isCancelled() && Thread.interrupted()) interruptPending = true; // Not for nested tasks.
+        }
+    }
+
+    /** Indicates that the logic resumes after a nested task (called by the thread executing the logic). */
+    private void resume() {
+        synchronized (this) {
+            if (runner == null) return;
+            suspended = false;
+            if (!interruptPending) return;
+            interruptPending = false;
+            runner.interrupt(); // Current thread.
+        }
+    }
+
+    /** Indicates that the logic is not executing anymore (it cannot be interrupted). */
+    private void stopped() {
+        synchronized (this) {
+            runner = null;
+            interruptPending = false;
+        }
+        completion.stopped(this);
+        if (completion.isCancelled()) Thread.interrupted(); // Clears any interrupt due to cancellation.
+    }
+
+}
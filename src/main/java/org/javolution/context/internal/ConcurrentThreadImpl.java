@@ -2,72 +2,120 @@
  * Javolution - Java(TM) Solution for Real-Time and Embedded Systems
  * Copyright (C) 2012 - Javolution (http://javolution.org/)
  * All rights reserved.
- * 
+ *
  * Permission to use, copy, modify, and distribute this software is
  * freely granted, provided that this notice is preserved.
  */
 package org.javolution.context.internal;
 
-import java.util.concurrent.atomic.AtomicBoolean;
-
 import javax.realtime.RealtimeThread;
 
-import org.javolution.context.AbstractContext;
-
 /**
- * A worker thread executing in a concurrent context.
+ * A worker thread of a {@link WorkStealingPool}; it executes the tasks of its own deque first
+ * and steals tasks from others workers when idle (workers of its own NUMA node first).
+ * 
+ * Statistics are maintained by the worker itself (single writer) and can be read at any time.
  */
-public class ConcurrentThreadImpl extends RealtimeThread { 
+public class ConcurrentThreadImpl extends RealtimeThread {
 
     private static int count;
-    private ConcurrentContextImpl context;
-    private AtomicBoolean isBusy = new AtomicBoolean();
-    private Runnable logic;
-    private int priority;
+    final WorkStealingPool pool;
+    final WorkDeque deque = new WorkDeque();
+    final int node;
+    volatile long executedCount; // Tasks executed.
+    volatile long stolenCount; // Tasks stolen from others workers.
+    volatile long remoteCount; // Tasks taken from others nodes.
+    volatile long idleCount; // Number of times the worker has been waiting for work.
+    private volatile long busyNanos; // Time spent executing tasks.
+    private volatile long startNanos; // When the worker started.
+    private volatile long taskStartNanos; // When the current (outer) task started, 0 if none.
+    private int depth; // Nesting level of tasks executed (tasks executed while joining).
+    private volatile boolean pinned;
 
     /**
-     * Default constructor.
+     * Creates a worker for the specified pool and node.
      */
-    public ConcurrentThreadImpl() {
-        this.setName("ConcurrentThread-" + ++count);
+    ConcurrentThreadImpl(WorkStealingPool pool, int node) {
+        this.pool = pool;
+        this.node = node;
+        this.setName("ConcurrentThread-" + ++count + ((pool.topology.nodes() > 1) ? "@node" + node : ""));
         setDaemon(true);
     }
 
-    /**
-     * Executes the specified logic by this thread if ready; returns
-     * {@code false} if this thread is busy.
-     */
-    public boolean execute(Runnable logic, ConcurrentContextImpl inContext) {
-        if (!isBusy.compareAndSet(false, true))
-            return false;
-        synchronized (this) {
-            this.priority = Thread.currentThread().getPriority();
-            this.context = inContext;
-            this.logic = logic;
-            this.notify();
+    /** Returns the NUMA node of this worker ({@code 0} if no placement). */
+    public int getNode() {
+        return node;
+    }
+
+    /** Indicates if this worker is pinned to the CPUs of its node. */
+    public boolean isPinned() {
+        return pinned;
+    }
+
+    /** Returns the number of tasks executed by this worker. */
+    public long getExecutedCount() {
+        return executedCount;
+    }
+
+    /** Returns the number of tasks this worker has stolen from others workers. */
+    public long getStolenCount() {
+        return stolenCount;
+    }
+
+    /** Returns the number of tasks this worker has taken from others nodes. */
+    public long getRemoteCount() {
+        return remoteCount;
+    }
+
+    /** Returns the number of times this worker has been waiting for work. */
+    public long getIdleCount() {
+        return idleCount;
+    }
+
+    /** Returns the ratio of time this worker has been executing tasks since it started. */
+    public double getUtilization() {
+        return getUtilization(System.nanoTime());
+    }
+
+    double getUtilization(long now) {
+        long start = startNanos;
+        if (start == 0) return 0; // Not started.
+        long busy = busyNanos;
+        long taskStart = taskStartNanos;
+        if (taskStart != 0) busy += now - taskStart; // Current task (approximation).
+        return (now > start) ? Math.min(1.0, Math.max(0.0, (double) busy / (now - start))) : 0;
+    }
+
+    /** Executes the specified task (this worker only); nested executions (while joining) are timed once. */
+    void execute(ConcurrentTaskImpl task) {
+        if (depth++ == 0) taskStartNanos = System.nanoTime();
+        try {
+            task.run(); // Never throws (errors are reported to the task context).
+        } finally {
+            if (--depth == 0) {
+                busyNanos += System.nanoTime() - taskStartNanos;
+                taskStartNanos = 0;
+            }
+            executedCount++;
         }
-        return true;
     }
 
     @Override
     public void run() {
-        while (true) { // Main loop.
+        startNanos = System.nanoTime();
+        if (pool.topology.nodes() > 1) pinned = pool.topology.isPinned(node);
+        while (!pool.retireIfExcess(this)) { // Main loop.
+            ConcurrentTaskImpl task = pool.find(this);
+            if (task != null) {
+                execute(task);
+                continue;
+            }
             try {
-                synchronized (this) {
-                    while (logic == null) this.wait();
-                }
-                this.setPriority(priority);
-                AbstractContext.inherit(context);
-                logic.run();
-                context.completed(null);
-            } catch (Throwable error) {
-                context.completed(error);
+                idleCount++;
+                if (!pool.awaitWork(this)) return; // Retired.
+            } catch (InterruptedException e) {
+                // Ignores (daemon thread).
             }
-            // Clean up.
-            logic = null;
-            context = null;
-            AbstractContext.inherit(null);
-            isBusy.set(false);
         }
     }
 
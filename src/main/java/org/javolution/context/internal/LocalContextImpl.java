@@ -8,37 +8,47 @@
  */
 package org.javolution.context.internal;
 
+import java.util.Arrays;
+
 import org.javolution.context.LocalContext;
-import org.javolution.util.FastMap;
 
 /**
  * Holds the default implementation of LocalContext.
+ * 
+ * The local values are resolved into a flattened immutable array indexed by parameter ordinal; inner contexts
+ * start with the array of their parent (snapshot at entry) and superseding a value replaces the array 
+ * (copy-on-write). Reading a parameter value is then a single array load whatever the nesting level.
  */
 public final class LocalContextImpl extends LocalContext {
 
-    private FastMap<Parameter<?>, Object> localSettings = new FastMap<Parameter<?>, Object>();
-    private LocalContextImpl parent;
+    private static final Object[] NONE = new Object[0];
+
+    private volatile Object[] values = NONE; // Local values by parameter ordinal (never modified once set).
 
     @Override
     protected LocalContext inner() {
         LocalContextImpl ctx = new LocalContextImpl();
-        ctx.parent = this;
+        ctx.values = values; // Snapshot (immutable).
         return ctx;
     }
 
     @Override
     public <T> void supersede(Parameter<T> param, T localValue) {
         if (localValue == null) throw new NullPointerException();
-        localSettings.put(param, localValue);
+        int ordinal = ordinalOf(param);
+        Object[] current = values;
+        Object[] copy = Arrays.copyOf(current, Math.max(current.length, ordinal + 1));
+        copy[ordinal] = localValue;
+        values = copy;
     }
 
     @SuppressWarnings("unchecked")
     @Override
     protected <T> T getValue(Parameter<T> param, T defaultValue) {
-        Object value = localSettings.get(param);
-        if (value != null) return (T) value;
-        if (parent != null) return parent.getValue(param, defaultValue);
-        return defaultValue;
+        int ordinal = ordinalOf(param);
+        Object[] current = values;
+        Object value = (ordinal < current.length) ? current[ordinal] : null;
+        return (value != null) ? (T) value : defaultValue;
     }
 
 }
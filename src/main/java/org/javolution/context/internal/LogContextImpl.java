@@ -8,7 +8,10 @@
  */
 package org.javolution.context.internal;
 
+import java.util.Arrays;
+
 import org.javolution.context.LogContext;
+import org.javolution.lang.Configurable;
 import org.javolution.text.TextBuilder;
 
 /**
@@ -17,17 +20,20 @@ import org.javolution.text.TextBuilder;
 public final class LogContextImpl extends LogContext {
 
     private static final LoggingThread LOGGING_THREAD = new LoggingThread();        
-    private Level actualLevel = DEFAULT_LEVEL.get(); 
+    private static final Object[] NO_FIELDS = new Object[0];
+    private Level actualLevel; // null: DEFAULT_LEVEL
     private String actualPrefix = "";
     private String actualSuffix = "";
+    private Object[] fields = NO_FIELDS; // Diagnostic context {key0, value0, key1, value1, ...} (copy-on-write).
 
     public LogContextImpl() {
+        super(true); // Level never below DEFAULT_LEVEL.
         if (!LOGGING_THREAD.isAlive()) LOGGING_THREAD.start();        
     }
     
     @Override
     public Level level() {
-        return actualLevel;
+        return (actualLevel != null) ? actualLevel : defaultLevel();
     }
 
     @Override
@@ -43,7 +49,7 @@ public final class LogContextImpl extends LogContext {
     @Override
     public void setLevel(Level level) {
         LogContext outer = getOuter(LogContext.class);
-        Level currentLevel = (outer != null) ? outer.level() : DEFAULT_LEVEL.get();
+        Level currentLevel = (outer != null) ? outer.level() : defaultLevel();
         actualLevel = (currentLevel.compareTo(level) > 0) ? currentLevel : level;
     }
 
@@ -68,14 +74,41 @@ public final class LogContextImpl extends LogContext {
         actualSuffix = tb.toString();
     }
 
+    @Override
     public void put(String key, Object value) {
-        // TODO
+        Object[] tmp = fields; // Never modified (shared with inner contexts and log events).
+        for (int i = 0; i < tmp.length; i += 2) {
+            if (!key.equals(tmp[i])) continue;
+            tmp = tmp.clone();
+            tmp[i + 1] = value;
+            fields = tmp;
+            return;
+        }
+        tmp = Arrays.copyOf(tmp, tmp.length + 2);
+        tmp[tmp.length - 2] = key;
+        tmp[tmp.length - 1] = value;
+        fields = tmp;
+    }
+
+    /** Returns the diagnostic context of this log context (flattened key/value pairs). */
+    Object[] fields() {
+        return fields;
+    }
+
+    @Override
+    public long getQueuedCount() {
+        return LOGGING_THREAD.getQueuedCount();
+    }
+
+    @Override
+    public long getDroppedCount() {
+        return LOGGING_THREAD.getDroppedCount();
     }
 
     protected void log(Level level, Throwable error, Object... messages) {
-        if (level.compareTo(actualLevel) < 0)
+        if (level.compareTo(level()) < 0)
             return;
-        LOGGING_THREAD.queueEvent(level, actualPrefix, actualSuffix, messages, error);
+        LOGGING_THREAD.queueEvent(level, actualPrefix, actualSuffix, messages, fields, error);
     }
     
     @Override
@@ -84,7 +117,14 @@ public final class LogContextImpl extends LogContext {
         ctx.actualLevel = level();
         ctx.actualPrefix = prefix();
         ctx.actualSuffix = suffix();
+        ctx.fields = fields; // Shared (copy-on-write).
         return ctx;
     }
 
+    /** DEFAULT_LEVEL is null while LogContext is being initialized (configurables log their initialization). */
+    private static Level defaultLevel() {
+        Configurable<Level> defaultLevel = DEFAULT_LEVEL;
+        return (defaultLevel != null) ? defaultLevel.get() : Level.INFO;
+    }
+
 }
\ No newline at end of file
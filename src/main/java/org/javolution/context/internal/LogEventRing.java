@@ -0,0 +1,163 @@
+/*
+ * Javolution - Java(TM) Solution for Real-Time and Embedded Systems
+ * Copyright (C) 2012 - Javolution (http://javolution.org/)
+ * All rights reserved.
+ *
+ * Permission to use, copy, modify, and distribute this software is
+ * freely granted, provided that this notice is preserved.
+ */
+package org.javolution.context.internal;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import org.javolution.context.LogContext.Level;
+import org.javolution.text.TextBuilder;
+
+/**
+ * A preallocated ring of reusable log events (multiple producers, single consumer).
+ *
+ * Producers claim a slot, format the message directly into the slot's text builder (the messages are
+ * captured at the time of the call) and publish it. The consumer processes the published events in batches
+ * and releases their slots once per batch. Once the text builders have grown to the size of the messages
+ * logged, logging does not allocate memory; no monitor is used (waiting threads spin then park). The text
+ * builders of exceptionally large messages are replaced once handled (not retained by the ring).
+ */
+final class LogEventRing {
+
+    private static final long PRODUCER_PARK_NANOS = 50000; // Waits for the consumer when the ring is full.
+    private static final int MAX_RETAINED_LENGTH = 1024; // Larger text builders are not kept once handled.
+    private static final int SPINS = (Runtime.getRuntime().availableProcessors() > 1) ? 1 << 7 : 0;
+
+    private final Event[] slots;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong(); // Next sequence to claim.
+    private volatile long head; // Next sequence to consume (slots before are free).
+    private volatile Thread waitingConsumer; // Consumer parked (if any).
+
+    /** Creates a ring of the specified capacity (rounded up to the next power of two). */
+    LogEventRing(int capacity) {
+        int n = (capacity <= 1) ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+        slots = new Event[n];
+        mask = n - 1;
+        for (int i = 0; i < n; i++)
+            slots[i] = new Event(i - n); // Not published.
+    }
+
+    /** Returns the number of slots. */
+    int capacity() {
+        return slots.length;
+    }
+
+    /**
+     * Claims the next event slot, waiting if necessary for the consumer to release it; the event has to be
+     * {@link #publish published} (even if its formatting fails).
+     */
+    Event claim() {
+        long sequence = tail.getAndIncrement();
+        while (sequence - head >= slots.length) // Full.
+            LockSupport.parkNanos(this, PRODUCER_PARK_NANOS);
+        Event event = slots[(int) sequence & mask];
+        event.claimed = sequence;
+        event.text.clear();
+        return event;
+    }
+
+    /**
+     * Claims the next event slot if available; returns {@code null} if the ring is full. The event returned
+     * has to be {@link #publish published}.
+     */
+    Event tryClaim() {
+        while (true) {
+            long sequence = tail.get();
+            if (sequence - head >= slots.length) return null; // Full.
+            if (!tail.compareAndSet(sequence, sequence + 1)) continue;
+            Event event = slots[(int) sequence & mask];
+            event.claimed = sequence;
+            event.text.clear();
+            return event;
+        }
+    }
+
+    /** Returns the number of events claimed and not yet consumed. */
+    int size() {
+        return (int) (tail.get() - head);
+    }
+
+    /** Makes the specified event visible to the consumer. */
+    void publish(Event event) {
+        event.published = event.claimed;
+        Thread consumer = waitingConsumer;
+        if (consumer != null) LockSupport.unpark(consumer);
+    }
+
+    /**
+     * Passes up to the specified number of published events to the specified handler (consumer only);
+     * the slots are released once the whole batch is processed. Returns the number of events processed.
+     */
+    int drainTo(Handler handler, int max) {
+        long pos = head;
+        int count = 0;
+        try {
+            while (count < max) {
+                Event event = slots[(int) pos & mask];
+                if (event.published != pos) break; // Not published yet.
+                count++;
+                pos++;
+                handler.handle(event);
+                event.error = null; // No reference retained.
+                event.fields = null;
+                if (event.text.length() > MAX_RETAINED_LENGTH) event.text = new TextBuilder();
+            }
+        } finally {
+            head = pos; // Releases the slots.
+        }
+        return count;
+    }
+
+    /** Waits until an event is published (consumer only). */
+    void awaitEvent() throws InterruptedException {
+        for (int i = 0; i < SPINS; i++)
+            if (isPublished()) return;
+        waitingConsumer = Thread.currentThread();
+        try {
+            while (!isPublished()) {
+                LockSupport.park(this);
+                if (Thread.interrupted()) throw new InterruptedException();
+            }
+        } finally {
+            waitingConsumer = null;
+        }
+    }
+
+    /** Indicates if all the events claimed have been consumed. */
+    boolean isEmpty() {
+        return head == tail.get();
+    }
+
+    private boolean isPublished() {
+        long pos = head;
+        return slots[(int) pos & mask].published == pos;
+    }
+
+    /** Handles the events of the ring (consumer). */
+    interface Handler {
+        void handle(Event event);
+    }
+
+    /** A reusable log event slot. */
+    static final class Event {
+        TextBuilder text = new TextBuilder(); // The formatted message (set by the consumer before release).
+        Level level;
+        Throwable error;
+        Object[] fields; // Diagnostic context (immutable).
+        long time; // Milliseconds since the epoch.
+        long claimed; // Sequence of the producer owning the slot.
+        volatile long published; // Sequence published.
+
+        private Event(long published) {
+            this.published = published;
+        }
+    }
+
+}
@@ -0,0 +1,253 @@
+/*
+ * Javolution - Java(TM) Solution for Real-Time and Embedded Systems
+ * Copyright (C) 2012 - Javolution (http://javolution.org/)
+ * All rights reserved.
+ *
+ * Permission to use, copy, modify, and distribute this software is
+ * freely granted, provided that this notice is preserved.
+ */
+package org.javolution.context.internal;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+import org.javolution.context.LogContext.FileForce;
+import org.javolution.context.LogContext.FileFormat;
+import org.javolution.context.LogContext.Level;
+import org.javolution.io.UTF8ByteBufferWriter;
+import org.javolution.text.TextBuilder;
+
+/**
+ * A log file sink; log lines are encoded (UTF-8) into a direct byte buffer which is written to the file
+ * channel when full or when the batch of events is {@link #flush flushed}. Log files are rolled when they
+ * reach a maximum size and/or at the end of each period of time (e.g. daily); rolled files are suffixed
+ * with the time of rolling (e.g. `app.log.2026-10-18T00-00-00`).
+ *
+ * Log lines are formatted either as text `2026-10-18T14:32:05.123Z INFO <message> key=value ...` (UTC time)
+ * followed by the stack trace of the error (if any), or as JSON objects (one per line) holding the time, level,
+ * message, diagnostic context fields and error. Except for errors, appending does not allocate memory (the 
+ * diagnostic context values are formatted through a reusable text builder).
+ */
+final class LogFileAppender {
+
+    private static final int BUFFER_CAPACITY = 1 << 18;
+    private static final int MAX_BYTES_PER_CHAR = 4; // UTF-8 (low surrogates complete a 4 bytes sequence).
+    private static final long DAY = 86400000L; // Milliseconds.
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final File file;
+    private final FileFormat format;
+    private final long rollingSize; // Bytes (0 for no rolling based on size).
+    private final long rollingPeriod; // Milliseconds (0 for no rolling based on time).
+    private final FileForce force;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_CAPACITY);
+    private final UTF8ByteBufferWriter encoder = new UTF8ByteBufferWriter(buffer);
+    private final char[] timestamp = new char[24];
+    private final TextBuilder value = new TextBuilder(); // Reusable.
+    private FileChannel channel;
+    private long size; // Bytes written to the current file.
+    private long rollTime; // Time of the next rolling.
+
+    /** Creates an appender to the specified file (opened in append mode). */
+    LogFileAppender(File file, FileFormat format, long rollingSize, long rollingPeriod, FileForce force) 
+            throws IOException {
+        this.file = file;
+        this.format = format;
+        this.rollingSize = rollingSize;
+        this.rollingPeriod = rollingPeriod;
+        this.force = force;
+        open(System.currentTimeMillis());
+    }
+
+    /** Returns the log file. */
+    File getFile() {
+        return file;
+    }
+
+    /** Appends a log line (buffered); the fields are the diagnostic context (flattened key/value pairs). */
+    void append(long time, Level level, CharSequence message, Object[] fields, Throwable error) 
+            throws IOException {
+        if (((rollingSize > 0) && (size + buffer.position() >= rollingSize)) || (time >= rollTime))
+            roll(time);
+        formatTime(time, timestamp);
+        if (format == FileFormat.JSON) {
+            appendJSON(level, message, fields, error);
+            return;
+        }
+        write(timestamp, timestamp.length);
+        write(' ');
+        write(level.name());
+        write(' ');
+        write(message);
+        for (int i = 0; i < fields.length; i += 2) {
+            write(' ');
+            write((CharSequence) fields[i]);
+            write('=');
+            write(format(fields[i + 1]));
+        }
+        write('\n');
+        if (error != null) write(stackTrace(error));
+    }
+
+    private void appendJSON(Level level, CharSequence message, Object[] fields, Throwable error) 
+            throws IOException {
+        write("{\"time\":\"");
+        write(timestamp, timestamp.length);
+        write("\",\"level\":\"");
+        write(level.name());
+        write("\",\"message\":");
+        writeJSON(message);
+        for (int i = 0; i < fields.length; i += 2) {
+            write(',');
+            writeJSON((CharSequence) fields[i]);
+            write(':');
+            writeJSON(format(fields[i + 1]));
+        }
+        if (error != null) {
+            write(",\"error\":");
+            writeJSON(stackTrace(error));
+        }
+        write("}\n");
+    }
+
+    /** Returns the textual representation of the specified value (reusable). */
+    private CharSequence format(Object obj) {
+        if (obj instanceof CharSequence) return (CharSequence) obj;
+        return value.clear().append(obj);
+    }
+
+    private static CharSequence stackTrace(Throwable error) {
+        StringWriter trace = new StringWriter();
+        error.printStackTrace(new PrintWriter(trace));
+        return trace.getBuffer();
+    }
+
+    /** Writes the specified characters as a JSON string. */
+    private void writeJSON(CharSequence csq) throws IOException {
+        write('"');
+        for (int i = 0, n = csq.length(); i < n; i++) {
+            char c = csq.charAt(i);
+            if ((c == '"') || (c == '\\')) {
+                write('\\');
+                write(c);
+            } else if (c == '\n') {
+                write("\\n");
+            } else if (c == '\r') {
+                write("\\r");
+            } else if (c == '\t') {
+                write("\\t");
+            } else if (c < 0x20) {
+                write("\\u00");
+                write(HEX[c >> 4]);
+                write(HEX[c & 0xF]);
+            } else {
+                write(c);
+            }
+        }
+        write('"');
+    }
+
+    /** Writes the buffered lines to the file (forced to the storage device if the policy is per batch). */
+    void flush() throws IOException {
+        drain();
+        if (force == FileForce.BATCH) channel.force(false);
+    }
+
+    /** Flushes and closes the log file. */
+    void close() throws IOException {
+        try {
+            drain();
+            if (force != FileForce.NEVER) channel.force(false);
+        } finally {
+            channel.close();
+        }
+    }
+
+    private void open(long time) throws IOException {
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+        size = channel.size();
+        rollTime = (rollingPeriod > 0) ? (Math.floorDiv(time, rollingPeriod) + 1) * rollingPeriod : Long.MAX_VALUE;
+    }
+
+    private void roll(long time) throws IOException {
+        close();
+        char[] chars = new char[24];
+        formatTime(time, chars);
+        String suffix = new String(chars, 0, 19).replace(':', '-'); // Valid file name on all platforms.
+        File rolled = new File(file.getPath() + "." + suffix);
+        for (int i = 1; rolled.exists(); i++)
+            rolled = new File(file.getPath() + "." + suffix + "." + i);
+        if (!file.renameTo(rolled)) throw new IOException("Cannot roll " + file + " to " + rolled);
+        open(time);
+    }
+
+    /** Writes the buffer content to the file channel. */
+    private void drain() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining())
+            size += channel.write(buffer);
+        buffer.clear();
+    }
+
+    private void write(char c) throws IOException {
+        if (buffer.remaining() < MAX_BYTES_PER_CHAR) drain();
+        encoder.write(c);
+    }
+
+    private void write(CharSequence csq) throws IOException {
+        for (int i = 0, n = csq.length(); i < n;) {
+            int end = Math.min(n, i + buffer.remaining() / MAX_BYTES_PER_CHAR);
+            if (i == end) {
+                drain();
+                continue;
+            }
+            while (i < end)
+                encoder.write(csq.charAt(i++));
+        }
+    }
+
+    private void write(char[] chars, int length) throws IOException {
+        if (buffer.remaining() < length * MAX_BYTES_PER_CHAR) drain();
+        encoder.write(chars, 0, length);
+    }
+
+    /** Formats the specified time as `yyyy-MM-ddTHH:mm:ss.SSSZ` (UTC) without allocating memory. */
+    static void formatTime(long time, char[] chars) {
+        long z = Math.floorDiv(time, DAY) + 719468; // Days from 0000-03-01.
+        int millis = (int) Math.floorMod(time, DAY);
+        long era = Math.floorDiv(z, 146097);
+        int doe = (int) (z - era * 146097); // Day of era.
+        int yoe = (doe - doe / 1460 + doe / 36524 - doe / 146096) / 365; // Year of era.
+        int doy = doe - (365 * yoe + yoe / 4 - yoe / 100); // Day of year (from March).
+        int mp = (5 * doy + 2) / 153;
+        int day = doy - (153 * mp + 2) / 5 + 1;
+        int month = (mp < 10) ? mp + 3 : mp - 9;
+        int year = (int) (yoe + era * 400) + ((month <= 2) ? 1 : 0);
+        digits(year, chars, 0, 4);
+        chars[4] = '-';
+        digits(month, chars, 5, 2);
+        chars[7] = '-';
+        digits(day, chars, 8, 2);
+        chars[10] = 'T';
+        digits(millis / 3600000, chars, 11, 2);
+        chars[13] = ':';
+        digits(millis / 60000 % 60, chars, 14, 2);
+        chars[16] = ':';
+        digits(millis / 1000 % 60, chars, 17, 2);
+        chars[19] = '.';
+        digits(millis % 1000, chars, 20, 3);
+        chars[23] = 'Z';
+    }
+
+    private static void digits(int value, char[] chars, int offset, int count) {
+        for (int i = offset + count - 1; i >= offset; i--, value /= 10)
+            chars[i] = (char) ('0' + value % 10);
+    }
+
+}
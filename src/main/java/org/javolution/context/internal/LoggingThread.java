@@ -8,20 +8,41 @@
  */
 package org.javolution.context.internal;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.javolution.context.LogContext;
 import org.javolution.context.LogContext.Level;
+import org.javolution.context.LogContext.Overflow;
+import org.javolution.lang.Configurable;
 import org.javolution.osgi.internal.OSGiServices;
 import org.javolution.text.TextBuilder;
-import org.javolution.util.FastTable;
 import org.osgi.service.log.LogService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
 
 /** 
- * Thread providing asynchronous processing of the log events.
+ * Thread providing asynchronous processing of the log events. Messages are formatted by the threads logging
+ * them into the reusable slots of a {@link LogEventRing}; this thread forwards the events to the logging 
+ * back-ends in batches (the {@link LogFileAppender log file} if any is written once per batch).
  */
-class LoggingThread extends Thread {
+class LoggingThread extends Thread implements LogEventRing.Handler {
     private static final Logger LOG = LoggerFactory.getLogger(LoggingThread.class);
-    private final FastTable<Event> eventQueue = new FastTable<Event>();
+    private static final int BATCH_SIZE = 256;
+    private static final int SAMPLING = 64; // One event kept out of SAMPLING (Overflow.SAMPLE). 
+    private static final long SHUTDOWN_TIMEOUT = 10000; // Maximum exit delay (milliseconds).
+    private final LogEventRing eventQueue = new LogEventRing(queueCapacity());
+    private final LongAdder queuedCount = new LongAdder();
+    private final LongAdder droppedCount = new LongAdder();
+    private final AtomicLong overflowCount = new AtomicLong();
+    private Object[] logServices; // For the current batch.
+    private LogFileAppender appender; // Null if no log file.
+    private String filePath = ""; // The log file path configured.
+    private volatile boolean busy; // Processing a batch.
+    private Object[] mdcFields = new Object[0]; // Diagnostic context currently in the MDC (this thread only).
 
     /** Default Constructor.*/
     public LoggingThread() {
@@ -30,13 +51,12 @@ class LoggingThread extends Thread {
         this.start();
         Thread hook = new Thread(new Runnable() {
             @Override
-            public void run() { // Maintains the VM alive until the event queue is flushed 
-                synchronized (eventQueue) {
-                    try {
-                        while (!eventQueue.isEmpty())
-                            eventQueue.wait();
-                    } catch (InterruptedException e) {
-                    }
+            public void run() { // Maintains the VM alive until the event queue is flushed (bounded delay)
+                try {
+                    long deadline = System.currentTimeMillis() + SHUTDOWN_TIMEOUT;
+                    while ((!eventQueue.isEmpty() || busy) && (System.currentTimeMillis() < deadline))
+                        Thread.sleep(1);
+                } catch (InterruptedException e) {
                 }
             }
         });
@@ -47,42 +67,181 @@ class LoggingThread extends Thread {
     public void run() {
         while (true) {
             try {
-                Event event;
-                synchronized (eventQueue) {
-                    while (eventQueue.isEmpty())
-                        eventQueue.wait();
-                    event = eventQueue.pollLast();
-                    eventQueue.notify();
-                }
-               TextBuilder tmp = new TextBuilder(event.prefix);
-               for (Object obj : event.messages) 
-                   tmp.append(obj);
-               tmp.append(event.suffix);
-               String message = tmp.toString();
-               Object[] logServices = OSGiServices.getLogServices();
-               for (Object obj : logServices) {
-                   log((LogService)obj, event.level, message, event.error);
-               }
-               logSLF4J(event.level, message, event.error);    
+                eventQueue.awaitEvent();
+                busy = true;
+                logServices = OSGiServices.getLogServices(); // Once per batch.
+                updateAppender();
+                while (eventQueue.drainTo(this, BATCH_SIZE) == BATCH_SIZE) {}
+                if (appender != null) appender.flush();
+            } catch (IOException error) {
+                closeAppender(error);
             } catch (InterruptedException error) {
                 LOG.error("An Error Occurred While Logging", error);
+            } catch (RuntimeException error) { // Keeps the logging thread alive (e.g. failing back-end).
+                LOG.error("An Error Occurred While Logging", error);
+            } finally {
+                busy = false;
+            }
+        }
+    }
+
+    /** Opens, closes or reopens the log file according to the current configuration. */
+    private void updateAppender() {
+        Configurable<String> file = LogContext.FILE; // Null while LogContext is being initialized.
+        String path = (file != null) ? file.get() : "";
+        if (path.equals(filePath)) return; // No change.
+        filePath = path;
+        if (appender != null) closeAppender(null);
+        if (path.isEmpty()) return;
+        try {
+            appender = new LogFileAppender(new File(path), LogContext.FILE_FORMAT.get(), 
+                    LogContext.FILE_ROLLING_SIZE.get(), LogContext.FILE_ROLLING_PERIOD.get(), 
+                    LogContext.FILE_FORCE.get());
+        } catch (IOException error) {
+            filePath = null; // Retried by the next batch.
+            LOG.error("Cannot Open Log File " + path, error);
+        }
+    }
+
+    /** 
+     * Closes the log file (log events are then forwarded to SLF4J); on error, the log file is reopened 
+     * by the next batch.
+     */
+    private void closeAppender(IOException error) {
+        LogFileAppender tmp = appender;
+        appender = null;
+        if (error != null) {
+            filePath = null; // Reopened by the next batch (e.g. failed roll).
+            LOG.error("Cannot Write To Log File " + tmp.getFile(), error);
+        }
+        try {
+            tmp.close();
+        } catch (IOException e) {
+            LOG.error("Cannot Close Log File " + tmp.getFile(), e);
+        }
+    }
+
+    /** Returns the number of events queued. */
+    long getQueuedCount() {
+        return queuedCount.sum();
+    }
+
+    /** Returns the number of events dropped (queue full). */
+    long getDroppedCount() {
+        return droppedCount.sum();
+    }
+
+    /** 
+     * Formats the specified messages into the next event slot (current thread); if the queue is full,
+     * the event may be dropped depending upon the overflow policy.
+     */
+    public void queueEvent(Level level, String prefix, String suffix, Object[] messages, Object[] fields,
+            Throwable error) {
+        LogEventRing.Event event = eventQueue.tryClaim();
+        if (event == null) { // Full.
+            if (!isKept(level)) {
+                droppedCount.increment();
+                return;
+            }
+            event = eventQueue.claim(); // Waits.
+        }
+        queuedCount.increment();
+        try {
+            event.level = level;
+            event.error = error;
+            event.fields = fields;
+            event.time = System.currentTimeMillis();
+            TextBuilder text = event.text;
+            text.append(prefix);
+            for (Object obj : messages) {
+                if (obj instanceof CharSequence) text.append((CharSequence) obj); 
+                else text.append(obj); 
             }
+            text.append(suffix);
+        } catch (RuntimeException e) { // Failing toString(), the event is still published.
+            event.text.append(" [Formatting Error: ").append(e).append(']');
+        } finally {
+            eventQueue.publish(event);
         }
     }
 
-    public void queueEvent(Level level, String prefix, String suffix, Object[] messages, Throwable error) {
-        Event event = new Event();
-        event.level = level;
-        event.prefix = prefix;
-        event.suffix = suffix;
-        event.messages = messages;
-        event.error = error;
-        synchronized (eventQueue) {
-              eventQueue.addFirst(event);
-              eventQueue.notify();
+    /** Indicates if an event which cannot be queued (queue full) should be kept (waiting for the queue). */
+    private boolean isKept(Level level) {
+        Configurable<Overflow> overflow = LogContext.OVERFLOW; // Null while LogContext is being initialized.
+        switch ((overflow != null) ? overflow.get() : Overflow.BLOCK) {
+        case DROP_NEWEST:
+            return false;
+        case DROP_BELOW_LEVEL:
+            Configurable<Level> threshold = LogContext.OVERFLOW_LEVEL;
+            return (threshold == null) || (level.compareTo(threshold.get()) >= 0);
+        case SAMPLE:
+            return overflowCount.getAndIncrement() % SAMPLING == 0;
+        default:
+            return true;
+        }
+    }
+
+    /** Returns the capacity of the event queue (configurable). */
+    private static int queueCapacity() {
+        Configurable<Integer> capacity = LogContext.QUEUE_CAPACITY;
+        if (capacity != null) return capacity.get(); 
+        // LogContext being initialized (the logging thread is created when its configurables log).
+        try {
+            String property = System.getProperty(LogContext.class.getName() + "#QUEUE_CAPACITY");
+            if (property != null) return Integer.parseInt(property);
+        } catch (SecurityException | NumberFormatException e) {
+            // Default capacity.
+        }
+        return 8192;
+    }
+
+    @Override
+    public void handle(LogEventRing.Event event) {
+        if (appender != null) {
+            try {
+                appender.append(event.time, event.level, event.text, event.fields, event.error);
+            } catch (IOException error) {
+                closeAppender(error);
+            }
+        }
+        boolean osgi = (logServices != null) && (logServices.length != 0); // None when running outside OSGi.
+        boolean slf4j = (appender == null) && isEnabled(event.level);
+        if (!osgi && !slf4j) return; // No need to build the message.
+        String message = event.text.toString();
+        if (osgi) {
+            for (Object obj : logServices) {
+                log((LogService)obj, event.level, message, event.error);
+            }
+        }
+        if (!slf4j) return;
+        if (event.fields != mdcFields) updateMDC(event.fields);
+        logSLF4J(event.level, message, event.error);
+    }
+
+    /** 
+     * Sets the MDC of this thread to the specified diagnostic context. Diagnostic contexts are copy-on-write, 
+     * the MDC is updated only when it changes from the previous event (values are strings for SLF4J).
+     */
+    private void updateMDC(Object[] fields) {
+        for (int i = 0; i < mdcFields.length; i += 2)
+            MDC.remove((String) mdcFields[i]);
+        for (int i = 0; i < fields.length; i += 2)
+            MDC.put((String) fields[i], String.valueOf(fields[i + 1]));
+        mdcFields = fields;
+    }
+
+    private static boolean isEnabled(Level level) {
+        switch (level) {
+        case DEBUG:
+            return LOG.isDebugEnabled();
+        case INFO:
+            return LOG.isInfoEnabled();
+        case WARNING:
+            return LOG.isWarnEnabled();
+        default:
+            return LOG.isErrorEnabled();
         }
     }
-    
     private void log(LogService logService, Level level, String message, Throwable error) {
         switch (level) {
         case DEBUG:
@@ -131,15 +290,6 @@ class LoggingThread extends Thread {
             else LOG.error(message, error);
             break;
         }
-    }     
-   
-    /** Log event. */
-    private static class Event {
-        Level level;
-        String prefix;
-        String suffix;
-        Object[] messages;
-        Throwable error;
     }
 
 }
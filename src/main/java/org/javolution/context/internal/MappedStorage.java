@@ -0,0 +1,404 @@
+/*
+ * Javolution - Java(TM) Solution for Real-Time and Embedded Systems
+ * Copyright (C) 2012 - Javolution (http://javolution.org/)
+ * All rights reserved.
+ *
+ * Permission to use, copy, modify, and distribute this software is
+ * freely granted, provided that this notice is preserved.
+ */
+package org.javolution.context.internal;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
+
+import org.javolution.context.LogContext;
+
+/**
+ * An append-only, memory-mapped log of resource values with an in-memory index from resource identifiers
+ * to the latest record of each resource.
+ *
+ * Each write appends a new record (the resource identifier, a version number and the value bytes) protected
+ * by a checksum; the index is updated once the record is fully written, so that readers (which do not
+ * synchronize) always see complete values and writes atomically replace the previous values. Upon opening,
+ * the log is scanned to rebuild the index; the scan stops at the first torn record (crash during a write).
+ *
+ * When obsolete records (overwritten or deleted values) take more space than the live records, the log is
+ * compacted in the background into a new generation file; writes are only blocked while the records written
+ * during the compaction are copied.
+ *
+ * The log can only be opened by one storage at a time: an exclusive lock is held on a lock file of the 
+ * directory until the storage is closed (opening fails fast if another process holds it). Version numbers 
+ * only reflect the writes of this storage (modifications by other processes cannot happen).
+ *
+ * Record layout: `length (int), crc (int), version (long), id length (short), id (UTF-8), value length (int,
+ * -1 for deletion), value`; a zero length marks the end of the log.
+ */
+final class MappedStorage {
+
+    private static final long MAGIC = 0x4A41564F4C4F4731L; // "JAVOLOG1"
+    private static final int HEADER_SIZE = 16;
+    private static final int RECORD_OVERHEAD = 4 + 4 + 8 + 2 + 4;
+    private static final int MIN_CAPACITY = 1 << 20;
+    private static final int MAX_CAPACITY = 1 << 30;
+    private static final long COMPACTION_THRESHOLD = 1 << 20; // Minimum log size for compaction.
+    private static final String PREFIX = "data-";
+    private static final String LOG_SUFFIX = ".log";
+    private static final String TMP_SUFFIX = ".tmp";
+    private static final String LOCK_FILE = "data.lock";
+
+    private final File directory;
+    private final FileChannel lockChannel;
+    private final FileLock lock; // Exclusive (single writer).
+    private final Map<String, Entry> index = new ConcurrentHashMap<String, Entry>();
+    private volatile Segment segment; // Current segment (appended to).
+    private long sequence; // Last version number (guarded by this).
+    private long liveBytes; // Size of the records indexed (guarded by this).
+    private boolean compacting; // Guarded by this.
+
+    /** Opens (or creates) the storage log in the specified directory. */
+    MappedStorage(File directory) throws IOException {
+        this.directory = directory;
+        directory.mkdirs();
+        lockChannel = FileChannel.open(new File(directory, LOCK_FILE).toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE);
+        try {
+            lock = lockChannel.tryLock();
+        } catch (OverlappingFileLockException e) { // Held within this process.
+            lockChannel.close();
+            throw new IOException("Storage log already opened: " + directory);
+        }
+        if (lock == null) {
+            lockChannel.close();
+            throw new IOException("Storage log opened by another process: " + directory);
+        }
+        try {
+            open();
+        } catch (IOException error) {
+            lockChannel.close(); // Releases the lock.
+            throw error;
+        }
+    }
+
+    private void open() throws IOException {
+        long generation = 0;
+        File[] files = directory.listFiles();
+        if (files == null) throw new IOException("Cannot access " + directory);
+        for (File file : files) {
+            String name = file.getName();
+            if (!name.startsWith(PREFIX)) continue;
+            if (name.endsWith(TMP_SUFFIX)) {
+                file.delete(); // Incomplete compaction.
+            } else if (name.endsWith(LOG_SUFFIX)) {
+                generation = Math.max(generation, generationOf(name));
+            }
+        }
+        for (File file : files) { // Older generations (crash before deletion after compaction).
+            String name = file.getName();
+            if (name.startsWith(PREFIX) && name.endsWith(LOG_SUFFIX) && (generationOf(name) < generation))
+                file.delete();
+        }
+        segment = (generation == 0) ? new Segment(logFile(1), 1) : recover(logFile(generation), generation);
+    }
+
+    /** Returns the directory of this storage. */
+    File getDirectory() {
+        return directory;
+    }
+
+    /** Returns the value bytes of the specified resource or {@code null} if none (lock-free). */
+    byte[] read(String id) {
+        Entry entry = index.get(id);
+        if (entry == null) return null;
+        byte[] bytes = new byte[entry.valueLength];
+        ByteBuffer buffer = entry.segment.buffer.duplicate();
+        buffer.position(entry.valueOffset);
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    /** 
+     * Returns the version number of the specified resource value or {@code 0} if none (changed only by the 
+     * writes of this storage).
+     */
+    long versionOf(String id) {
+        Entry entry = index.get(id);
+        return (entry != null) ? entry.version : 0;
+    }
+
+    /** Returns the number of resources stored. */
+    int size() {
+        return index.size();
+    }
+
+    /** Returns the size in bytes of the log (including obsolete records). */
+    long logSize() {
+        return segment.position - HEADER_SIZE;
+    }
+
+    /**
+     * Writes the specified value bytes ({@code null} to delete the resource); the new value replaces the
+     * previous one atomically. Returns the version number of the value written.
+     */
+    long write(String id, byte[] value) throws IOException {
+        boolean compact;
+        long version;
+        synchronized (this) {
+            version = ++sequence;
+            Entry entry = segment.append(id, version, value, 0, (value != null) ? value.length : -1);
+            Entry previous = (entry != null) ? index.put(id, entry) : index.remove(id);
+            if (previous != null) liveBytes -= previous.recordLength;
+            if (entry != null) liveBytes += entry.recordLength;
+            long total = segment.position - HEADER_SIZE;
+            compact = !compacting && (total > COMPACTION_THRESHOLD) && (total - liveBytes > liveBytes);
+            if (compact) compacting = true;
+        }
+        if (compact) {
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        doCompact();
+                    } catch (IOException error) {
+                        LogContext.error(error, "Storage compaction failed for ", directory);
+                    }
+                }
+            }, "StorageCompaction");
+            thread.setDaemon(true);
+            thread.start();
+        }
+        return version;
+    }
+
+    /** Forces the content of the log to the storage device. */
+    void force() {
+        segment.buffer.force();
+    }
+
+    /**
+     * Compacts the log (copies the live records into a new generation file), waiting for any background
+     * compaction to complete first. Writes are only blocked while the records written during the compaction
+     * are copied.
+     */
+    void compact() throws IOException {
+        synchronized (this) {
+            while (compacting) // Background compaction in progress.
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            compacting = true;
+        }
+        doCompact();
+    }
+
+    private void doCompact() throws IOException {
+        Segment source;
+        int end;
+        synchronized (this) {
+            source = segment;
+            end = source.position;
+        }
+        try {
+            long generation = source.generation + 1;
+            File tmp = new File(directory, PREFIX + generation + TMP_SUFFIX);
+            Segment target = new Segment(tmp, generation);
+            Map<String, Entry> copies = new ConcurrentHashMap<String, Entry>();
+            for (Map.Entry<String, Entry> e : index.entrySet()) { // Concurrent with writes.
+                Entry entry = e.getValue();
+                if ((entry.segment == source) && (entry.offset < end))
+                    copies.put(e.getKey(), target.copy(e.getKey(), entry));
+            }
+            synchronized (this) { // Copies the records written meanwhile and swaps.
+                long live = 0;
+                for (Map.Entry<String, Entry> e : index.entrySet()) {
+                    Entry entry = e.getValue();
+                    if (entry.segment == source) {
+                        Entry copy = copies.get(e.getKey());
+                        if ((copy == null) || (copy.version != entry.version)) copy = target.copy(e.getKey(), entry);
+                        e.setValue(copy);
+                        entry = copy;
+                    }
+                    live += entry.recordLength;
+                }
+                for (String id : copies.keySet()) // Deleted meanwhile (the copy would be recovered otherwise).
+                    if (!index.containsKey(id)) target.append(id, sequence, null, 0, -1);
+                target.buffer.force();
+                File file = logFile(generation);
+                if (!tmp.renameTo(file)) throw new IOException("Cannot rename " + tmp + " to " + file);
+                target.file = file;
+                liveBytes = live;
+                segment = target;
+            }
+            source.channel.close(); // The mapping remains valid for concurrent readers.
+            source.file.delete();
+        } finally {
+            synchronized (this) {
+                compacting = false;
+                notifyAll();
+            }
+        }
+    }
+
+    /** Closes this storage (the content of the log is forced to the storage device and the lock released). */
+    synchronized void close() throws IOException {
+        try {
+            segment.buffer.force();
+            segment.channel.close();
+        } finally {
+            lockChannel.close(); // Releases the lock.
+        }
+    }
+
+    private Segment recover(File file, long generation) throws IOException {
+        Segment recovered = new Segment(file, generation);
+        ByteBuffer buffer = recovered.buffer.duplicate();
+        CRC32 crc = new CRC32();
+        int pos = HEADER_SIZE;
+        while (pos + 4 <= buffer.capacity()) {
+            int length = buffer.getInt(pos);
+            if ((length < RECORD_OVERHEAD - 4) || (length > buffer.capacity() - pos - 4)) break; // End or torn.
+            ByteBuffer record = buffer.duplicate();
+            record.limit(pos + 4 + length).position(pos + 8);
+            crc.reset();
+            crc.update(record);
+            if ((int) crc.getValue() != buffer.getInt(pos + 4)) break; // Torn record.
+            long version = buffer.getLong(pos + 8);
+            int idLength = buffer.getShort(pos + 16) & 0xFFFF;
+            if (RECORD_OVERHEAD - 4 + idLength > length) break; // Corrupted.
+            byte[] idBytes = new byte[idLength];
+            record.limit(pos + 18 + idLength).position(pos + 18);
+            record.get(idBytes);
+            String id = new String(idBytes, StandardCharsets.UTF_8);
+            int valueLength = buffer.getInt(pos + 18 + idLength);
+            Entry entry = (valueLength < 0) ? null : new Entry(recovered, pos, pos + 22 + idLength, valueLength,
+                    version, 4 + length);
+            Entry previous = (entry != null) ? index.put(id, entry) : index.remove(id);
+            if (previous != null) liveBytes -= previous.recordLength;
+            if (entry != null) liveBytes += entry.recordLength;
+            sequence = Math.max(sequence, version);
+            pos += 4 + length;
+        }
+        recovered.position = pos;
+        return recovered;
+    }
+
+    private File logFile(long generation) {
+        return new File(directory, PREFIX + generation + LOG_SUFFIX);
+    }
+
+    private static long generationOf(String name) {
+        try {
+            return Long.parseLong(name.substring(PREFIX.length(), name.lastIndexOf('.')));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /** A log file mapped in memory. */
+    private static final class Segment {
+        final long generation;
+        final FileChannel channel;
+        File file;
+        volatile MappedByteBuffer buffer; // Remapped when the capacity is increased.
+        int position; // End of the last record (guarded by the storage or owned by the compaction).
+        private final CRC32 crc = new CRC32();
+
+        Segment(File file, long generation) throws IOException {
+            this.file = file;
+            this.generation = generation;
+            this.channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+            long size = channel.size();
+            if (size > MAX_CAPACITY) throw new IOException(file + " is too large");
+            int capacity = MIN_CAPACITY;
+            while (capacity < size)
+                capacity <<= 1;
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+            if (size == 0) {
+                buffer.putLong(0, MAGIC);
+            } else if (buffer.getLong(0) != MAGIC) {
+                channel.close();
+                throw new IOException(file + " is not a storage log");
+            }
+            position = HEADER_SIZE;
+        }
+
+        /** Appends a record, returns its entry ({@code null} for deletion). */
+        Entry append(String id, long version, Object value, int valueOffset, int valueLength)
+                throws IOException {
+            byte[] idBytes = id.getBytes(StandardCharsets.UTF_8);
+            if (idBytes.length > 0xFFFF) throw new IllegalArgumentException("Resource identifier too long");
+            int recordLength = RECORD_OVERHEAD + idBytes.length + Math.max(0, valueLength);
+            ensureCapacity(position + recordLength + 4); // Room for the end mark.
+            ByteBuffer record = buffer.duplicate();
+            int start = position;
+            record.position(start + 8);
+            record.putLong(version);
+            record.putShort((short) idBytes.length);
+            record.put(idBytes);
+            record.putInt(valueLength);
+            if (value instanceof byte[]) {
+                record.put((byte[]) value, valueOffset, valueLength);
+            } else if (value instanceof ByteBuffer) {
+                ByteBuffer src = ((ByteBuffer) value).duplicate();
+                src.limit(valueOffset + valueLength).position(valueOffset);
+                record.put(src);
+            }
+            record.putInt(0); // End mark.
+            record.limit(start + recordLength).position(start + 8);
+            crc.reset();
+            crc.update(record);
+            buffer.putInt(start + 4, (int) crc.getValue());
+            buffer.putInt(start, recordLength - 4); // Makes the record valid.
+            position = start + recordLength;
+            return (valueLength < 0) ? null : new Entry(this, start, start + RECORD_OVERHEAD + idBytes.length,
+                    valueLength, version, recordLength);
+        }
+
+        /** Copies the specified record (from another segment). */
+        Entry copy(String id, Entry entry) throws IOException {
+            return append(id, entry.version, entry.segment.buffer, entry.valueOffset, entry.valueLength);
+        }
+
+        private void ensureCapacity(long required) throws IOException {
+            if (required <= buffer.capacity()) return;
+            if (required > MAX_CAPACITY) throw new IOException("Storage log full: " + file);
+            int capacity = buffer.capacity();
+            while (capacity < required)
+                capacity <<= 1;
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+        }
+    }
+
+    /** The location of the latest value of a resource. */
+    private static final class Entry {
+        final Segment segment;
+        final int offset;
+        final int valueOffset;
+        final int valueLength;
+        final long version;
+        final int recordLength;
+
+        Entry(Segment segment, int offset, int valueOffset, int valueLength, long version, int recordLength) {
+            this.segment = segment;
+            this.offset = offset;
+            this.valueOffset = valueOffset;
+            this.valueLength = valueLength;
+            this.version = version;
+            this.recordLength = recordLength;
+        }
+    }
+
+}
@@ -0,0 +1,163 @@
+/*
+ * Javolution - Java(TM) Solution for Real-Time and Embedded Systems
+ * Copyright (C) 2012 - Javolution (http://javolution.org/)
+ * All rights reserved.
+ *
+ * Permission to use, copy, modify, and distribute this software is
+ * freely granted, provided that this notice is preserved.
+ */
+package org.javolution.context.internal;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * The NUMA nodes of the platform and their CPUs as reported by Linux ({@code /sys/devices/system/node}).
+ * On others platforms (or if the information is not available), there is a single node with all the CPUs.
+ *
+ * Threads can be pinned to the CPUs of a node using the {@code taskset} command (best effort). Since threads
+ * inherit the CPU affinity of the thread starting them, the threads of a node are started by a launcher thread
+ * pinned once to the node CPUs (no command executed per thread).
+ */
+final class NumaTopology {
+
+    private static final String NODES_PATH = "/sys/devices/system/node";
+
+    private final String[] cpuLists; // The CPUs of each node (e.g. "0-7,16-23"), null if unknown.
+    private final int[] cpuCounts; // The number of CPUs of each node.
+    private final Launcher[] launchers; // The launcher of each node, created on demand (guarded by this).
+
+    NumaTopology(String[] cpuLists, int[] cpuCounts) {
+        this.cpuLists = cpuLists;
+        this.cpuCounts = cpuCounts;
+        this.launchers = new Launcher[cpuLists.length];
+    }
+
+    /** Returns the topology with a single node (no placement). */
+    static NumaTopology single() {
+        return new NumaTopology(new String[] { null },
+                new int[] { Runtime.getRuntime().availableProcessors() });
+    }
+
+    /** Returns the topology of the platform (single node if unknown). */
+    static NumaTopology detect() {
+        File[] dirs = new File(NODES_PATH).listFiles();
+        if (dirs == null) return single();
+        Arrays.sort(dirs);
+        String[] cpuLists = new String[dirs.length];
+        int[] cpuCounts = new int[dirs.length];
+        int n = 0;
+        for (File dir : dirs) {
+            if (!dir.getName().matches("node\\d+")) continue;
+            try {
+                String cpuList = new String(Files.readAllBytes(Paths.get(dir.getPath(), "cpulist")),
+                        StandardCharsets.US_ASCII).trim();
+                int count = count(cpuList);
+                if (count == 0) continue; // Memory-only node.
+                cpuLists[n] = cpuList;
+                cpuCounts[n++] = count;
+            } catch (IOException | NumberFormatException e) {
+                return single();
+            }
+        }
+        return (n == 0) ? single() : new NumaTopology(Arrays.copyOf(cpuLists, n), Arrays.copyOf(cpuCounts, n));
+    }
+
+    /** Returns the number of nodes. */
+    int nodes() {
+        return cpuLists.length;
+    }
+
+    /**
+     * Returns the node of a new worker given the number of live workers of each node; workers are spread over
+     * the nodes proportionally to their CPUs (the node with the fewest workers per CPU).
+     */
+    int nodeFor(int[] workers) {
+        int node = 0;
+        for (int i = 1; i < cpuCounts.length; i++)
+            if ((long) workers[i] * cpuCounts[node] < (long) workers[node] * cpuCounts[i]) node = i;
+        return node;
+    }
+
+    /** Starts the specified thread on the specified node (pinned to the node CPUs when possible). */
+    void start(Thread thread, int node) {
+        if (cpuLists[node] == null) {
+            thread.start();
+            return;
+        }
+        Launcher launcher;
+        synchronized (this) {
+            launcher = launchers[node];
+            if (launcher == null) {
+                launcher = launchers[node] = new Launcher(node);
+                launcher.start();
+            }
+        }
+        launcher.starting.add(thread);
+    }
+
+    /** Indicates if the threads started on the specified node are pinned to its CPUs. */
+    synchronized boolean isPinned(int node) {
+        return (launchers[node] != null) && launchers[node].pinned;
+    }
+
+    /** Pins the current thread to the CPUs of the specified node; returns {@code true} if successful. */
+    private boolean pin(int node) {
+        String cpuList = cpuLists[node];
+        if (cpuList == null) return false;
+        try { // The linux thread identifier is found from /proc/thread-self -> <pid>/task/<tid>
+            String tid = Files.readSymbolicLink(Paths.get("/proc/thread-self")).getFileName().toString();
+            Process process = new ProcessBuilder("taskset", "-p", "-c", cpuList, tid).redirectErrorStream(true)
+                    .start();
+            process.getOutputStream().close();
+            boolean pinned = process.waitFor() == 0; // Output (one line) fits in the pipe buffer.
+            process.getInputStream().close();
+            return pinned;
+        } catch (Exception e) { // No taskset command, no procfs, etc.
+            return false;
+        }
+    }
+
+    /** Starts the threads of a node (pinned once, the threads started inherit its CPU affinity). */
+    private final class Launcher extends Thread {
+        final int node;
+        final LinkedBlockingQueue<Thread> starting = new LinkedBlockingQueue<Thread>();
+        volatile boolean pinned;
+
+        Launcher(int node) {
+            super("NumaLauncher@node" + node);
+            this.node = node;
+            setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            pinned = pin(node);
+            while (true) {
+                try {
+                    starting.take().start();
+                } catch (InterruptedException e) {
+                    // Keeps launching.
+                }
+            }
+        }
+    }
+
+    /** Returns the number of CPUs of the specified list (e.g. "0-3,8" has 5 CPUs). */
+    private static int count(String cpuList) {
+        int count = 0;
+        if (cpuList.isEmpty()) return 0;
+        for (String range : cpuList.split(",")) {
+            int dash = range.indexOf('-');
+            count += (dash < 0) ? 1
+                    : Integer.parseInt(range.substring(dash + 1)) - Integer.parseInt(range.substring(0, dash)) + 1;
+        }
+        return count;
+    }
+
+}
@@ -0,0 +1,346 @@
+/*
+ * Javolution - Java(TM) Solution for Real-Time and Embedded Systems
+ * Copyright (C) 2012 - Javolution (http://javolution.org/)
+ * All rights reserved.
+ *
+ * Permission to use, copy, modify, and distribute this software is
+ * freely granted, provided that this notice is preserved.
+ */
+package org.javolution.context.internal;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.Map;
+
+import org.javolution.context.StorageContext.Codec;
+import org.javolution.context.StorageContext.Input;
+import org.javolution.context.StorageContext.Output;
+import org.javolution.io.Struct;
+
+/**
+ * Holds the predefined storage codecs (compact binary encoding of the standard types).
+ */
+@SuppressWarnings({ "rawtypes", "unchecked" })
+public final class StorageCodecs {
+
+    private static final Map<Class<?>, Codec<?>> PREDEFINED = new IdentityHashMap<Class<?>, Codec<?>>();
+
+    private StorageCodecs() {
+    }
+
+    /** Returns the default codec for the specified type. */
+    public static <T> Codec<T> defaultCodec(Class<? extends T> type) {
+        Codec<?> codec = PREDEFINED.get(type);
+        if (codec != null) return (Codec<T>) codec;
+        if (Enum.class.isAssignableFrom(type)) return (Codec<T>) ENUM;
+        if (Struct.class.isAssignableFrom(type)) return (Codec<T>) Codec.STRUCT;
+        return (Codec<T>) Codec.JDK;
+    }
+
+    private static final Codec<Enum> ENUM = new Codec<Enum>() { // By name (constants may be reordered).
+        @Override
+        public void write(Enum obj, Output out) {
+            out.writeString(obj.name());
+        }
+
+        @Override
+        public Enum read(Class<? extends Enum> type, Input in) throws IOException {
+            Class enumType = type.isEnum() ? type : type.getSuperclass(); // Constant with a body.
+            String name = in.readString();
+            try {
+                return Enum.valueOf(enumType, name);
+            } catch (IllegalArgumentException e) {
+                throw new IOException("Unknown constant " + name + " of " + enumType);
+            }
+        }
+    };
+
+    private static final Codec<Collection> COLLECTION = new Codec<Collection>() {
+        @Override
+        public void write(Collection collection, Output out) throws IOException {
+            out.writeVarInt(collection.size());
+            for (Object element : collection)
+                out.writeObject(element);
+        }
+
+        @Override
+        public Collection read(Class<? extends Collection> type, Input in) throws IOException {
+            int size = length(in);
+            Collection collection = (type == ArrayList.class) ? new ArrayList(size) : newInstance(type);
+            for (int i = 0; i < size; i++)
+                collection.add(in.readObject());
+            return collection;
+        }
+    };
+
+    private static final Codec<Map> MAP = new Codec<Map>() {
+        @Override
+        public void write(Map map, Output out) throws IOException {
+            out.writeVarInt(map.size());
+            for (Object obj : map.entrySet()) {
+                Map.Entry entry = (Map.Entry) obj;
+                out.writeObject(entry.getKey());
+                out.writeObject(entry.getValue());
+            }
+        }
+
+        @Override
+        public Map read(Class<? extends Map> type, Input in) throws IOException {
+            int size = length(in);
+            Map map = (type == HashMap.class) ? new HashMap(Math.max(16, size * 4 / 3 + 1)) : newInstance(type);
+            for (int i = 0; i < size; i++)
+                map.put(in.readObject(), in.readObject());
+            return map;
+        }
+    };
+
+    static {
+        PREDEFINED.put(String.class, new Codec<String>() {
+            @Override
+            public void write(String str, Output out) {
+                out.writeString(str);
+            }
+
+            @Override
+            public String read(Class<? extends String> type, Input in) throws IOException {
+                return in.readString();
+            }
+        });
+        PREDEFINED.put(Boolean.class, new Codec<Boolean>() {
+            @Override
+            public void write(Boolean value, Output out) {
+                out.writeBoolean(value);
+            }
+
+            @Override
+            public Boolean read(Class<? extends Boolean> type, Input in) throws IOException {
+                return in.readBoolean();
+            }
+        });
+        PREDEFINED.put(Byte.class, new Codec<Byte>() {
+            @Override
+            public void write(Byte value, Output out) {
+                out.writeByte(value);
+            }
+
+            @Override
+            public Byte read(Class<? extends Byte> type, Input in) throws IOException {
+                return in.readByte();
+            }
+        });
+        PREDEFINED.put(Short.class, new Codec<Short>() {
+            @Override
+            public void write(Short value, Output out) {
+                out.writeVarInt(value);
+            }
+
+            @Override
+            public Short read(Class<? extends Short> type, Input in) throws IOException {
+                return (short) in.readVarInt();
+            }
+        });
+        PREDEFINED.put(Character.class, new Codec<Character>() {
+            @Override
+            public void write(Character value, Output out) {
+                out.writeVarInt(value);
+            }
+
+            @Override
+            public Character read(Class<? extends Character> type, Input in) throws IOException {
+                return (char) in.readVarInt();
+            }
+        });
+        PREDEFINED.put(Integer.class, new Codec<Integer>() {
+            @Override
+            public void write(Integer value, Output out) {
+                out.writeVarInt(value);
+            }
+
+            @Override
+            public Integer read(Class<? extends Integer> type, Input in) throws IOException {
+                return in.readVarInt();
+            }
+        });
+        PREDEFINED.put(Long.class, new Codec<Long>() {
+            @Override
+            public void write(Long value, Output out) {
+                out.writeVarLong(value);
+            }
+
+            @Override
+            public Long read(Class<? extends Long> type, Input in) throws IOException {
+                return in.readVarLong();
+            }
+        });
+        PREDEFINED.put(Float.class, new Codec<Float>() {
+            @Override
+            public void write(Float value, Output out) {
+                out.writeFloat(value);
+            }
+
+            @Override
+            public Float read(Class<? extends Float> type, Input in) throws IOException {
+                return in.readFloat();
+            }
+        });
+        PREDEFINED.put(Double.class, new Codec<Double>() {
+            @Override
+            public void write(Double value, Output out) {
+                out.writeDouble(value);
+            }
+
+            @Override
+            public Double read(Class<? extends Double> type, Input in) throws IOException {
+                return in.readDouble();
+            }
+        });
+        PREDEFINED.put(byte[].class, new Codec<byte[]>() {
+            @Override
+            public void write(byte[] array, Output out) {
+                out.writeVarInt(array.length);
+                out.write(array, 0, array.length);
+            }
+
+            @Override
+            public byte[] read(Class<? extends byte[]> type, Input in) throws IOException {
+                byte[] array = new byte[length(in)];
+                in.read(array, 0, array.length);
+                return array;
+            }
+        });
+        PREDEFINED.put(int[].class, new Codec<int[]>() {
+            @Override
+            public void write(int[] array, Output out) {
+                out.writeVarInt(array.length);
+                for (int value : array)
+                    out.writeVarInt(value);
+            }
+
+            @Override
+            public int[] read(Class<? extends int[]> type, Input in) throws IOException {
+                int[] array = new int[length(in)];
+                for (int i = 0; i < array.length; i++)
+                    array[i] = in.readVarInt();
+                return array;
+            }
+        });
+        PREDEFINED.put(long[].class, new Codec<long[]>() {
+            @Override
+            public void write(long[] array, Output out) {
+                out.writeVarInt(array.length);
+                for (long value : array)
+                    out.writeVarLong(value);
+            }
+
+            @Override
+            public long[] read(Class<? extends long[]> type, Input in) throws IOException {
+                long[] array = new long[length(in)];
+                for (int i = 0; i < array.length; i++)
+                    array[i] = in.readVarLong();
+                return array;
+            }
+        });
+        PREDEFINED.put(float[].class, new Codec<float[]>() {
+            @Override
+            public void write(float[] array, Output out) {
+                out.writeVarInt(array.length);
+                for (float value : array)
+                    out.writeFloat(value);
+            }
+
+            @Override
+            public float[] read(Class<? extends float[]> type, Input in) throws IOException {
+                float[] array = new float[length(in)];
+                for (int i = 0; i < array.length; i++)
+                    array[i] = in.readFloat();
+                return array;
+            }
+        });
+        PREDEFINED.put(double[].class, new Codec<double[]>() {
+            @Override
+            public void write(double[] array, Output out) {
+                out.writeVarInt(array.length);
+                for (double value : array)
+                    out.writeDouble(value);
+            }
+
+            @Override
+            public double[] read(Class<? extends double[]> type, Input in) throws IOException {
+                double[] array = new double[length(in)];
+                for (int i = 0; i < array.length; i++)
+                    array[i] = in.readDouble();
+                return array;
+            }
+        });
+        PREDEFINED.put(String[].class, new Codec<String[]>() {
+            @Override
+            public void write(String[] array, Output out) {
+                out.writeVarInt(array.length);
+                for (String value : array)
+                    out.writeString(value);
+            }
+
+            @Override
+            public String[] read(Class<? extends String[]> type, Input in) throws IOException {
+                String[] array = new String[length(in)];
+                for (int i = 0; i < array.length; i++)
+                    array[i] = in.readString();
+                return array;
+            }
+        });
+        PREDEFINED.put(ArrayList.class, COLLECTION); // Standard collections without state other than elements.
+        PREDEFINED.put(LinkedList.class, COLLECTION);
+        PREDEFINED.put(ArrayDeque.class, COLLECTION);
+        PREDEFINED.put(HashSet.class, COLLECTION);
+        PREDEFINED.put(LinkedHashSet.class, COLLECTION);
+        PREDEFINED.put(HashMap.class, MAP); // Not LinkedHashMap (its access order is not accessible).
+    }
+
+    /**
+     * Indicates if the mutable objects reachable from the specified value through the collection and map codecs 
+     * are neither shared nor cyclic (codecs do not preserve references, unlike Java serialization).
+     */
+    static boolean isTree(Object value) {
+        IdentityHashMap<Object, Object> visited = new IdentityHashMap<Object, Object>();
+        ArrayDeque<Object> stack = new ArrayDeque<Object>(); // Not recursive (deep nesting).
+        stack.push(value);
+        while (!stack.isEmpty()) {
+            Object obj = stack.pop();
+            if (isImmutable(obj)) continue;
+            if (visited.put(obj, obj) != null) return false; // Shared or cyclic.
+            Codec<?> codec = PREDEFINED.get(obj.getClass());
+            if (codec == COLLECTION) {
+                for (Object element : (Collection) obj)
+                    if (element != null) stack.push(element);
+            } else if (codec == MAP) {
+                for (Object e : ((Map) obj).entrySet()) {
+                    Map.Entry entry = (Map.Entry) e;
+                    if (entry.getKey() != null) stack.push(entry.getKey());
+                    if (entry.getValue() != null) stack.push(entry.getValue());
+                }
+            }
+        }
+        return true;
+    }
+
+    private static boolean isImmutable(Object obj) {
+        Class<?> type = obj.getClass();
+        return (type == String.class) || (obj instanceof Number && PREDEFINED.containsKey(type))
+                || (type == Boolean.class) || (type == Character.class) || (obj instanceof Enum);
+    }
+
+    /** Reads a number of elements (bounded by the input remaining). */
+    private static int length(Input in) throws IOException {
+        int length = in.readVarInt();
+        if ((length < 0) || (length > in.remaining())) throw new IOException("Corrupted data (array length)");
+        return length;
+    }
+
+}
@@ -8,13 +8,17 @@
  */
 package org.javolution.context.internal;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.Serializable;
+import java.nio.file.Files;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.javolution.context.LogContext;
 import org.javolution.context.SecurityContext;
@@ -23,32 +27,55 @@ import org.javolution.context.StorageContext;
 
 /**
  * Holds the default implementation of StorageContext.
+ * 
+ * Values are stored either as Java serialization streams (values without codec or holding shared references, 
+ * readable by previous versions) or as a format tag followed by the value encoded through codecs.
  */
 public final class StorageContextImpl extends StorageContext {
 
+    private static final byte CODEC_FORMAT = 1; // Java serialization streams start with 0xACED.
+    private static volatile MappedStorage mappedStorage; // Opened on first use.
+
+    // Holds class->codec mapping (set) and resolved codecs (searched).
+    private final Map<Class<?>, Codec<?>> classToCodec = new ConcurrentHashMap<Class<?>, Codec<?>>();
+    private final Map<Class<?>, Codec<?>> resolved = new ConcurrentHashMap<Class<?>, Codec<?>>();
+
+    // Holds parent (null if root).
+    private final StorageContextImpl parent;
+
+    /** Default constructor for root */
+    public StorageContextImpl() {
+        parent = null;
+    }
+
+    /** Inner constructor */
+    public StorageContextImpl(StorageContextImpl parent) {
+        this.parent = parent;
+    }
+
     @SuppressWarnings("unchecked")
     @Override
     public <V extends Serializable> V read(Resource<V> resource)
             throws SecurityException {
         SecurityContext.check(new Permission<Resource<V>>(Resource.class,
-                "write", resource));
+                "read", resource));
         try {
-            File file = new File(FILE_STORAGE_LOCATION.get(),
-                    resource.uniqueID());
-            if (file.exists()) {
-                LogContext.debug("Read resource file ", file.getAbsolutePath());
+            byte[] bytes;
+            if (ENGINE.get() == Engine.MAPPED_LOG) {
+                bytes = mappedStorage().read(resource.uniqueID());
+                if (bytes == null) return null;
             } else {
-                LogContext.debug("Resource file ", file.getAbsolutePath(),
-                        " does not exist.");
-                return null;
+                File file = new File(FILE_STORAGE_LOCATION.get(),
+                        resource.uniqueID());
+                if (!file.exists()) {
+                    if (LogContext.isDebugEnabled())
+                        LogContext.debug("Resource file ", file.getAbsolutePath(), " does not exist.");
+                    return null;
+                }
+                if (LogContext.isDebugEnabled()) LogContext.debug("Read resource file ", file.getAbsolutePath());
+                bytes = Files.readAllBytes(file.toPath());
             }
-
-            FileInputStream fileIn = new FileInputStream(file);
-            ObjectInputStream in = new ObjectInputStream(fileIn);
-            V value = (V) in.readObject();
-            in.close();
-            fileIn.close();
-            return value;
+            return (V) decode(bytes);
         } catch (IOException e1) {
             LogContext.error(e1);
         } catch (ClassNotFoundException e2) {
@@ -64,24 +91,123 @@ public final class StorageContextImpl extends StorageContext {
         SecurityContext.check(new Permission<Resource<V>>(Resource.class,
                 "write", resource));
         try {
+            if (ENGINE.get() == Engine.MAPPED_LOG) {
+                mappedStorage().write(resource.uniqueID(), (value != null) ? encode(value) : null);
+                return;
+            }
             File storage = FILE_STORAGE_LOCATION.get();
             storage.mkdirs();
-            File file = new File(storage, resource.uniqueID());
-            LogContext.debug("Write resource ", file.getAbsolutePath());
-
-            FileOutputStream fileOut = new FileOutputStream(file);
-            ObjectOutputStream out = new ObjectOutputStream(fileOut);
-            out.writeObject(value);
-            out.close();
-            fileOut.close();
+            writeFile(new File(storage, resource.uniqueID()), value, false);
         } catch (IOException error) {
             LogContext.error(error);
         }
     }
 
+    @Override
+    protected void commit(Resource<?>[] resources, Serializable[] values, int length) throws IOException {
+        if (ENGINE.get() == Engine.MAPPED_LOG) { // Single force for the whole group.
+            MappedStorage storage = mappedStorage();
+            for (int i = 0; i < length; i++)
+                storage.write(resources[i].uniqueID(), (values[i] != null) ? encode(values[i]) : null);
+            storage.force();
+            return;
+        }
+        File storage = FILE_STORAGE_LOCATION.get();
+        storage.mkdirs();
+        for (int i = 0; i < length; i++)
+            writeFile(new File(storage, resources[i].uniqueID()), values[i], true);
+    }
+
+    private void writeFile(File file, Object value, boolean force) throws IOException {
+        if (LogContext.isDebugEnabled()) LogContext.debug("Write resource ", file.getAbsolutePath());
+        FileOutputStream fileOut = new FileOutputStream(file);
+        try {
+            fileOut.write(encode(value));
+            if (force) fileOut.getChannel().force(false);
+        } finally {
+            fileOut.close();
+        }
+    }
+
+    @Override
+    public <T> void setCodec(Class<? extends T> type, Codec<T> codec) {
+        classToCodec.put(type, codec);
+        resolved.clear();
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    protected <T> Codec<T> searchCodec(Class<? extends T> type) {
+        Codec<T> codec = (Codec<T>) resolved.get(type);
+        if (codec != null) return codec;
+        for (Class<?> cls = type; cls != null; cls = cls.getSuperclass()) {
+            codec = (Codec<T>) classToCodec.get(cls);
+            if (codec != null) break;
+        }
+        if (codec == null) codec = (parent != null) ? parent.searchCodec(type) : StorageCodecs.defaultCodec(type);
+        resolved.put(type, codec);
+        return codec;
+    }
+
+    @Override
+    protected long lastModified(Resource<?> resource) {
+        if (ENGINE.get() == Engine.MAPPED_LOG) {
+            try {
+                return mappedStorage().versionOf(resource.uniqueID()); // Writes of this process only.
+            } catch (IOException error) {
+                return 0;
+            }
+        }
+        return new File(FILE_STORAGE_LOCATION.get(), resource.uniqueID()).lastModified();
+    }
+
     @Override
     protected StorageContext inner() {
-        return this;
+        return new StorageContextImpl(this);
+    }
+
+    /** 
+     * Encodes the specified value using the codecs of this context (Java serialization stream if none or if the 
+     * value holds shared or cyclic references).
+     */
+    byte[] encode(Object value) throws IOException {
+        if ((value == null) || (searchCodec(value.getClass()) == Codec.JDK) || !StorageCodecs.isTree(value)) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            ObjectOutputStream out = new ObjectOutputStream(bytes);
+            out.writeObject(value);
+            out.close();
+            return bytes.toByteArray();
+        }
+        Output out = new Output(this);
+        out.writeByte(CODEC_FORMAT);
+        out.writeObject(value);
+        return out.toByteArray();
+    }
+
+    /** Decodes the specified value using the codecs of this context. */
+    Object decode(byte[] bytes) throws IOException, ClassNotFoundException {
+        if ((bytes.length > 0) && (bytes[0] == CODEC_FORMAT))
+            return new Input(this, bytes, 1, bytes.length - 1).readObject();
+        ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes));
+        try {
+            return in.readObject();
+        } finally {
+            in.close();
+        }
+    }
+
+    /** Returns the storage log at the current storage location (lock-free unless the location changes). */
+    static MappedStorage mappedStorage() throws IOException {
+        File location = FILE_STORAGE_LOCATION.get();
+        MappedStorage storage = mappedStorage;
+        if ((storage != null) && location.equals(storage.getDirectory())) return storage;
+        synchronized (StorageContextImpl.class) {
+            storage = mappedStorage;
+            if ((storage != null) && location.equals(storage.getDirectory())) return storage;
+            if (storage != null) storage.close(); // Mapping remains valid for concurrent readers.
+            mappedStorage = storage = new MappedStorage(location);
+            return storage;
+        }
     }
 
 }
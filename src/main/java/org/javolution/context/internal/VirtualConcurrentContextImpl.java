@@ -0,0 +1,185 @@
+/*
+ * Javolution - Java(TM) Solution for Real-Time and Embedded Systems
+ * Copyright (C) 2012 - Javolution (http://javolution.org/)
+ * All rights reserved.
+ *
+ * Permission to use, copy, modify, and distribute this software is
+ * freely granted, provided that this notice is preserved.
+ */
+package org.javolution.context.internal;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.javolution.context.ConcurrentContext;
+import org.javolution.context.ConcurrentFuture;
+import org.javolution.context.ConcurrentMetrics;
+import org.javolution.lang.MathLib;
+import org.javolution.util.function.Supplier;
+
+/**
+ * Implementation of ConcurrentContext executing each logic on its own virtual thread (JDK 21+)
+ * or on its own daemon thread when virtual threads are not supported by the runtime.
+ * This implementation is intended for blocking (I/O-bound) logics; it is selected when
+ * {@link ConcurrentContext#VIRTUAL_THREADS} is set or when published as an OSGi service.
+ */
+public final class VirtualConcurrentContextImpl extends ConcurrentContext {
+
+    /** The maximum number of logics executing concurrently on virtual threads. */
+    private static final int MAX_CONCURRENCY = 65536;
+    /** The maximum number of logics executing concurrently on platform threads (fallback). */
+    private static final int MAX_PLATFORM_CONCURRENCY = 256;
+    private static final AtomicInteger COUNT = new AtomicInteger();
+
+    private final ThreadFactory factory;
+    private final ConcurrentStatistics statistics;
+    private final VirtualConcurrentContextImpl parent;
+    private volatile int concurrency; // Root concurrency can be changed at any time.
+    private final Completion completion = new Completion();
+
+    /**
+     * Default constructor (root).
+     */
+    public VirtualConcurrentContextImpl() {
+        this.parent = null;
+        this.factory = newThreadFactory();
+        this.statistics = new ConcurrentStatistics();
+        this.concurrency = isVirtual() ? MAX_CONCURRENCY : MAX_PLATFORM_CONCURRENCY;
+        ConcurrentStatistics.register(true, "VirtualConcurrentContext"); // Once for the root published.
+    }
+
+    /**
+     * Inner implementation.
+     */
+    public VirtualConcurrentContextImpl(VirtualConcurrentContextImpl parent) {
+        this.parent = parent;
+        this.factory = parent.factory;
+        this.statistics = parent.statistics;
+        this.concurrency = parent.concurrency;
+    }
+
+    /** Indicates if this context executes logics on virtual threads (the runtime supports them). */
+    public boolean isVirtual() {
+        return !(factory instanceof DaemonThreadFactory);
+    }
+
+    @Override
+    public void execute(Runnable logic) {
+        if (completion.isCancelled()) return;
+        if (completion.pending() < concurrency) {
+            ConcurrentTaskImpl task = new ConcurrentTaskImpl(logic, completion);
+            completion.scheduled();
+            try {
+                factory.newThread(task).start();
+                statistics.scheduled(1);
+                return;
+            } catch (OutOfMemoryError error) { // Cannot create native thread (platform threads).
+                completion.completed(null);
+            }
+        }
+        // Concurrency limit reached, lets do it ourself.
+        statistics.inline();
+        try {
+            logic.run();
+        } catch (Throwable e) {
+            completion.failed(e);
+        }
+    }
+
+    @Override
+    protected <T> ConcurrentFuture<T> async(Supplier<? extends T> computation) {
+        AsyncLogic<T> logic = new AsyncLogic<T>(computation, null);
+        try {
+            factory.newThread(logic.task).start();
+        } catch (OutOfMemoryError error) { // Cannot create native thread (platform threads).
+            logic.run();
+        }
+        return logic.future;
+    }
+
+    @Override
+    public void exit() {
+        long start = System.nanoTime();
+        try { // Before exiting, concurrent logics inherit this context.
+            completion.await();
+        } catch (InterruptedException ex) {
+            completion.failed(ex);
+        }
+        statistics.joined(System.nanoTime() - start);
+        super.exit();
+        completion.rethrow();
+    }
+
+    @Override
+    public void exit(long timeout, TimeUnit unit) {
+        long start = System.nanoTime();
+        boolean completed;
+        try {
+            completed = completion.await(Completion.deadline(timeout, unit));
+        } catch (InterruptedException ex) {
+            completion.failed(ex);
+            completed = true;
+        }
+        statistics.joined(System.nanoTime() - start);
+        super.exit();
+        if (!completed) completion.timeout(timeout, unit); // Abandons stragglers.
+        completion.rethrow();
+    }
+
+    @Override
+    public void cancel() {
+        completion.cancel();
+    }
+
+    @Override
+    public ConcurrentMetrics getMetrics() { // No worker (one thread per logic).
+        return statistics.snapshot(concurrency, new ConcurrentThreadImpl[0], 0);
+    }
+
+    @Override
+    public int getConcurrency() {
+        return concurrency;
+    }
+
+    @Override
+    public void setConcurrency(int concurrency) {
+        if (parent == null) { // Root.
+            this.concurrency = MathLib.max(0, MathLib.min(isVirtual() ? MAX_CONCURRENCY 
+                    : MAX_PLATFORM_CONCURRENCY, concurrency));
+            return;
+        }
+        // The setting of the concurrency can only reduce the number
+        // of concurrent logics allowed in the context.
+        this.concurrency = MathLib.max(0, MathLib.min(parent.concurrency, concurrency));
+    }
+
+    @Override
+    protected ConcurrentContext inner() {
+        return new VirtualConcurrentContextImpl(this);
+    }
+
+    /** Returns the virtual thread factory (Thread.ofVirtual().factory()) if supported by the runtime. */
+    private static ThreadFactory newThreadFactory() {
+        try { // Reflection since the library targets earlier runtimes.
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Method factory = Class.forName("java.lang.Thread$Builder").getMethod("factory");
+            return (ThreadFactory) factory.invoke(builder);
+        } catch (Exception notSupported) {
+            return new DaemonThreadFactory();
+        }
+    }
+
+    /** Fallback factory creating platform daemon threads. */
+    private static final class DaemonThreadFactory implements ThreadFactory {
+
+        @Override
+        public Thread newThread(Runnable logic) {
+            Thread thread = new Thread(logic, "VirtualConcurrentThread-" + COUNT.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+
+}
@@ -0,0 +1,85 @@
+/*
+ * Javolution - Java(TM) Solution for Real-Time and Embedded Systems
+ * Copyright (C) 2012 - Javolution (http://javolution.org/)
+ * All rights reserved.
+ *
+ * Permission to use, copy, modify, and distribute this software is
+ * freely granted, provided that this notice is preserved.
+ */
+package org.javolution.context.internal;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A work-stealing deque (Chase-Lev); the owner thread pushes and pops tasks at the bottom (LIFO) while
+ * other threads steal tasks from the top (FIFO, oldest and usually largest tasks first).
+ */
+final class WorkDeque {
+
+    private static final int INITIAL_CAPACITY = 64; // Power of two.
+
+    private final AtomicInteger top = new AtomicInteger();
+    private volatile int bottom;
+    private volatile AtomicReferenceArray<ConcurrentTaskImpl> tasks
+         = new AtomicReferenceArray<ConcurrentTaskImpl>(INITIAL_CAPACITY);
+
+    /** Pushes the specified task (owner thread only). */
+    void push(ConcurrentTaskImpl task) {
+        int b = bottom;
+        AtomicReferenceArray<ConcurrentTaskImpl> a = tasks;
+        if (b - top.get() >= a.length() - 1) a = grow(a, b);
+        a.set(b & (a.length() - 1), task);
+        bottom = b + 1;
+    }
+
+    /** Pops the most recently pushed task or returns {@code null} if none (owner thread only). */
+    ConcurrentTaskImpl pop() {
+        int b = bottom - 1;
+        AtomicReferenceArray<ConcurrentTaskImpl> a = tasks;
+        bottom = b;
+        int t = top.get();
+        if (t > b) { // Empty.
+            bottom = t;
+            return null;
+        }
+        int i = b & (a.length() - 1);
+        ConcurrentTaskImpl task = a.get(i);
+        if (t == b) { // Last task, races with thieves.
+            if (!top.compareAndSet(t, t + 1)) task = null;
+            bottom = t + 1;
+        } else {
+            a.set(i, null);
+        }
+        return task;
+    }
+
+    /** Steals the oldest task or returns {@code null} if none or if another thread won the race. */
+    ConcurrentTaskImpl steal() {
+        int t = top.get();
+        int b = bottom;
+        if (t >= b) return null;
+        AtomicReferenceArray<ConcurrentTaskImpl> a = tasks;
+        ConcurrentTaskImpl task = a.get(t & (a.length() - 1));
+        return top.compareAndSet(t, t + 1) ? task : null;
+    }
+
+    /** Returns the number of tasks in this deque (approximation). */
+    int size() {
+        return Math.max(0, bottom - top.get());
+    }
+
+    /** Indicates if this deque has tasks (approximation). */
+    boolean isEmpty() {
+        return top.get() >= bottom;
+    }
+
+    private AtomicReferenceArray<ConcurrentTaskImpl> grow(AtomicReferenceArray<ConcurrentTaskImpl> a, int b) {
+        AtomicReferenceArray<ConcurrentTaskImpl> tmp = new AtomicReferenceArray<ConcurrentTaskImpl>(a.length() * 2);
+        for (int i = top.get(); i < b; i++)
+            tmp.set(i & (tmp.length() - 1), a.get(i & (a.length() - 1)));
+        tasks = tmp;
+        return tmp;
+    }
+
+}
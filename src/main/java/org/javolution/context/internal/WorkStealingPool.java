@@ -0,0 +1,284 @@
+/*
+ * Javolution - Java(TM) Solution for Real-Time and Embedded Systems
+ * Copyright (C) 2012 - Javolution (http://javolution.org/)
+ * All rights reserved.
+ *
+ * Permission to use, copy, modify, and distribute this software is
+ * freely granted, provided that this notice is preserved.
+ */
+package org.javolution.context.internal;
+
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.javolution.util.RingQueue;
+import org.javolution.util.RingQueue.Type;
+import org.javolution.util.RingQueue.WaitStrategy;
+
+/**
+ * A pool of worker threads, each one having its own {@link WorkDeque deque}. Tasks scheduled by workers
+ * are pushed to their own deque; tasks scheduled by other threads are placed in a shared submission queue.
+ * Idle workers (and threads joining) take tasks from their own deque first, then from the submission queue,
+ * and finally steal tasks from the other workers.
+ * 
+ * With NUMA placement, workers are grouped per node (and pinned to the node CPUs when possible); each node
+ * has its own submission queue and workers look for tasks on their own node before looking at remote nodes.
+ * Tasks submitted with an affinity are placed on the node {@code affinity % nodes}.
+ * 
+ * The pool is elastic: workers are started on demand (when tasks are submitted and no worker is idle) up to 
+ * the maximum number of workers, and retired after being idle for some time or when the maximum is reduced.
+ */
+final class WorkStealingPool {
+
+    private static final int SUBMISSION_CAPACITY = 4096;
+    private static final long DEFAULT_IDLE_TIMEOUT = 60000; // Milliseconds.
+
+    final NumaTopology topology;
+    final ConcurrentStatistics statistics = new ConcurrentStatistics();
+    private final RingQueue<ConcurrentTaskImpl>[] submissions; // Per node.
+    private final AtomicInteger idleWorkers = new AtomicInteger(); // Waiting and not notified yet.
+    private int wakeups; // Idle workers notified not yet awake (guarded by this).
+    private final long idleTimeout; // Milliseconds.
+    private volatile ConcurrentThreadImpl[] workers = new ConcurrentThreadImpl[0]; // Copy-on-write (guarded by this).
+    private volatile int maxWorkers;
+
+    /** Creates a pool with the specified maximum number of workers without placement. */
+    WorkStealingPool(int maxWorkers) {
+        this(maxWorkers, NumaTopology.single());
+    }
+
+    /** Creates a pool with the specified maximum number of workers spread over the specified nodes. */
+    WorkStealingPool(int maxWorkers, NumaTopology topology) {
+        this(maxWorkers, topology, DEFAULT_IDLE_TIMEOUT);
+    }
+
+    /** 
+     * Creates a pool with the specified maximum number of workers spread over the specified nodes; workers
+     * idle for the specified time (milliseconds) are retired.
+     */
+    @SuppressWarnings("unchecked")
+    WorkStealingPool(int maxWorkers, NumaTopology topology, long idleTimeout) {
+        this.topology = topology;
+        this.maxWorkers = maxWorkers;
+        this.idleTimeout = idleTimeout;
+        submissions = new RingQueue[topology.nodes()];
+        for (int i = 0; i < submissions.length; i++)
+            submissions[i] = new RingQueue<ConcurrentTaskImpl>(SUBMISSION_CAPACITY, Type.MPMC, WaitStrategy.PARK);
+    }
+
+    /** Returns the maximum number of workers. */
+    int getMaxWorkers() {
+        return maxWorkers;
+    }
+
+    /** 
+     * Sets the maximum number of workers; if reduced, workers in excess are retired as soon as they have 
+     * no more task of their own; if increased, workers are started for the tasks waiting.
+     */
+    synchronized void setMaxWorkers(int max) {
+        maxWorkers = max;
+        for (int i = Math.min(queueDepth(), max - workers.length); i > 0; i--)
+            startWorker();
+        notifyAll(); // Idle workers in excess retire.
+    }
+
+    /** Returns the number of tasks waiting to be executed (approximation). */
+    int queueDepth() {
+        int depth = 0;
+        for (RingQueue<ConcurrentTaskImpl> queue : submissions)
+            depth += queue.size();
+        for (ConcurrentThreadImpl worker : workers)
+            depth += worker.deque.size();
+        return depth;
+    }
+
+    /** Returns the workers of this pool (live). */
+    ConcurrentThreadImpl[] workers() {
+        return workers.clone();
+    }
+
+    /** Returns the number of workers. */
+    int size() {
+        return workers.length;
+    }
+
+    /** Returns the specified thread if it is a worker of this pool; {@code null} otherwise. */
+    ConcurrentThreadImpl workerOf(Thread thread) {
+        return (thread instanceof ConcurrentThreadImpl) && ((ConcurrentThreadImpl) thread).pool == this
+                ? (ConcurrentThreadImpl) thread : null;
+    }
+
+    /** Schedules the specified task; returns {@code false} if the task cannot be scheduled (saturation). */
+    boolean submit(ConcurrentTaskImpl task) {
+        return submit(task, -1);
+    }
+
+    /** 
+     * Schedules the specified task on the node corresponding to the specified affinity (if positive); 
+     * returns {@code false} if the task cannot be scheduled (saturation).
+     */
+    boolean submit(ConcurrentTaskImpl task, int affinity) {
+        ConcurrentThreadImpl worker = workerOf(Thread.currentThread());
+        int node = nodeFor(worker, affinity);
+        if ((worker != null) && (worker.node == node)) {
+            worker.deque.push(task);
+        } else if (!submissions[node].offer(task)) {
+            return false;
+        }
+        signal(1);
+        return true;
+    }
+
+    /** 
+     * Wakes up (or starts) workers for the specified number of tasks made visible. Workers notified are not
+     * counted as idle anymore (even if not awake yet), workers are started for the remaining tasks.
+     */
+    private void signal(int count) {
+        if ((idleWorkers.get() == 0) && (workers.length >= maxWorkers)) return; // All workers busy.
+        synchronized (this) {
+            int woken = Math.min(count, idleWorkers.get());
+            if (woken > 0) {
+                idleWorkers.addAndGet(-woken);
+                wakeups += woken;
+                for (int i = 0; i < woken; i++)
+                    notify();
+            }
+            for (int i = Math.min(count - woken, maxWorkers - workers.length); i > 0; i--)
+                startWorker();
+        }
+    }
+
+    /** Starts a new worker (holding the lock). */
+    private void startWorker() {
+        ConcurrentThreadImpl[] current = workers;
+        int[] counts = new int[topology.nodes()]; // Live workers per node.
+        for (ConcurrentThreadImpl w : current)
+            counts[w.node]++;
+        ConcurrentThreadImpl worker = new ConcurrentThreadImpl(this, topology.nodeFor(counts));
+        ConcurrentThreadImpl[] tmp = Arrays.copyOf(current, current.length + 1);
+        tmp[current.length] = worker;
+        workers = tmp;
+        topology.start(worker, worker.node);
+    }
+
+    /** Retires the specified worker (holding the lock). */
+    private void retire(ConcurrentThreadImpl worker) {
+        ConcurrentThreadImpl[] current = workers;
+        ConcurrentThreadImpl[] tmp = new ConcurrentThreadImpl[current.length - 1];
+        for (int i = 0, j = 0; i < current.length; i++)
+            if (current[i] != worker) tmp[j++] = current[i];
+        workers = tmp;
+    }
+
+    /** 
+     * Indicates if the specified worker should retire (the number of workers exceeds the maximum and it has
+     * no task of its own); if so the worker is removed from this pool.
+     */
+    boolean retireIfExcess(ConcurrentThreadImpl worker) {
+        if ((workers.length <= maxWorkers) || !worker.deque.isEmpty()) return false;
+        synchronized (this) {
+            if (workers.length <= maxWorkers) return false;
+            retire(worker);
+            return true;
+        }
+    }
+
+    /** 
+     * Schedules the specified tasks with a single wake-up of the idle workers; returns the number of tasks 
+     * scheduled (the remaining tasks cannot be scheduled due to saturation).
+     */
+    int submitAll(ConcurrentTaskImpl[] tasks) {
+        ConcurrentThreadImpl worker = workerOf(Thread.currentThread());
+        int count = 0;
+        for (ConcurrentTaskImpl task : tasks) {
+            int node = nodeFor(worker, (submissions.length > 1) ? count : -1); // Spreads over nodes.
+            if ((worker != null) && (worker.node == node)) {
+                worker.deque.push(task);
+            } else if (!submissions[node].offer(task)) {
+                break;
+            }
+            count++;
+        }
+        if (count != 0) signal(count);
+        return count;
+    }
+
+    /** Finds a task to execute for the specified worker ({@code null} for external threads). */
+    ConcurrentTaskImpl find(ConcurrentThreadImpl worker) {
+        ConcurrentTaskImpl task = (worker != null) ? worker.deque.pop() : null;
+        if (task != null) return task;
+        int home = (worker != null) ? worker.node : 0;
+        for (int i = 0; i < submissions.length; i++) { // Local node first.
+            int node = (home + i) % submissions.length;
+            task = submissions[node].poll();
+            if (task == null) task = steal(worker, node);
+            if (task == null) continue;
+            if ((worker != null) && (node != home)) worker.remoteCount++;
+            return task;
+        }
+        return null;
+    }
+
+    /** Steals a task from the workers of the specified node. */
+    private ConcurrentTaskImpl steal(ConcurrentThreadImpl worker, int node) {
+        ConcurrentThreadImpl[] workers = this.workers;
+        int n = workers.length;
+        for (int i = 0, start = (n > 1) ? ThreadLocalRandom.current().nextInt(n) : 0; i < n; i++) {
+            ConcurrentThreadImpl victim = workers[(start + i) % n];
+            if ((victim == worker) || (victim.node != node)) continue;
+            ConcurrentTaskImpl task = victim.deque.steal();
+            if (task == null) continue;
+            if (worker != null) worker.stolenCount++;
+            return task;
+        }
+        return null;
+    }
+
+    /** Returns the node where a task with the specified affinity should be scheduled. */
+    private int nodeFor(ConcurrentThreadImpl worker, int affinity) {
+        if (affinity >= 0) return affinity % submissions.length;
+        if (worker != null) return worker.node;
+        return (submissions.length > 1) ? ThreadLocalRandom.current().nextInt(submissions.length) : 0;
+    }
+
+    /** 
+     * Waits until some task might be available (workers only); returns {@code false} if the worker has been 
+     * retired (idle timeout or workers in excess).
+     */
+    boolean awaitWork(ConcurrentThreadImpl worker) throws InterruptedException {
+        synchronized (this) {
+            if (workers.length > maxWorkers) {
+                retire(worker); // Idle, no task of its own.
+                return false;
+            }
+            idleWorkers.incrementAndGet();
+            try {
+                if (hasWork()) return true;
+                long start = System.currentTimeMillis();
+                wait(idleTimeout);
+                if (hasWork()) return true;
+                if ((workers.length > maxWorkers) || (System.currentTimeMillis() - start >= idleTimeout)) {
+                    retire(worker);
+                    return false;
+                }
+                return true;
+            } finally {
+                if (wakeups > 0) {
+                    wakeups--; // Already not counted as idle (any worker awake consumes a wake-up).
+                } else {
+                    idleWorkers.decrementAndGet();
+                }
+            }
+        }
+    }
+
+    private boolean hasWork() {
+        for (RingQueue<ConcurrentTaskImpl> queue : submissions)
+            if (!queue.isEmpty()) return true;
+        for (ConcurrentThreadImpl worker : workers)
+            if (!worker.deque.isEmpty()) return true;
+        return false;
+    }
+
+}
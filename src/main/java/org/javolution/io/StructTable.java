@@ -0,0 +1,415 @@
+/*
+ * Javolution - Java(TM) Solution for Real-Time and Embedded Systems
+ * Copyright (C) 2012 - Javolution (http://javolution.org/)
+ * All rights reserved.
+ *
+ * Permission to use, copy, modify, and distribute this software is
+ * freely granted, provided that this notice is preserved.
+ */
+package org.javolution.io;
+
+import static org.javolution.annotations.Realtime.Limit.CONSTANT;
+import static org.javolution.annotations.Realtime.Limit.LINEAR;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import org.javolution.annotations.Realtime;
+import org.javolution.util.function.Consumer;
+import org.javolution.util.function.Supplier;
+
+/**
+ * <p> A table of {@link Struct} records laid out contiguously off-heap.</p>
+ *
+ * <p> Records are stored back to back (each record occupies exactly
+ *     {@link Struct#size()} bytes) in fixed-size chunks of direct buffers
+ *     which are never moved once allocated. Records are accessed through
+ *     <i>flyweight</i> cursors: a single {@link Struct} instance which is
+ *     {@link Struct#setByteBuffer repositioned} over the record of interest;
+ *     no object is allocated per record.
+ * {@code
+ * public static class Tick extends Struct {
+ *     public final Signed64  time   = new Signed64();
+ *     public final Float64   price  = new Float64();
+ *     public final Signed32  volume = new Signed32();
+ * }
+ * StructTable<Tick> ticks = new StructTable<Tick>(new Supplier<Tick>() {
+ *     public Tick get() { return new Tick(); }
+ * });
+ * Tick tick = ticks.append(); // Cursor positioned on the new (zeroed) record.
+ * tick.time.set(System.nanoTime());
+ * tick.price.set(101.25);
+ *
+ * Tick cursor = ticks.newCursor(); // Cursor for the current thread.
+ * for (int i = 0, n = ticks.size(); i < n; i++)
+ *     total += ticks.get(i, cursor).volume.get();
+ * }</p>
+ *
+ * <p> Each sub-table returned by {@link #trySplit(int)} has its own cursor
+ *     and can be scanned by a different thread, e.g. using a
+ *     {@link org.javolution.context.ConcurrentContext ConcurrentContext}.
+ *     Memory mapped storage is supported by overriding
+ *     {@link #allocate(int, int)}:
+ * {@code
+ * StructTable<Tick> ticks = new StructTable<Tick>(TICK_FACTORY) {
+ *     protected ByteBuffer allocate(int chunk, int capacity) throws ... {
+ *         return channel.map(READ_WRITE, (long) chunk * capacity, capacity);
+ *     }
+ * };}</p>
+ *
+ * <p> Appending is not thread-safe, but records already appended can be
+ *     read concurrently provided each thread uses its own cursor. Records
+ *     appended by copy ({@link #append(Struct)}, {@link #append(ByteBuffer)},
+ *     {@link #appendAll(StructTable)}) are visible to readers only once
+ *     fully written; records appended using {@link #append()} are visible
+ *     as soon as they are appended (zeroed), before being filled.</p>
+ *
+ * @param <S> the type of struct records (outer structs only).
+ *
+ * @author  <a href="mailto:jean-marie@dautelle.com">Jean-Marie Dautelle</a>
+ * @version 7.0, October 18, 2026
+ */
+@Realtime
+public class StructTable<S extends Struct> {
+
+    /**
+     * The maximum number of bytes per chunk (64 MB).
+     */
+    private static final int MAX_CHUNK_BYTES = 1 << 26;
+
+    private final Supplier<? extends S> factory;
+    private final int recordSize;
+    private final ByteOrder byteOrder;
+    private final int chunkShift;
+    private final int chunkMask;
+    private final S cursor;
+    private final boolean isView;
+    private final int offset; // Index of the first record (views).
+    private volatile ByteBuffer[] chunks;
+    private volatile int size; // Published after the records are written.
+    private int zeroed; // Records beyond this index are known to be zero.
+
+    /**
+     * Creates an empty table whose records are created using the specified
+     * factory.
+     *
+     * @param factory the factory returning new (outer) struct instances,
+     *        used to determine the record layout and to create cursors.
+     * @throws IllegalArgumentException if the struct size is zero.
+     */
+    public StructTable(Supplier<? extends S> factory) {
+        this.factory = factory;
+        this.cursor = factory.get();
+        this.recordSize = cursor.size();
+        if (recordSize <= 0) throw new IllegalArgumentException("Empty struct");
+        this.byteOrder = cursor.byteOrder();
+        int shift = 0;
+        while (((long) recordSize << (shift + 1)) <= MAX_CHUNK_BYTES) shift++;
+        this.chunkShift = shift;
+        this.chunkMask = (1 << shift) - 1;
+        this.chunks = new ByteBuffer[4];
+        this.isView = false;
+        this.offset = 0;
+    }
+
+    /** Sub-table view constructor. */
+    private StructTable(StructTable<S> table, int from, int to) {
+        this.factory = table.factory;
+        this.cursor = factory.get();
+        this.recordSize = table.recordSize;
+        this.byteOrder = table.byteOrder;
+        this.chunkShift = table.chunkShift;
+        this.chunkMask = table.chunkMask;
+        this.chunks = table.chunks; // Chunks are never moved.
+        this.isView = true;
+        this.offset = table.offset + from;
+        this.size = to - from;
+    }
+
+    /**
+     * Returns the number of records in this table.
+     */
+    @Realtime(limit = CONSTANT)
+    public final int size() {
+        return size;
+    }
+
+    /**
+     * Indicates if this table is empty.
+     */
+    @Realtime(limit = CONSTANT)
+    public final boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Returns the size in bytes of each record.
+     */
+    @Realtime(limit = CONSTANT)
+    public final int recordSize() {
+        return recordSize;
+    }
+
+    /**
+     * Returns a new cursor which can be positioned over this table records
+     * using {@link #get(int, Struct)}. Threads reading this table
+     * concurrently should use distinct cursors.
+     */
+    public S newCursor() {
+        return factory.get();
+    }
+
+    /**
+     * Appends a new record (all bytes set to zero) and returns this table
+     * cursor positioned over it.
+     *
+     * @return the cursor positioned over the new record.
+     * @throws UnsupportedOperationException if this table is a sub-table.
+     */
+    @Realtime(limit = CONSTANT, comment = "May allocate a new chunk")
+    public S append() {
+        int index = reserve(1);
+        int position = position(index);
+        ByteBuffer chunk = chunks[index >> chunkShift];
+        if (index < zeroed) { // Reused record (after clear).
+            for (int i = 0; i < recordSize; i++)
+                chunk.put(position + i, (byte) 0);
+        }
+        size = index + 1;
+        cursor.setByteBuffer(chunk, position);
+        return cursor;
+    }
+
+    /**
+     * Appends a copy of the specified struct record.
+     *
+     * @param record the record to copy (must have the same layout).
+     * @throws IllegalArgumentException if the record size is different.
+     * @throws UnsupportedOperationException if this table is a sub-table.
+     */
+    @Realtime(limit = CONSTANT, comment = "May allocate a new chunk")
+    public void append(Struct record) {
+        if (record.size() != recordSize) throw new IllegalArgumentException(
+                "Record size " + record.size() + " differs from " + recordSize);
+        ByteBuffer src = record.getByteBuffer().duplicate();
+        int start = record.getByteBufferPosition();
+        src.limit(start + recordSize).position(start);
+        int index = reserve(1);
+        ByteBuffer dst = chunks[index >> chunkShift].duplicate();
+        dst.position(position(index));
+        dst.put(src);
+        size = index + 1;
+    }
+
+    /**
+     * Appends the records held by the remaining bytes of the specified
+     * buffer (bulk copy). The buffer position is advanced accordingly.
+     *
+     * @param records the raw bytes of the records to append.
+     * @return the number of records appended.
+     * @throws IllegalArgumentException if the number of remaining bytes is
+     *         not a multiple of the record size.
+     * @throws UnsupportedOperationException if this table is a sub-table.
+     */
+    @Realtime(limit = LINEAR)
+    public int append(ByteBuffer records) {
+        int remaining = records.remaining();
+        if (remaining % recordSize != 0) throw new IllegalArgumentException(
+                remaining + " bytes is not a multiple of the record size "
+                        + recordSize);
+        int count = remaining / recordSize;
+        int index = reserve(count);
+        ByteBuffer src = records.duplicate();
+        for (int n = count; n > 0;) {
+            int inChunk = Math.min(n, chunkMask + 1 - (index & chunkMask));
+            src.limit(src.position() + inChunk * recordSize);
+            ByteBuffer dst = chunks[index >> chunkShift].duplicate();
+            dst.position(position(index));
+            dst.put(src);
+            index += inChunk;
+            n -= inChunk;
+        }
+        size = index;
+        records.position(records.position() + remaining);
+        return count;
+    }
+
+    /**
+     * Appends all the records of the specified table (bulk copy).
+     *
+     * @param that the table whose records are appended.
+     * @throws IllegalArgumentException if the record size is different.
+     * @throws UnsupportedOperationException if this table is a sub-table.
+     */
+    @Realtime(limit = LINEAR)
+    public void appendAll(StructTable<?> that) {
+        if (that.recordSize != recordSize) throw new IllegalArgumentException(
+                "Record size " + that.recordSize + " differs from " + recordSize);
+        for (int i = 0, n = that.size; i < n;) {
+            ByteBuffer src = that.chunks[(that.offset + i) >> that.chunkShift]
+                    .duplicate();
+            int inChunk = Math.min(n - i,
+                    that.chunkMask + 1 - ((that.offset + i) & that.chunkMask));
+            int start = that.position(that.offset + i);
+            src.limit(start + inChunk * recordSize).position(start);
+            append(src);
+            i += inChunk;
+        }
+    }
+
+    /**
+     * Copies the raw bytes of the specified records into the specified
+     * buffer (bulk copy). The buffer position is advanced accordingly.
+     *
+     * @param fromIndex the index of the first record to copy.
+     * @param count the number of records to copy.
+     * @param dst the destination buffer.
+     * @throws IndexOutOfBoundsException if the range is invalid.
+     * @throws java.nio.BufferOverflowException if there is insufficient space
+     *         in the destination buffer.
+     */
+    @Realtime(limit = LINEAR)
+    public void copyTo(int fromIndex, int count, ByteBuffer dst) {
+        if ((fromIndex < 0) || (count < 0) || (fromIndex + count > size))
+            throw new IndexOutOfBoundsException("fromIndex: " + fromIndex
+                    + ", count: " + count + ", size: " + size);
+        for (int i = offset + fromIndex, n = count; n > 0;) {
+            int inChunk = Math.min(n, chunkMask + 1 - (i & chunkMask));
+            ByteBuffer src = chunks[i >> chunkShift].duplicate();
+            int start = position(i);
+            src.limit(start + inChunk * recordSize).position(start);
+            dst.put(src);
+            i += inChunk;
+            n -= inChunk;
+        }
+    }
+
+    /**
+     * Returns this table cursor positioned over the record at the specified
+     * index. This method is not thread-safe (the cursor is shared), use
+     * {@link #get(int, Struct)} for concurrent reads.
+     *
+     * @param index the record index.
+     * @return this table cursor positioned over the specified record.
+     * @throws IndexOutOfBoundsException if {@code (index < 0) || (index >= size())}
+     */
+    @Realtime(limit = CONSTANT)
+    public S get(int index) {
+        return get(index, cursor);
+    }
+
+    /**
+     * Positions the specified cursor over the record at the specified index.
+     *
+     * @param index the record index.
+     * @param cursor the cursor to position (see {@link #newCursor()}).
+     * @return the specified cursor.
+     * @throws IndexOutOfBoundsException if {@code (index < 0) || (index >= size())}
+     */
+    @Realtime(limit = CONSTANT)
+    public <T extends Struct> T get(int index, T cursor) {
+        if ((index < 0) || (index >= size)) throw new IndexOutOfBoundsException(
+                "index: " + index + ", size: " + size);
+        int i = offset + index;
+        cursor.setByteBuffer(chunks[i >> chunkShift], position(i));
+        return cursor;
+    }
+
+    /**
+     * Iterates over this table records using this table cursor (the same
+     * instance is passed to the consumer for all records).
+     *
+     * @param consumer the consumer of the records.
+     */
+    @Realtime(limit = LINEAR)
+    public void forEach(Consumer<? super S> consumer) {
+        for (int i = 0; i < size; i++)
+            consumer.accept(get(i, cursor));
+    }
+
+    /**
+     * Removes all the records of this table. Memory chunks are retained
+     * and reused by subsequent appends.
+     *
+     * @throws UnsupportedOperationException if this table is a sub-table.
+     */
+    @Realtime(limit = CONSTANT)
+    public void clear() {
+        if (isView) throw new UnsupportedOperationException(
+                "Sub-tables are read-only");
+        zeroed = Math.max(zeroed, size);
+        size = 0;
+    }
+
+    /**
+     * Splits this table into {@code n} read-only sub-tables of about the same
+     * size, each one having its own cursor. Records are not copied.
+     *
+     * @param n the number of sub-tables.
+     * @return the sub-tables views.
+     * @throws IllegalArgumentException if {@code n <= 0}
+     */
+    @SuppressWarnings("unchecked")
+    @Realtime(limit = CONSTANT)
+    public StructTable<S>[] trySplit(int n) {
+        if (n <= 0) throw new IllegalArgumentException("n: " + n);
+        int size = this.size;
+        StructTable<S>[] split = new StructTable[n];
+        for (int i = 0, from = 0, incr = size / n, rem = size % n; i < n; i++) {
+            int to = from + incr;
+            if (rem-- > 0) to++;
+            split[i] = new StructTable<S>(this, from, to);
+            from = to;
+        }
+        return split;
+    }
+
+    /**
+     * Allocates the memory chunk at the specified index. The default
+     * implementation allocates a direct buffer; sub-classes may override
+     * this method to return memory mapped buffers.
+     *
+     * @param chunk the chunk index.
+     * @param capacity the chunk capacity in bytes.
+     * @return a buffer of the specified capacity (the byte order is set by
+     *         the caller).
+     */
+    protected ByteBuffer allocate(int chunk, int capacity) {
+        return ByteBuffer.allocateDirect(capacity);
+    }
+
+    /**
+     * Ensures that the chunks for the specified number of records are
+     * allocated, returns the first index (the size is set by the caller once
+     * the records are written).
+     */
+    private int reserve(int count) {
+        if (isView) throw new UnsupportedOperationException(
+                "Sub-tables are read-only");
+        int index = size;
+        if (index + count < 0) throw new IllegalStateException(
+                "Maximum number of records reached");
+        int lastChunk = (index + count - 1) >> chunkShift;
+        ByteBuffer[] array = chunks;
+        if (lastChunk >= array.length) {
+            ByteBuffer[] tmp = new ByteBuffer[Math.max(array.length * 2,
+                    lastChunk + 1)];
+            System.arraycopy(array, 0, tmp, 0, array.length);
+            array = tmp;
+        }
+        for (int i = (count == 0) ? lastChunk + 1 : index >> chunkShift; i <= lastChunk; i++) {
+            if (array[i] != null) continue;
+            ByteBuffer chunk = allocate(i, recordSize << chunkShift);
+            chunk.order(byteOrder);
+            array[i] = chunk;
+        }
+        chunks = array; // Published with the size (volatile write).
+        return index;
+    }
+
+    /** Returns the byte position of the specified record in its chunk. */
+    private int position(int index) {
+        return (index & chunkMask) * recordSize;
+    }
+
+}
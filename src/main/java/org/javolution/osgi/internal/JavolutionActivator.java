@@ -36,6 +36,7 @@ public class JavolutionActivator implements BundleActivator {
         // Activate services trackers.
         OSGiServices.COMPUTE_CONTEXT_TRACKER.activate(bc);
         OSGiServices.CONCURRENT_CONTEXT_TRACKER.activate(bc);
+        OSGiServices.VIRTUAL_CONCURRENT_CONTEXT_TRACKER.activate(bc);
         OSGiServices.CONFIGURABLE_LISTENER_TRACKER.activate(bc);
         OSGiServices.LOCAL_CONTEXT_TRACKER.activate(bc);
         OSGiServices.LOG_CONTEXT_TRACKER.activate(bc);
@@ -67,6 +68,7 @@ public class JavolutionActivator implements BundleActivator {
     public void stop(BundleContext bc) throws Exception {
         OSGiServices.COMPUTE_CONTEXT_TRACKER.deactivate(bc);
         OSGiServices.CONCURRENT_CONTEXT_TRACKER.deactivate(bc);
+        OSGiServices.VIRTUAL_CONCURRENT_CONTEXT_TRACKER.deactivate(bc);
         OSGiServices.CONFIGURABLE_LISTENER_TRACKER.deactivate(bc);
         OSGiServices.LOCAL_CONTEXT_TRACKER.deactivate(bc);
         OSGiServices.LOG_CONTEXT_TRACKER.deactivate(bc);
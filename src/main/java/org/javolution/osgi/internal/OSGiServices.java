@@ -16,6 +16,7 @@ import org.javolution.context.SecurityContext;
 import org.javolution.context.StorageContext;
 import org.javolution.context.internal.ComputeContextImpl;
 import org.javolution.context.internal.ConcurrentContextImpl;
+import org.javolution.context.internal.VirtualConcurrentContextImpl;
 import org.javolution.context.internal.LocalContextImpl;
 import org.javolution.context.internal.LogContextImpl;
 import org.javolution.context.internal.SecurityContextImpl;
@@ -53,6 +54,8 @@ public class OSGiServices {
 
     final static ServiceTrackerImpl<ConcurrentContext> CONCURRENT_CONTEXT_TRACKER = new ServiceTrackerImpl<ConcurrentContext>(
             ConcurrentContext.class, ConcurrentContextImpl.class);
+    final static ServiceTrackerImpl<ConcurrentContext> VIRTUAL_CONCURRENT_CONTEXT_TRACKER = new ServiceTrackerImpl<ConcurrentContext>(
+            ConcurrentContext.class, VirtualConcurrentContextImpl.class);
     final static ServiceTrackerImpl<Configurable.Listener> CONFIGURABLE_LISTENER_TRACKER = new ServiceTrackerImpl<Configurable.Listener>(
             Configurable.Listener.class, ConfigurableListenerImpl.class);
     final static ServiceTrackerImpl<LocalContext> LOCAL_CONTEXT_TRACKER = new ServiceTrackerImpl<LocalContext>(
@@ -80,67 +83,74 @@ public class OSGiServices {
 
     /** Returns concurrent context services. */
     public static ConcurrentContext getConcurrentContext() {
-        return (ConcurrentContext) CONCURRENT_CONTEXT_TRACKER.getServices()[0];
+        return getConcurrentContext(ConcurrentContext.VIRTUAL_THREADS.get());
     }
 
-    /** Returns configurable listener services. */
+    /** Returns the concurrent context service using virtual threads or platform threads. */
+    public static ConcurrentContext getConcurrentContext(boolean virtual) {
+        ServiceTrackerImpl<ConcurrentContext> tracker = virtual ? VIRTUAL_CONCURRENT_CONTEXT_TRACKER
+                : CONCURRENT_CONTEXT_TRACKER;
+        return (ConcurrentContext) tracker.services()[0];
+    }
+
+    /** Returns configurable listener services (shared array, should not be modified). */
     public static Object[] getConfigurableListeners() {
-        return CONFIGURABLE_LISTENER_TRACKER.getServices();
+        return CONFIGURABLE_LISTENER_TRACKER.services();
     }
 
     /** Returns local context service. */
     public static LocalContext getLocalContext() {
-        return (LocalContext) LOCAL_CONTEXT_TRACKER.getServices()[0];
+        return (LocalContext) LOCAL_CONTEXT_TRACKER.services()[0];
     }
 
     /** Returns log context service. */
     public static LogContext getLogContext() {
-        return (LogContext) LOG_CONTEXT_TRACKER.getServices()[0];
+        return (LogContext) LOG_CONTEXT_TRACKER.services()[0];
     }
 
-    /** Returns OSGi log service. */
+    /** Returns OSGi log services (shared array, should not be modified). */
     public static Object[] getLogServices() {
-        return LOG_SERVICE_TRACKER.getServices();
+        return LOG_SERVICE_TRACKER.services();
     }
 
     /** Returns compute context service. */
     public static ComputeContext getComputeContext() {
-        return (ComputeContext) COMPUTE_CONTEXT_TRACKER.getServices()[0];
+        return (ComputeContext) COMPUTE_CONTEXT_TRACKER.services()[0];
     }
 
     /** Returns security context service. */
     public static SecurityContext getSecurityContext() {
-        return (SecurityContext) SECURITY_CONTEXT_TRACKER.getServices()[0];
+        return (SecurityContext) SECURITY_CONTEXT_TRACKER.services()[0];
     }
 
     /** Returns storage context service. */
     public static StorageContext getStorageContext() {
-        return (StorageContext) STORAGE_CONTEXT_TRACKER.getServices()[0];
+        return (StorageContext) STORAGE_CONTEXT_TRACKER.services()[0];
     }
 
     /** Returns text context service. */
     public static TextContext getTextContext() {
-        return (TextContext) TEXT_CONTEXT_TRACKER.getServices()[0];
+        return (TextContext) TEXT_CONTEXT_TRACKER.services()[0];
     }
 
     /** Returns xml context service. */
     public static XMLContext getXMLContext() {
-        return (XMLContext) XML_CONTEXT_TRACKER.getServices()[0];
+        return (XMLContext) XML_CONTEXT_TRACKER.services()[0];
     }
 
     /** Returns xml input factory service. */
     public static XMLInputFactory getXMLInputFactory() {
-        return (XMLInputFactory) XML_INPUT_FACTORY_TRACKER.getServices()[0];
+        return (XMLInputFactory) XML_INPUT_FACTORY_TRACKER.services()[0];
     }
 
     /** Returns xml output factory service. */
     public static XMLOutputFactory getXMLOutputFactory() {
-        return (XMLOutputFactory) XML_OUTPUT_FACTORY_TRACKER.getServices()[0];
+        return (XMLOutputFactory) XML_OUTPUT_FACTORY_TRACKER.services()[0];
     }
 
     /** Returns JAXB Annotation Factory Service */
     public static JAXBAnnotationFactory getJAXBAnnotationFactory() {
-        return (JAXBAnnotationFactory) JAXB_ANNOTATION_FACTORY_TRACKER.getServices()[0];
+        return (JAXBAnnotationFactory) JAXB_ANNOTATION_FACTORY_TRACKER.services()[0];
     }
 
     /** Initializes all real-time classes.  */
@@ -8,18 +8,28 @@
  */
 package org.javolution.osgi.internal;
 
+import java.util.Arrays;
+
 import org.osgi.framework.BundleContext;
+import org.osgi.framework.ServiceReference;
 import org.osgi.util.tracker.ServiceTracker;
 
 /**
  * Bridge to service tracker (does not trigger class loading exception if running outside OSGi).
+ * 
+ * The services returned are cached (volatile snapshot), the snapshot is updated only when services are 
+ * added or removed (tracker callbacks); looking up services does not allocate nor synchronize.
  */
 public final class ServiceTrackerImpl<C> {
 
+    private static final Object[] NONE = new Object[0]; // No service and no default implementation.
+
     private volatile ServiceTracker<C, C> tracker;
     private final Class<C> type;
     private final Class<? extends C> defaultImplClass;
     private C defaultImpl;
+    private Object[] tracked = NONE; // The services being tracked (guarded by this, copy-on-write).
+    private volatile Object[] services; // Snapshot (null if not computed yet).
 
     /** Creates a context tracker for the specified context type. */
     public ServiceTrackerImpl(Class<C> type, Class<? extends C> defaultImplClass) {
@@ -29,35 +39,77 @@ public final class ServiceTrackerImpl<C> {
 
     /** Activates OSGi tracking. */
     public void activate(BundleContext bc) {
-        ServiceTracker<C, C> trk = new ServiceTracker<C, C>(bc, type, null);
+        ServiceTracker<C, C> trk = new ServiceTracker<C, C>(bc, type, null) {
+            @Override
+            public C addingService(ServiceReference<C> reference) {
+                C service = super.addingService(reference);
+                if (service != null) added(service);
+                return service;
+            }
+
+            @Override
+            public void removedService(ServiceReference<C> reference, C service) {
+                removed(service);
+                super.removedService(reference, service);
+            }
+        };
         trk.open();
         tracker = trk;
     }
 
     /** Deactivates OSGi tracking. */
     public void deactivate(BundleContext bc) {
-        tracker.close();
+        tracker.close(); // Removes all services.
         tracker = null;
     }
 
-    /** Returns the published services or the default implementation if none. */
+    /** Returns the published services or the default implementation if none (new array). */
+    public Object[] getServices() {
+        Object[] snapshot = services();
+        return (snapshot != null) ? snapshot.clone() : null;
+    }
+
+    /** 
+     * Returns the published services or the default implementation if none (the array returned is shared
+     * and should not be modified, internal callers only).
+     */
+    Object[] services() {
+        Object[] snapshot = services;
+        if (snapshot == null) snapshot = refresh();
+        return (snapshot != NONE) ? snapshot : null;
+    }
+
     @SuppressWarnings("deprecation")
-	public Object[] getServices() {
-        ServiceTracker<C, C> trk = tracker;
-        if (trk != null) {
-            Object[] services = trk.getServices();
-            if (services != null) return services;        
-        }
-        if (defaultImplClass == null) return null;        
-        synchronized (this) {
-            if (defaultImpl == null) {
-                try {
-                    defaultImpl = defaultImplClass.newInstance();
-                } catch (Throwable error) {
-                    throw new RuntimeException(error);
-                } 
+    private synchronized Object[] refresh() {
+        if (services != null) return services;
+        if (tracked.length != 0) return services = tracked;
+        if (defaultImplClass == null) return services = NONE;
+        if (defaultImpl == null) {
+            try {
+                defaultImpl = defaultImplClass.newInstance();
+            } catch (Throwable error) {
+                throw new RuntimeException(error);
             }
         }
-        return new Object[] { defaultImpl };
+        return services = new Object[] { defaultImpl };
+    }
+
+    private synchronized void added(C service) {
+        Object[] tmp = Arrays.copyOf(tracked, tracked.length + 1);
+        tmp[tracked.length] = service;
+        tracked = tmp;
+        services = null; // Refreshed on next access.
+    }
+
+    private synchronized void removed(C service) {
+        for (int i = 0; i < tracked.length; i++) {
+            if (tracked[i] != service) continue;
+            Object[] tmp = new Object[tracked.length - 1];
+            System.arraycopy(tracked, 0, tmp, 0, i);
+            System.arraycopy(tracked, i + 1, tmp, i, tmp.length - i);
+            tracked = tmp;
+            break;
+        }
+        services = null; // Refreshed on next access.
     }
 }
@@ -34,10 +34,8 @@ import org.javolution.util.function.Predicate;
 import org.javolution.util.internal.collection.AtomicCollectionImpl;
 import org.javolution.util.internal.collection.ConcatCollectionImpl;
 import org.javolution.util.internal.collection.CustomEqualityCollectionImpl;
-import org.javolution.util.internal.collection.DistinctCollectionImpl;
-import org.javolution.util.internal.collection.FilteredCollectionImpl;
+import org.javolution.util.internal.collection.FusedCollectionImpl;
 import org.javolution.util.internal.collection.LinkedCollectionImpl;
-import org.javolution.util.internal.collection.MappedCollectionImpl;
 import org.javolution.util.internal.collection.ParallelCollectionImpl;
 import org.javolution.util.internal.collection.ReversedCollectionImpl;
 import org.javolution.util.internal.collection.SharedCollectionImpl;
@@ -131,7 +129,7 @@ public abstract class AbstractCollection<E> implements Collection<E>, Serializab
      * ensures that this collection has only elements satisfying the specified filter predicate.
      */
     public AbstractCollection<E> filter(Predicate<? super E> filter) {
-        return new FilteredCollectionImpl<E>(this, filter);
+        return FusedCollectionImpl.filter(this, filter);
     }
 
     /**
@@ -139,7 +137,7 @@ public abstract class AbstractCollection<E> implements Collection<E>, Serializab
      * The returned view does not allow new elements to be added.
      */
     public <R> AbstractCollection<R> map(Function<? super E, ? extends R> function) {
-        return new MappedCollectionImpl<E, R>(this, function);
+        return FusedCollectionImpl.map(this, function);
     }
 
     /**
@@ -180,7 +178,7 @@ public abstract class AbstractCollection<E> implements Collection<E>, Serializab
      * using a distinct view to add new elements ensures that this collection has no duplicate element.
      */
     public AbstractCollection<E> distinct() {
-        return new DistinctCollectionImpl<E>(this);
+        return FusedCollectionImpl.distinct(this);
     }
 
     /**
@@ -0,0 +1,401 @@
+/*
+ * Javolution - Java(TM) Solution for Real-Time and Embedded Systems
+ * Copyright (C) 2012 - Javolution (http://javolution.org/)
+ * All rights reserved.
+ *
+ * Permission to use, copy, modify, and distribute this software is
+ * freely granted, provided that this notice is preserved.
+ */
+package org.javolution.util;
+
+import static org.javolution.annotations.Realtime.Concurrency.LOCK_FREE;
+import static org.javolution.annotations.Realtime.Limit.CONSTANT;
+import static org.javolution.annotations.Realtime.Limit.LINEAR;
+
+import java.io.ObjectStreamException;
+import java.io.Serializable;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.javolution.annotations.Nullable;
+import org.javolution.annotations.Realtime;
+import org.javolution.util.function.Equality;
+import org.javolution.util.function.Predicate;
+
+/**
+ * An append-only table supporting lock-free concurrent appends and mutex-free concurrent reads.
+ *
+ * Elements are stored in segments of increasing capacity (16, 32, 64, ...) which are never moved once allocated.
+ * Appending threads reserve their slot through an atomic increment and write their element; the published size
+ * is then advanced over all the contiguous slots written. Readers only see the published elements and never block.
+ *
+ * ```java
+ * ConcurrentFastTable<Event> events = new ConcurrentFastTable<Event>(1 << 20); // Preallocated capacity.
+ *
+ * // Producer threads.
+ * events.add(event); // Lock-free.
+ *
+ * // Analytics threads.
+ * int n = events.size(); // Published size.
+ * for (int i = 0; i < n; i++) process(events.get(i));
+ * events.parallel().forEach(e -> process(e)); // Parallel scan of the published elements.
+ * ```
+ *
+ * Only appends and in-place updates ({@link #set set}) are supported; insertions or removals at arbitrary
+ * positions raise {@link UnsupportedOperationException}. Elements appended concurrently with a {@link #clear}
+ * may or may not be retained.
+ *
+ * @param <E> the type of table elements ({@code null} instances are supported)
+ *
+ * @author <a href="mailto:jean-marie@dautelle.com">Jean-Marie Dautelle</a>
+ * @version 7.0, October 18, 2026
+ */
+public class ConcurrentFastTable<E> extends AbstractTable<E> {
+
+    private static final long serialVersionUID = 0x700L; // Version.
+    private static final String ERROR_MSG = "Concurrent tables only support appends.";
+    private static final int FIRST_SEGMENT_SHIFT = 4; // First segment holds 16 elements.
+    private static final int MAX_SEGMENTS = 31 - FIRST_SEGMENT_SHIFT;
+    private static final int MAX_CAPACITY = Integer.MAX_VALUE - (1 << FIRST_SEGMENT_SHIFT) + 1;
+    private static final Object NULL = Null.INSTANCE; // Marks written null elements (unwritten slots are null).
+
+    private volatile Block<E> block;
+
+    /** Creates an empty concurrent table. */
+    public ConcurrentFastTable() {
+        this(0);
+    }
+
+    /**
+     * Creates an empty concurrent table whose segments are preallocated up to the specified capacity.
+     *
+     * @param capacity the number of elements which can be appended without any segment allocation.
+     */
+    public ConcurrentFastTable(int capacity) {
+        block = new Block<E>(capacity);
+    }
+
+    @Override
+    public ConcurrentFastTable<E> with(@SuppressWarnings("unchecked") E... elements) {
+        addAll(elements);
+        return this;
+    }
+
+    @Override
+    @Realtime(limit = CONSTANT, concurrency = LOCK_FREE)
+    public final boolean add(@Nullable E element) {
+        Block<E> b = block;
+        int i = b.reserved.getAndIncrement();
+        if ((i < 0) || (i >= MAX_CAPACITY)) throw new IllegalStateException("Maximum capacity exceeded");
+        b.slot(i).set(offset(i), (element != null) ? element : NULL);
+        b.publish();
+        return true;
+    }
+
+    @Override
+    public void add(int index, @Nullable E element) {
+        if (index != size()) throw new UnsupportedOperationException(ERROR_MSG);
+        add(element);
+    }
+
+    @Override
+    @Realtime(limit = CONSTANT, concurrency = LOCK_FREE)
+    public void clear() {
+        block = new Block<E>(0);
+    }
+
+    @Override
+    @Realtime(limit = LINEAR)
+    public ConcurrentFastTable<E> clone() {
+        Block<E> b = block;
+        int n = b.published.get();
+        ConcurrentFastTable<E> copy = new ConcurrentFastTable<E>(n);
+        for (int i = 0; i < n; i++)
+            copy.add(b.get(i));
+        return copy;
+    }
+
+    @Override
+    @Realtime(limit = CONSTANT)
+    public final Equality<? super E> equality() {
+        return Equality.standard();
+    }
+
+    @Override
+    @Realtime(limit = CONSTANT, concurrency = LOCK_FREE)
+    public final @Nullable E get(int index) {
+        Block<E> b = block;
+        if (index < 0 || index >= b.published.get()) throw new IndexOutOfBoundsException();
+        return b.get(index);
+    }
+
+    @Override
+    @Realtime(limit = CONSTANT, concurrency = LOCK_FREE)
+    public final FastListIterator<E> listIterator(int index) {
+        Block<E> b = block;
+        return new IteratorImpl<E>(b, 0, index, b.published.get());
+    }
+
+    @Override
+    public E remove(int index) {
+        throw new UnsupportedOperationException(ERROR_MSG);
+    }
+
+    @Override
+    public boolean removeIf(Predicate<? super E> filter) {
+        throw new UnsupportedOperationException(ERROR_MSG);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    @Realtime(limit = CONSTANT, concurrency = LOCK_FREE)
+    public final @Nullable E set(int index, @Nullable E element) {
+        Block<E> b = block;
+        if (index < 0 || index >= b.published.get()) throw new IndexOutOfBoundsException();
+        Object previous = b.slot(index).getAndSet(offset(index), (element != null) ? element : NULL);
+        return (previous != NULL) ? (E) previous : null;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    @Realtime(limit = CONSTANT, concurrency = LOCK_FREE)
+    public AbstractTable<E>[] trySplit(int n) {
+        Block<E> b = block;
+        AbstractTable<E>[] split = new AbstractTable[n];
+        for (int i = 0, from = 0, size = b.published.get(), incr = size / n, rem = size % n; i < n; i++) {
+            int to = from + incr;
+            if (rem-- > 0) to++;
+            split[i] = new RangeImpl<E>(b, from, to);
+            from = to;
+        }
+        return split;
+    }
+
+    /** Returns the number of published elements. */
+    @Override
+    @Realtime(limit = CONSTANT, concurrency = LOCK_FREE)
+    public final int size() {
+        return block.published.get();
+    }
+
+    /** Returns the segment index for the specified element index. */
+    private static int segment(int index) {
+        long i = (long) index + (1 << FIRST_SEGMENT_SHIFT);
+        return 63 - Long.numberOfLeadingZeros(i) - FIRST_SEGMENT_SHIFT;
+    }
+
+    /** Returns the position within its segment of the specified element index. */
+    private static int offset(int index) {
+        long i = (long) index + (1 << FIRST_SEGMENT_SHIFT);
+        return (int) (i - Long.highestOneBit(i));
+    }
+
+    /** Serializable marker of written null elements (resolved to the singleton on deserialization). */
+    private static final class Null implements Serializable {
+        private static final long serialVersionUID = 0x700L; // Version.
+        static final Null INSTANCE = new Null();
+
+        private Object readResolve() throws ObjectStreamException {
+            return INSTANCE;
+        }
+    }
+
+    /** Holds the segments and the reservation/publication counters. */
+    private static final class Block<E> implements Serializable {
+        private static final long serialVersionUID = 0x700L; // Version.
+        final AtomicReferenceArray<AtomicReferenceArray<Object>> segments
+             = new AtomicReferenceArray<AtomicReferenceArray<Object>>(MAX_SEGMENTS);
+        final AtomicInteger reserved = new AtomicInteger(); // Next slot to reserve.
+        final AtomicInteger published = new AtomicInteger(); // All slots below have been written.
+
+        Block(int capacity) {
+            for (int s = 0, n = (capacity > 0) ? segment(Math.min(capacity, MAX_CAPACITY) - 1) : -1; s <= n; s++)
+                segments.set(s, new AtomicReferenceArray<Object>(1 << (s + FIRST_SEGMENT_SHIFT)));
+        }
+
+        /** Returns the segment holding the specified slot, allocates it if necessary. */
+        AtomicReferenceArray<Object> slot(int index) {
+            int s = segment(index);
+            AtomicReferenceArray<Object> segment = segments.get(s);
+            if (segment != null) return segment;
+            segments.compareAndSet(s, null, new AtomicReferenceArray<Object>(1 << (s + FIRST_SEGMENT_SHIFT)));
+            if ((s + 1 < MAX_SEGMENTS) && (segments.get(s + 1) == null)) // Allocates ahead.
+                segments.compareAndSet(s + 1, null, new AtomicReferenceArray<Object>(1 << (s + 1 + FIRST_SEGMENT_SHIFT)));
+            return segments.get(s);
+        }
+
+        /** Returns the element at the specified published index. */
+        @SuppressWarnings("unchecked")
+        E get(int index) {
+            Object element = segments.get(segment(index)).get(offset(index));
+            return (element != NULL) ? (E) element : null;
+        }
+
+        /** 
+         * Advances the published size over all the slots written. A slot not yet written stops the publication;
+         * the thread writing that slot will resume it (no waiting).
+         */
+        void publish() {
+            while (true) {
+                int p = published.get();
+                if (p >= MAX_CAPACITY) return;
+                AtomicReferenceArray<Object> segment = segments.get(segment(p));
+                if ((segment == null) || (segment.get(offset(p)) == null)) return; // Not written yet.
+                published.compareAndSet(p, p + 1);
+            }
+        }
+    }
+
+    /** Read-only view over a range of published elements (used for parallel scans). */
+    private static final class RangeImpl<E> extends AbstractTable<E> {
+        private static final long serialVersionUID = 0x700L; // Version.
+        private final Block<E> block;
+        private final int fromIndex; // Inclusive.
+        private final int toIndex; // Exclusive.
+
+        RangeImpl(Block<E> block, int fromIndex, int toIndex) {
+            this.block = block;
+            this.fromIndex = fromIndex;
+            this.toIndex = toIndex;
+        }
+
+        @Override
+        public boolean add(E element) {
+            throw new UnsupportedOperationException(ERROR_MSG);
+        }
+
+        @Override
+        public void add(int index, E element) {
+            throw new UnsupportedOperationException(ERROR_MSG);
+        }
+
+        @Override
+        public void clear() {
+            throw new UnsupportedOperationException(ERROR_MSG);
+        }
+
+        @Override
+        public RangeImpl<E> clone() {
+            return this; // Published elements are never moved.
+        }
+
+        @Override
+        public Equality<? super E> equality() {
+            return Equality.standard();
+        }
+
+        @Override
+        public E get(int index) {
+            if ((index < 0) || (index >= size())) throw new IndexOutOfBoundsException();
+            return block.get(index + fromIndex);
+        }
+
+        @Override
+        public FastListIterator<E> listIterator(int index) {
+            return new IteratorImpl<E>(block, fromIndex, index + fromIndex, toIndex);
+        }
+
+        @Override
+        public E remove(int index) {
+            throw new UnsupportedOperationException(ERROR_MSG);
+        }
+
+        @Override
+        public boolean removeIf(Predicate<? super E> filter) {
+            throw new UnsupportedOperationException(ERROR_MSG);
+        }
+
+        @Override
+        public E set(int index, E element) {
+            throw new UnsupportedOperationException(ERROR_MSG);
+        }
+
+        @Override
+        public int size() {
+            return toIndex - fromIndex;
+        }
+    }
+
+    /** List Iterator Implementation (over a range of published elements). */
+    private static final class IteratorImpl<E> implements FastListIterator<E> {
+        private final Block<E> block;
+        private final int fromIndex; // Inclusive.
+        private int nextIndex;
+        private final int toIndex; // Exclusive.
+
+        public IteratorImpl(Block<E> block, int fromIndex, int nextIndex, int toIndex) {
+            this.block = block;
+            this.fromIndex = fromIndex;
+            this.nextIndex = nextIndex;
+            this.toIndex = toIndex;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return nextIndex < toIndex;
+        }
+
+        @Override
+        public boolean hasNext(Predicate<? super E> matching) {
+            for (; nextIndex < toIndex; nextIndex++) {
+                E next = block.get(nextIndex);
+                if ((next != null) && matching.test(next)) return true;
+            }
+            return false;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void add(E arg0) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean hasPrevious() {
+            return nextIndex > fromIndex;
+        }
+
+        @Override
+        public boolean hasPrevious(Predicate<? super E> matching) {
+            for (; nextIndex > fromIndex; nextIndex--) {
+                E previous = block.get(nextIndex - 1);
+                if ((previous != null) && matching.test(previous)) return true;
+            }
+            return false;
+        }
+
+        @Override
+        public E next() {
+            if (nextIndex >= toIndex) throw new NoSuchElementException();
+            return block.get(nextIndex++);
+        }
+
+        @Override
+        public int nextIndex() {
+            return nextIndex - fromIndex;
+        }
+
+        @Override
+        public E previous() {
+            if (nextIndex <= fromIndex) throw new NoSuchElementException();
+            return block.get(--nextIndex);
+        }
+
+        @Override
+        public int previousIndex() {
+            return nextIndex - fromIndex - 1;
+        }
+
+        @Override
+        public void set(E arg0) {
+            throw new UnsupportedOperationException();
+        }
+
+    }
+
+}
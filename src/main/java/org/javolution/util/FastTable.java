@@ -55,6 +55,8 @@ import org.javolution.util.function.Predicate;
  * }
  * ``` 
  * 
+ * For lock-free appends from multiple threads (with concurrent readers), {@link ConcurrentFastTable} should be used.
+ * 
  * @param <E> the type of table elements ({@code null} instances are supported)
  * 
  * @author <a href="mailto:jean-marie@dautelle.com">Jean-Marie Dautelle</a>
@@ -0,0 +1,467 @@
+/*
+ * Javolution - Java(TM) Solution for Real-Time and Embedded Systems
+ * Copyright (C) 2012 - Javolution (http://javolution.org/)
+ * All rights reserved.
+ *
+ * Permission to use, copy, modify, and distribute this software is
+ * freely granted, provided that this notice is preserved.
+ */
+package org.javolution.util;
+
+import static org.javolution.annotations.Realtime.Concurrency.LOCK_FREE;
+import static org.javolution.annotations.Realtime.Limit.CONSTANT;
+import static org.javolution.annotations.Realtime.Limit.LINEAR;
+
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.javolution.annotations.Realtime;
+import org.javolution.util.function.Consumer;
+import org.javolution.util.function.Equality;
+import org.javolution.util.function.Predicate;
+
+/**
+ * A bounded, array-based, lock-free queue for the hand-off of elements between threads.
+ *
+ * The queue {@link Type type} indicates whether there are single or multiple producers/consumers;
+ * single producer (or consumer) sides do not use any compare-and-set operation. The {@link WaitStrategy}
+ * defines how threads wait when the queue is full ({@link #put}) or empty ({@link #take}).
+ *
+ * ```java
+ * RingQueue<Event> events = new RingQueue<Event>(1024, Type.MPSC, WaitStrategy.PARK);
+ *
+ * // Producer threads.
+ * if (!events.offer(event)) dropped++; // Non-blocking.
+ * events.put(event); // Waits if the queue is full.
+ *
+ * // Consumer thread.
+ * while (true) {
+ *     process(events.take()); // Waits if the queue is empty.
+ *     events.drainTo(processor, 256); // Batch processing of the pending events.
+ * }
+ * ```
+ *
+ * Ring queues are also {@link AbstractTable tables}: elements are appended at the end (tail) and removed from
+ * the beginning (head). Insertions or removals at any other position are not supported.
+ * Queue elements cannot be {@code null}.
+ *
+ * @param <E> the type of queue elements ({@code null} instances are not supported)
+ *
+ * @author <a href="mailto:jean-marie@dautelle.com">Jean-Marie Dautelle</a>
+ * @version 7.0, October 18, 2026
+ */
+public class RingQueue<E> extends AbstractTable<E> {
+
+    private static final long serialVersionUID = 0x700L; // Version.
+    private static final String ERROR_MSG = "Ring queues only support additions at the tail and removals at the head.";
+
+    /** The producers/consumers configuration of a ring queue. */
+    public enum Type {
+        /** Single producer, single consumer. */
+        SPSC(false, false),
+        /** Multiple producers, single consumer. */
+        MPSC(true, false),
+        /** Multiple producers, multiple consumers. */
+        MPMC(true, true);
+
+        private final boolean multipleProducers;
+        private final boolean multipleConsumers;
+
+        private Type(boolean multipleProducers, boolean multipleConsumers) {
+            this.multipleProducers = multipleProducers;
+            this.multipleConsumers = multipleConsumers;
+        }
+    }
+
+    /** How threads wait for the queue to be not full (producers) or not empty (consumers). */
+    public enum WaitStrategy {
+        /** Busy spin (lowest latency, one core fully used by the waiting thread). */
+        SPIN,
+        /** Spins while yielding the processor to other threads. */
+        YIELD,
+        /**
+         * Spins for a short time then blocks until signaled. The other side only synchronizes when a
+         * thread is blocked (no monitor operation otherwise).
+         */
+        PARK
+    }
+
+    private final Type type;
+    private final WaitStrategy waitStrategy;
+    private final int mask;
+    private final AtomicReferenceArray<E> buffer;
+    private final AtomicLongArray sequences; // Slot sequence numbers.
+    private final PaddedCounter head = new PaddedCounter(); // Next position to read.
+    private final PaddedCounter tail = new PaddedCounter(); // Next position to write.
+    private transient volatile int waiters; // Number of threads blocked (PARK strategy).
+
+    /**
+     * Creates a multiple producers/consumers queue having the specified capacity and using the {@link
+     * WaitStrategy#PARK} wait strategy.
+     *
+     * @param capacity the minimum queue capacity (rounded up to the next power of two).
+     */
+    public RingQueue(int capacity) {
+        this(capacity, Type.MPMC, WaitStrategy.PARK);
+    }
+
+    /**
+     * Creates a queue of specified capacity, type and wait strategy.
+     *
+     * @param capacity the minimum queue capacity (rounded up to the next power of two).
+     * @param type the producers/consumers configuration.
+     * @param waitStrategy the wait strategy used by blocking operations.
+     * @throws IllegalArgumentException if {@code capacity <= 0 || capacity > 2^30}
+     */
+    public RingQueue(int capacity, Type type, WaitStrategy waitStrategy) {
+        if ((capacity <= 0) || (capacity > (1 << 30)))
+            throw new IllegalArgumentException("Invalid capacity: " + capacity);
+        int n = (capacity == 1) ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+        this.type = type;
+        this.waitStrategy = waitStrategy;
+        this.mask = n - 1;
+        this.buffer = new AtomicReferenceArray<E>(n);
+        this.sequences = new AtomicLongArray(n);
+        for (int i = 0; i < n; i++)
+            sequences.set(i, i);
+    }
+
+    /** Returns the type of this queue. */
+    public final Type type() {
+        return type;
+    }
+
+    /** Returns the wait strategy of this queue. */
+    public final WaitStrategy waitStrategy() {
+        return waitStrategy;
+    }
+
+    /** Returns the maximum number of elements this queue can hold. */
+    public final int capacity() {
+        return mask + 1;
+    }
+
+    /**
+     * Inserts the specified element at the tail of this queue if possible.
+     *
+     * @param element the element to add.
+     * @return {@code true} if the element has been added; {@code false} if the queue is full.
+     * @throws NullPointerException if the specified element is {@code null}
+     */
+    @Override
+    @Realtime(limit = CONSTANT, concurrency = LOCK_FREE)
+    public final boolean offer(E element) {
+        if (element == null) throw new NullPointerException();
+        long pos = tail.get();
+        while (true) {
+            int index = (int) pos & mask;
+            long dif = sequences.get(index) - pos;
+            if (dif == 0) { // Slot available.
+                if (!type.multipleProducers) {
+                    tail.lazySet(pos + 1);
+                    break;
+                }
+                if (tail.compareAndSet(pos, pos + 1)) break;
+                pos = tail.get();
+            } else if (dif < 0) { // Full.
+                return false;
+            } else { // Another producer got that slot.
+                pos = tail.get();
+            }
+        }
+        int index = (int) pos & mask;
+        buffer.lazySet(index, element);
+        sequences.set(index, pos + 1); // Publishes.
+        if (waiters != 0) signal();
+        return true;
+    }
+
+    /**
+     * Retrieves and removes the head of this queue.
+     *
+     * @return the head of the queue or {@code null} if this queue is empty.
+     */
+    @Override
+    @Realtime(limit = CONSTANT, concurrency = LOCK_FREE)
+    public final E poll() {
+        long pos = head.get();
+        while (true) {
+            int index = (int) pos & mask;
+            long dif = sequences.get(index) - (pos + 1);
+            if (dif == 0) { // Slot filled.
+                if (!type.multipleConsumers) {
+                    head.lazySet(pos + 1);
+                    break;
+                }
+                if (head.compareAndSet(pos, pos + 1)) break;
+                pos = head.get();
+            } else if (dif < 0) { // Empty.
+                return null;
+            } else { // Another consumer got that element.
+                pos = head.get();
+            }
+        }
+        int index = (int) pos & mask;
+        E element = buffer.get(index);
+        buffer.lazySet(index, null);
+        sequences.set(index, pos + mask + 1); // Releases the slot.
+        if (waiters != 0) signal();
+        return element;
+    }
+
+    /**
+     * Inserts the specified element at the tail of this queue, waiting if necessary for space to become
+     * available.
+     *
+     * @param element the element to add.
+     * @throws NullPointerException if the specified element is {@code null}
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    @Realtime(limit = CONSTANT, comment="Waits while the queue is full")
+    public final void put(E element) throws InterruptedException {
+        for (int spin = 0; !offer(element); spin++)
+            await(spin, true);
+    }
+
+    /**
+     * Retrieves and removes the head of this queue, waiting if necessary until an element becomes available.
+     *
+     * @return the head of this queue.
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    @Realtime(limit = CONSTANT, comment="Waits while the queue is empty")
+    public final E take() throws InterruptedException {
+        for (int spin = 0;; spin++) {
+            E element = poll();
+            if (element != null) return element;
+            await(spin, false);
+        }
+    }
+
+    /**
+     * Removes up to the specified number of elements from this queue and passes them to the specified consumer
+     * (batch processing). For single consumer queues, the head of the queue is updated only once per batch.
+     *
+     * @param consumer the consumer of the elements removed.
+     * @param max the maximum number of elements to remove.
+     * @return the actual number of elements removed.
+     */
+    @Realtime(limit = LINEAR)
+    public final int drainTo(Consumer<? super E> consumer, int max) {
+        if (type.multipleConsumers) {
+            int count = 0;
+            for (E element; (count < max) && ((element = poll()) != null); count++)
+                consumer.accept(element);
+            return count;
+        }
+        long pos = head.get();
+        int count = 0;
+        try {
+            while (count < max) {
+                int index = (int) pos & mask;
+                if (sequences.get(index) != pos + 1) break; // Empty.
+                E element = buffer.get(index);
+                buffer.lazySet(index, null);
+                sequences.set(index, pos + mask + 1);
+                pos++;
+                count++;
+                consumer.accept(element);
+            }
+        } finally {
+            head.lazySet(pos);
+            if ((count != 0) && (waiters != 0)) signal();
+        }
+        return count;
+    }
+
+    /**
+     * Adds the specified element at the tail of this queue.
+     *
+     * @throws IllegalStateException if this queue is full.
+     * @throws NullPointerException if the specified element is {@code null}
+     */
+    @Override
+    @Realtime(limit = CONSTANT, concurrency = LOCK_FREE)
+    public final boolean add(E element) {
+        if (!offer(element)) throw new IllegalStateException("Queue full");
+        return true;
+    }
+
+    @Override
+    public void add(int index, E element) {
+        if (index != size()) throw new UnsupportedOperationException(ERROR_MSG);
+        add(element);
+    }
+
+    @Override
+    public void addFirst(E element) {
+        throw new UnsupportedOperationException(ERROR_MSG);
+    }
+
+    @Override
+    public boolean offerFirst(E element) {
+        throw new UnsupportedOperationException(ERROR_MSG);
+    }
+
+    @Override
+    public boolean offerLast(E element) {
+        return offer(element);
+    }
+
+    @Override
+    public E pollFirst() {
+        return poll();
+    }
+
+    @Override
+    public E pollLast() {
+        throw new UnsupportedOperationException(ERROR_MSG);
+    }
+
+    @Override
+    public E removeFirst() {
+        E element = poll();
+        if (element == null) throw new NoSuchElementException();
+        return element;
+    }
+
+    @Override
+    public E removeLast() {
+        throw new UnsupportedOperationException(ERROR_MSG);
+    }
+
+    /** Returns the head of this queue (not removed) or {@code null} if this queue is empty. */
+    @Override
+    @Realtime(limit = CONSTANT, concurrency = LOCK_FREE)
+    public E peekFirst() {
+        long pos = head.get();
+        int index = (int) pos & mask;
+        return (sequences.get(index) == pos + 1) ? buffer.get(index) : null;
+    }
+
+    @Override
+    public E getFirst() {
+        E element = peekFirst();
+        if (element == null) throw new NoSuchElementException();
+        return element;
+    }
+
+    @Override
+    @Realtime(limit = LINEAR)
+    public void clear() {
+        while (poll() != null) {}
+    }
+
+    @Override
+    @Realtime(limit = LINEAR)
+    public RingQueue<E> clone() {
+        RingQueue<E> copy = new RingQueue<E>(capacity(), type, waitStrategy);
+        for (E e : this)
+            copy.offer(e);
+        return copy;
+    }
+
+    @Override
+    public Equality<? super E> equality() {
+        return Equality.standard();
+    }
+
+    /**
+     * Returns the element at the specified position from the head of this queue (the value returned may be
+     * {@code null} if the element has been concurrently removed).
+     */
+    @Override
+    @Realtime(limit = CONSTANT, concurrency = LOCK_FREE)
+    public E get(int index) {
+        if ((index < 0) || (index >= size())) throw new IndexOutOfBoundsException();
+        return buffer.get((int) (head.get() + index) & mask);
+    }
+
+    /** Returns a list iterator over a snapshot of this queue elements. */
+    @Override
+    @Realtime(limit = LINEAR)
+    public FastListIterator<E> listIterator(int index) {
+        FastTable<E> snapshot = new FastTable<E>();
+        for (long pos = head.get(), end = tail.get(); pos < end; pos++) {
+            int i = (int) pos & mask;
+            if (sequences.get(i) != pos + 1) continue; // Being written or already consumed.
+            E element = buffer.get(i);
+            if (element != null) snapshot.add(element);
+        }
+        return snapshot.listIterator(index);
+    }
+
+    /** Removes the head of this queue ({@code index == 0}); other removals are not supported. */
+    @Override
+    public E remove(int index) {
+        if (index != 0) throw new UnsupportedOperationException(ERROR_MSG);
+        return removeFirst();
+    }
+
+    @Override
+    public boolean removeIf(Predicate<? super E> filter) {
+        throw new UnsupportedOperationException(ERROR_MSG);
+    }
+
+    @Override
+    public E set(int index, E element) {
+        throw new UnsupportedOperationException(ERROR_MSG);
+    }
+
+    /** Returns the number of elements in this queue (approximation if concurrently updated). */
+    @Override
+    @Realtime(limit = CONSTANT, concurrency = LOCK_FREE)
+    public int size() {
+        long size = tail.get() - head.get();
+        return (size < 0) ? 0 : (size > mask + 1) ? mask + 1 : (int) size;
+    }
+
+    /** Waits according to the wait strategy (for the queue not to be full or not to be empty). */
+    private void await(int spin, boolean whileFull) throws InterruptedException {
+        if (Thread.interrupted()) throw new InterruptedException();
+        switch (waitStrategy) {
+        case SPIN:
+            return;
+        case YIELD:
+            Thread.yield();
+            return;
+        case PARK:
+            if (spin < 128) return; // Spins first.
+            synchronized (this) {
+                waiters++;
+                try {
+                    if (whileFull ? isFull() : isEmptyAtHead()) this.wait();
+                } finally {
+                    waiters--;
+                }
+            }
+        }
+    }
+
+    /** Indicates if the slot at the tail is still used (conservative, a stale tail returns {@code false}). */
+    private boolean isFull() {
+        long pos = tail.get();
+        return sequences.get((int) pos & mask) < pos;
+    }
+
+    /** Indicates if the slot at the head is not filled (conservative, a stale head returns {@code false}). */
+    private boolean isEmptyAtHead() {
+        long pos = head.get();
+        return sequences.get((int) pos & mask) < pos + 1;
+    }
+
+    /** Wakes up the waiting threads. */
+    private synchronized void signal() {
+        this.notifyAll();
+    }
+
+    /** An atomic counter avoiding false sharing with its neighbors. */
+    private static final class PaddedCounter extends AtomicLong {
+        private static final long serialVersionUID = 0x700L; // Version.
+        @SuppressWarnings("unused")
+        private long p1, p2, p3, p4, p5, p6, p7; // Cache line padding.
+    }
+
+}
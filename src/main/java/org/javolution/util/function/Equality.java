@@ -19,6 +19,7 @@ import org.javolution.annotations.Nullable;
 import org.javolution.annotations.ReadOnly;
 import org.javolution.annotations.Realtime;
 import org.javolution.lang.Immutable;
+import org.javolution.util.internal.function.StandardEqualityImpl;
 
 /**
  * A function (functional interface) indicating if two objects are considered equals.
@@ -52,9 +53,10 @@ public interface Equality<T> extends Immutable, Serializable {
     /**
      * The standard object equality (based on {@link Object#equals}). 
      */
+    @SuppressWarnings("unchecked")
     @Realtime(limit = UNKNOWN)
     static <T> Equality<T> standard() {
-    	return (obj1, obj2) -> (obj1 == obj2) || (obj1 != null && obj1.equals(obj2));
+    	return (Equality<T>) StandardEqualityImpl.INSTANCE;
     }
     
     
@@ -0,0 +1,385 @@
+/*
+ * Javolution - Java(TM) Solution for Real-Time and Embedded Systems
+ * Copyright (C) 2012 - Javolution (http://javolution.org/)
+ * All rights reserved.
+ *
+ * Permission to use, copy, modify, and distribute this software is
+ * freely granted, provided that this notice is preserved.
+ */
+package org.javolution.util.internal.collection;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.NoSuchElementException;
+
+import org.javolution.util.AbstractCollection;
+import org.javolution.util.FastIterator;
+import org.javolution.util.FastSet;
+import org.javolution.util.FastTable;
+import org.javolution.util.function.BinaryOperator;
+import org.javolution.util.function.Consumer;
+import org.javolution.util.function.Equality;
+import org.javolution.util.function.Function;
+import org.javolution.util.function.Order;
+import org.javolution.util.function.Predicate;
+import org.javolution.util.internal.function.StandardEqualityImpl;
+
+/**
+ * A view fusing consecutive filter, map and distinct stages over a source collection.
+ *
+ * Chaining views over a fused view appends a stage (consecutive filters are combined and consecutive mappings
+ * are composed) instead of wrapping; all the stages are then evaluated by a single predicate passed to the
+ * source iterator, so that terminal operations ({@link #forEach forEach}, {@link #reduce reduce},
+ * {@link #anyMatch anyMatch}, ...) run as one loop and short-circuit through the whole chain.
+ * Stateless chains split as their source does (the stages being pushed down to each split).
+ */
+public final class FusedCollectionImpl<S, E> extends AbstractCollection<E> {
+
+    private static final long serialVersionUID = 0x700L; // Version.
+    private static final int FILTER = 0;
+    private static final int MAP = 1;
+    private static final int DISTINCT = 2;
+    private static final Object REJECTED = new Object(); // Element rejected by a stage.
+
+    private final AbstractCollection<S> source;
+    private final int[] kinds;
+    private final Object[] stages; // Predicate (FILTER), Function (MAP) or Equality (DISTINCT).
+    private final int distincts; // Number of distinct stages.
+    private final boolean mapped; // Has map stages.
+
+    /** Creates a fused view having a single filter stage. */
+    public static <E> FusedCollectionImpl<E, E> filter(AbstractCollection<E> source, Predicate<? super E> filter) {
+        return new FusedCollectionImpl<E, E>(source, new int[] { FILTER }, new Object[] { filter });
+    }
+
+    /** Creates a fused view having a single map stage. */
+    public static <E, R> FusedCollectionImpl<E, R> map(AbstractCollection<E> source,
+            Function<? super E, ? extends R> function) {
+        return new FusedCollectionImpl<E, R>(source, new int[] { MAP }, new Object[] { function });
+    }
+
+    /** Creates a fused view having a single distinct stage. */
+    public static <E> FusedCollectionImpl<E, E> distinct(AbstractCollection<E> source) {
+        return new FusedCollectionImpl<E, E>(source, new int[] { DISTINCT }, new Object[] { source.equality() });
+    }
+
+    private FusedCollectionImpl(AbstractCollection<S> source, int[] kinds, Object[] stages) {
+        this.source = source;
+        this.kinds = kinds;
+        this.stages = stages;
+        int distincts = 0;
+        boolean mapped = false;
+        for (int kind : kinds) {
+            if (kind == DISTINCT) distincts++;
+            if (kind == MAP) mapped = true;
+        }
+        this.distincts = distincts;
+        this.mapped = mapped;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    // Stages (compilation).
+    //
+
+    @Override
+    public AbstractCollection<E> filter(final Predicate<? super E> filter) {
+        int last = kinds.length - 1;
+        if (kinds[last] != FILTER) return append(FILTER, filter);
+        @SuppressWarnings("unchecked")
+        final Predicate<? super E> previous = (Predicate<? super E>) stages[last];
+        return replaceLast(new Predicate<E>() { // Combines consecutive filters.
+            @Override
+            public boolean test(E param) {
+                return previous.test(param) && filter.test(param);
+            }
+        });
+    }
+
+    @Override
+    public <R> AbstractCollection<R> map(final Function<? super E, ? extends R> function) {
+        int last = kinds.length - 1;
+        if (kinds[last] != MAP) return append(MAP, function);
+        @SuppressWarnings("unchecked")
+        final Function<Object, ? extends E> previous = (Function<Object, ? extends E>) stages[last];
+        return replaceLast(new Function<Object, R>() { // Composes consecutive mappings.
+            @Override
+            public R apply(Object param) {
+                return function.apply(previous.apply(param));
+            }
+        });
+    }
+
+    @Override
+    public AbstractCollection<E> distinct() {
+        return (kinds[kinds.length - 1] == DISTINCT) ? this : append(DISTINCT, equality());
+    }
+
+    private <R> FusedCollectionImpl<S, R> append(int kind, Object stage) {
+        int n = kinds.length;
+        int[] newKinds = new int[n + 1];
+        Object[] newStages = new Object[n + 1];
+        System.arraycopy(kinds, 0, newKinds, 0, n);
+        System.arraycopy(stages, 0, newStages, 0, n);
+        newKinds[n] = kind;
+        newStages[n] = stage;
+        return new FusedCollectionImpl<S, R>(source, newKinds, newStages);
+    }
+
+    private <R> FusedCollectionImpl<S, R> replaceLast(Object stage) {
+        Object[] newStages = stages.clone();
+        newStages[stages.length - 1] = stage;
+        return new FusedCollectionImpl<S, R>(source, kinds, newStages);
+    }
+
+    /**
+     * Runs the specified source element through all the stages; returns {@link #REJECTED} if filtered out.
+     * Distinct stages are ignored if {@code seen} is {@code null}.
+     */
+    @SuppressWarnings("unchecked")
+    private Object evaluate(Object value, Collection<Object>[] seen) {
+        for (int i = 0, d = 0; i < kinds.length; i++) {
+            switch (kinds[i]) {
+                case FILTER:
+                    if (!((Predicate<Object>) stages[i]).test(value)) return REJECTED;
+                    break;
+                case MAP:
+                    value = ((Function<Object, Object>) stages[i]).apply(value);
+                    break;
+                default: // DISTINCT
+                    if (seen == null) break;
+                    Collection<Object> iterated = seen[d];
+                    if (iterated == null) iterated = seen[d] = newSeen((Equality<Object>) stages[i]);
+                    else if (iterated.contains(value)) return REJECTED;
+                    iterated.add(value);
+                    d++;
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Returns a new collection of the elements already seen for the specified equality: hashed (with collision
+     * chains) for the standard equality, ordered for orders and searched linearly otherwise.
+     */
+    @SuppressWarnings("unchecked")
+    static <E> Collection<E> newSeen(Equality<? super E> equality) {
+        if (equality instanceof StandardEqualityImpl) return new HashSet<E>();
+        if (equality instanceof Order) return new FastSet<E>((Order<E>) equality);
+        return new FastTable<E>().equality(equality);
+    }
+
+    /** Returns a new traversal state (per iteration since distinct stages are stateful). */
+    @SuppressWarnings("unchecked")
+    private Collection<Object>[] newTraversal() {
+        return new Collection[distincts];
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    // Terminal operations (single loop over the source).
+    //
+
+    @Override
+    public void forEach(final Consumer<? super E> consumer) {
+        final Collection<Object>[] seen = newTraversal();
+        source.iterator().hasNext(new Predicate<S>() {
+            @SuppressWarnings("unchecked")
+            @Override
+            public boolean test(S param) {
+                Object value = evaluate(param, seen);
+                if (value != REJECTED) consumer.accept((E) value);
+                return false;
+            }
+        });
+    }
+
+    @Override
+    public E reduce(final BinaryOperator<E> operator) {
+        final Collection<Object>[] seen = newTraversal();
+        final Object[] accumulator = new Object[1];
+        source.iterator().hasNext(new Predicate<S>() {
+            @SuppressWarnings("unchecked")
+            @Override
+            public boolean test(S param) {
+                Object value = evaluate(param, seen);
+                if (value == REJECTED) return false;
+                accumulator[0] = (accumulator[0] != null) ? operator.apply((E) accumulator[0], (E) value) : value;
+                return false;
+            }
+        });
+        @SuppressWarnings("unchecked")
+        E result = (E) accumulator[0];
+        return result;
+    }
+
+    @Override
+    public boolean anyMatch(final Predicate<? super E> predicate) {
+        final Collection<Object>[] seen = newTraversal();
+        return source.iterator().hasNext(new Predicate<S>() {
+            @SuppressWarnings("unchecked")
+            @Override
+            public boolean test(S param) {
+                Object value = evaluate(param, seen);
+                return (value != REJECTED) && predicate.test((E) value);
+            }
+        });
+    }
+
+    @Override
+    public E findAny() {
+        FastIterator<E> itr = iterator();
+        return itr.hasNext() ? itr.next() : null;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    // Collection operations.
+    //
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public boolean add(E element) {
+        if (mapped) throw new UnsupportedOperationException("New elements cannot be added to mapped views");
+        if (evaluate(element, null) == REJECTED) return false;
+        if ((distincts != 0) && contains(element)) return false;
+        return source.add((S) element);
+    }
+
+    @Override
+    public void clear() {
+        if (!hasFilter()) source.clear();
+        else removeIf(Predicate.TRUE);
+    }
+
+    @Override
+    public FusedCollectionImpl<S, E> clone() {
+        return new FusedCollectionImpl<S, E>(source.clone(), kinds, stages);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public Equality<? super E> equality() {
+        return mapped ? Equality.standard() : (Equality<? super E>) source.equality();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return hasFilter() ? !anyMatch(Predicate.TRUE) : source.isEmpty();
+    }
+
+    @Override
+    public FastIterator<E> iterator() {
+        return new IteratorImpl(source.iterator());
+    }
+
+    @Override
+    public FastIterator<E> descendingIterator() {
+        return new IteratorImpl(source.descendingIterator());
+    }
+
+    @Override
+    public boolean remove(final Object searched) {
+        if (distincts == 0) return super.remove(searched);
+        return removeIf(new Predicate<E>() { // Removes all occurrences.
+            final Equality<? super E> equality = equality();
+
+            @SuppressWarnings("unchecked")
+            @Override
+            public boolean test(E param) {
+                return equality.areEqual((E) searched, param);
+            }
+        });
+    }
+
+    @Override
+    public boolean removeIf(final Predicate<? super E> filter) {
+        return source.removeIf(new Predicate<S>() { // Duplicates are all removed.
+            @SuppressWarnings("unchecked")
+            @Override
+            public boolean test(S param) {
+                Object value = evaluate(param, null);
+                return (value != REJECTED) && filter.test((E) value);
+            }
+        });
+    }
+
+    @Override
+    public int size() {
+        if (!hasFilter() && (distincts == 0)) return source.size();
+        final int[] count = new int[1];
+        forEach(new Consumer<E>() {
+            @Override
+            public void accept(E param) {
+                count[0]++;
+            }
+        });
+        return count[0];
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public AbstractCollection<E>[] trySplit(int n) {
+        if (distincts != 0) return new AbstractCollection[] { this }; // Does not split.
+        AbstractCollection<S>[] subViews = source.trySplit(n);
+        AbstractCollection<E>[] split = new AbstractCollection[subViews.length];
+        for (int i = 0; i < subViews.length; i++)
+            split[i] = new FusedCollectionImpl<S, E>(subViews[i], kinds, stages);
+        return split;
+    }
+
+    private boolean hasFilter() {
+        for (int kind : kinds)
+            if (kind == FILTER) return true;
+        return false;
+    }
+
+    /** Iterator evaluating all the stages in the source iterator closure. */
+    private final class IteratorImpl implements FastIterator<E>, Predicate<S> {
+        private final FastIterator<S> sourceItr;
+        private final Collection<Object>[] seen = newTraversal();
+        private Predicate<? super E> matching;
+        private E next;
+        private boolean nextReady;
+
+        private IteratorImpl(FastIterator<S> sourceItr) {
+            this.sourceItr = sourceItr;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return hasNext(Predicate.TRUE);
+        }
+
+        @Override
+        public boolean hasNext(Predicate<? super E> matching) {
+            if (nextReady) {
+                if (matching.test(next)) return true;
+                nextReady = false;
+            }
+            this.matching = matching;
+            if (!sourceItr.hasNext(this)) return false;
+            sourceItr.next(); // Consumes the source element (stages already evaluated).
+            return nextReady = true;
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public boolean test(S param) {
+            Object value = evaluate(param, seen);
+            if ((value == REJECTED) || !matching.test((E) value)) return false;
+            next = (E) value;
+            return true;
+        }
+
+        @Override
+        public E next() {
+            if (!hasNext()) throw new NoSuchElementException();
+            nextReady = false;
+            return next;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+}
@@ -0,0 +1,78 @@
+/*
+ * Javolution - Java(TM) Solution for Real-Time and Embedded Systems
+ * Copyright (C) 2012 - Javolution (http://javolution.org/)
+ * All rights reserved.
+ * 
+ * Permission to use, copy, modify, and distribute this software is
+ * freely granted, provided that this notice is preserved.
+ */
+package org.javolution.util.internal.collection;
+
+import org.javolution.util.AbstractCollection;
+import org.javolution.util.FastIterator;
+import org.javolution.util.FastTable;
+import org.javolution.util.function.Equality;
+import org.javolution.util.function.Predicate;
+
+/**
+ * A view whose elements are computed (materialized) from an inner collection each time they are iterated
+ * (e.g. distinct or sorted elements computed concurrently). Updates are performed on the inner collection.
+ */
+abstract class MaterializedCollectionImpl<E> extends AbstractCollection<E> {
+
+    private static final long serialVersionUID = 0x700L; // Version.
+    protected final AbstractCollection<E> inner;
+
+    protected MaterializedCollectionImpl(AbstractCollection<E> inner) {
+        this.inner = inner;
+    }
+
+    /** Returns the elements of this view. */
+    protected abstract FastTable<E> materialize();
+
+    @Override
+    public boolean add(E element) {
+        return inner.add(element);
+    }
+
+    @Override
+    public void clear() {
+        inner.clear();
+    }
+
+    @Override
+    public Equality<? super E> equality() {
+        return inner.equality();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return inner.isEmpty();
+    }
+
+    @Override
+    public FastIterator<E> iterator() {
+        return materialize().unmodifiable().iterator();
+    }
+
+    @Override
+    public FastIterator<E> descendingIterator() {
+        return materialize().unmodifiable().descendingIterator();
+    }
+
+    @Override
+    public boolean removeIf(Predicate<? super E> filter) {
+        return inner.removeIf(filter);
+    }
+
+    @Override
+    public int size() {
+        return materialize().size();
+    }
+
+    @Override
+    public AbstractCollection<E>[] trySplit(int n) {
+        return materialize().trySplit(n);
+    }
+
+}
@@ -8,17 +8,21 @@
  */
 package org.javolution.util.internal.collection;
 
+import java.util.Comparator;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import org.javolution.annotations.Parallel;
 import org.javolution.context.ConcurrentContext;
+import org.javolution.lang.MathLib;
 import org.javolution.util.AbstractCollection;
+import org.javolution.util.AbstractTable;
 import org.javolution.util.FastIterator;
 import org.javolution.util.FastSet;
 import org.javolution.util.FastTable;
 import org.javolution.util.function.BinaryOperator;
 import org.javolution.util.function.Consumer;
 import org.javolution.util.function.Equality;
+import org.javolution.util.function.Function;
 import org.javolution.util.function.Order;
 import org.javolution.util.function.Predicate;
 
@@ -29,6 +33,9 @@ public final class ParallelCollectionImpl<E> extends AbstractCollection<E> {
 
     private static final long serialVersionUID = 0x700L; // Version.
 
+    /** The minimum number of elements per split for tables (smaller splits cost more than they save). */
+    private static final int MIN_SPLIT_SIZE = 256;
+
     private final AbstractCollection<E> inner;
 
     public ParallelCollectionImpl(AbstractCollection<E> inner) {
@@ -47,10 +54,10 @@ public final class ParallelCollectionImpl<E> extends AbstractCollection<E> {
         AnyMatchRunnable<E>[] results;
         ConcurrentContext ctx = ConcurrentContext.enter();
         try {
-            AbstractCollection<E>[] subViews = inner.trySplit(ctx.getConcurrency() + 1);
+            AbstractCollection<E>[] subViews = inner.trySplit(splits(inner, ctx));
             results = new AnyMatchRunnable[subViews.length];
             for (int i = 1; i < subViews.length; i++)
-                ctx.execute(results[i] = new AnyMatchRunnable<E>(subViews[i], predicate));
+                ctx.execute(results[i] = new AnyMatchRunnable<E>(subViews[i], predicate), i); // Split affinity.
             (results[0] = new AnyMatchRunnable<E>(subViews[0], predicate)).run(); // Current thread needs to work too!
         } finally {
             ctx.exit(); // Waits for concurrent completion.
@@ -67,10 +74,10 @@ public final class ParallelCollectionImpl<E> extends AbstractCollection<E> {
         AnyRunnable<E>[] results;
         ConcurrentContext ctx = ConcurrentContext.enter();
         try {
-            AbstractCollection<E>[] subViews = inner.trySplit(ctx.getConcurrency() + 1);
+            AbstractCollection<E>[] subViews = inner.trySplit(splits(inner, ctx));
             results = new AnyRunnable[subViews.length];
             for (int i = 1; i < subViews.length; i++)
-                ctx.execute(results[i] = new AnyRunnable<E>(subViews[i]));
+                ctx.execute(results[i] = new AnyRunnable<E>(subViews[i]), i); // Split affinity.
             (results[0] = new AnyRunnable<E>(subViews[0])).run(); // Current thread needs to work too!
         } finally {
             ctx.exit(); // Waits for concurrent completion.
@@ -98,17 +105,18 @@ public final class ParallelCollectionImpl<E> extends AbstractCollection<E> {
         CollectRunnable<E>[] results;
         ConcurrentContext ctx = ConcurrentContext.enter();
         try {
-            AbstractCollection<E>[] subViews = inner.trySplit(ctx.getConcurrency() + 1);
+            AbstractCollection<E>[] subViews = inner.trySplit(splits(inner, ctx));
             results = new CollectRunnable[subViews.length];
             for (int i = 1; i < subViews.length; i++)
-                ctx.execute(results[i] = new CollectRunnable<E>(subViews[i]));
+                ctx.execute(results[i] = new CollectRunnable<E>(subViews[i]), i); // Split affinity.
             (results[0] = new CollectRunnable<E>(subViews[0])).run(); // Current thread needs to work too!
         } finally {
             ctx.exit(); // Waits for concurrent completion.
         }
-        AbstractCollection<E> collection = results[0].collection;
-        for (int i = 1; i < results.length; i++)
-            collection.addAll(results[i].collection);
+        if (results.length == 1) return results[0].collection;
+        FastTable<E> collection = new FastTable<E>(); // Concatenates the per-split tables (split order).
+        for (CollectRunnable<E> result : results)
+            collection.addAll(result.collection);
         return collection;
     }
 
@@ -122,9 +130,9 @@ public final class ParallelCollectionImpl<E> extends AbstractCollection<E> {
     public void forEach(Consumer<? super E> consumer) {
         ConcurrentContext ctx = ConcurrentContext.enter();
         try {
-            AbstractCollection<E>[] subViews = inner.trySplit(ctx.getConcurrency() + 1);
+            AbstractCollection<E>[] subViews = inner.trySplit(splits(inner, ctx));
             for (int i = 1; i < subViews.length; i++)
-                ctx.execute(new ForEachRunnable<E>(subViews[i], consumer));
+                ctx.execute(new ForEachRunnable<E>(subViews[i], consumer), i); // Split affinity.
             new ForEachRunnable<E>(subViews[0], consumer).run(); // Current thread needs to work too!
         } finally {
             ctx.exit(); // Waits for concurrent completion.
@@ -138,10 +146,10 @@ public final class ParallelCollectionImpl<E> extends AbstractCollection<E> {
         IsEmptyRunnable<E>[] results;
         ConcurrentContext ctx = ConcurrentContext.enter();
         try {
-            AbstractCollection<E>[] subViews = inner.trySplit(ctx.getConcurrency() + 1);
+            AbstractCollection<E>[] subViews = inner.trySplit(splits(inner, ctx));
             results = new IsEmptyRunnable[subViews.length];
             for (int i = 1; i < subViews.length; i++)
-                ctx.execute(results[i] = new IsEmptyRunnable<E>(subViews[i]));
+                ctx.execute(results[i] = new IsEmptyRunnable<E>(subViews[i]), i); // Split affinity.
             (results[0] = new IsEmptyRunnable<E>(subViews[0])).run(); // Current thread needs to work too!
         } finally {
             ctx.exit(); // Waits for concurrent completion.
@@ -168,17 +176,19 @@ public final class ParallelCollectionImpl<E> extends AbstractCollection<E> {
         ReduceRunnable<E>[] results;
         ConcurrentContext ctx = ConcurrentContext.enter();
         try {
-            AbstractCollection<E>[] subViews = inner.trySplit(ctx.getConcurrency() + 1);
+            AbstractCollection<E>[] subViews = inner.trySplit(splits(inner, ctx));
             results = new ReduceRunnable[subViews.length];
             for (int i = 1; i < subViews.length; i++)
-                ctx.execute(results[i] = new ReduceRunnable<E>(subViews[i], operator));
+                ctx.execute(results[i] = new ReduceRunnable<E>(subViews[i], operator), i); // Split affinity.
             (results[0] = new ReduceRunnable<E>(subViews[0], operator)).run(); // Current thread needs to work too!
         } finally {
             ctx.exit(); // Waits for concurrent completion.
         }
-        E accumulator = results[0].accumulator;
-        for (int i = 1; i < results.length;)
-            accumulator = operator.apply(accumulator, results[i].accumulator);
+        E accumulator = null;
+        for (ReduceRunnable<E> result : results) {
+            if (result.accumulator == null) continue; // Empty split.
+            accumulator = (accumulator != null) ? operator.apply(accumulator, result.accumulator) : result.accumulator;
+        }
         return accumulator;
     }
 
@@ -189,10 +199,10 @@ public final class ParallelCollectionImpl<E> extends AbstractCollection<E> {
         RemoveIfRunnable<E>[] results;
         ConcurrentContext ctx = ConcurrentContext.enter();
         try {
-            AbstractCollection<E>[] subViews = inner.trySplit(ctx.getConcurrency() + 1);
+            AbstractCollection<E>[] subViews = inner.trySplit(splits(inner, ctx));
             results = new RemoveIfRunnable[subViews.length];
             for (int i = 1; i < subViews.length; i++)
-                ctx.execute(results[i] = new RemoveIfRunnable<E>(subViews[i], filter));
+                ctx.execute(results[i] = new RemoveIfRunnable<E>(subViews[i], filter), i); // Split affinity.
             (results[0] = new RemoveIfRunnable<E>(subViews[0], filter)).run(); // Current thread needs to work too!
         } finally {
             ctx.exit(); // Waits for concurrent completion.
@@ -209,6 +219,26 @@ public final class ParallelCollectionImpl<E> extends AbstractCollection<E> {
         });
     }
 
+    @Override
+    public AbstractCollection<E> filter(Predicate<? super E> filter) { // Pushed down to each split.
+        return new ParallelCollectionImpl<E>(inner.filter(filter));
+    }
+
+    @Override
+    public <R> AbstractCollection<R> map(Function<? super E, ? extends R> function) { // Pushed down to each split.
+        return new ParallelCollectionImpl<R>(inner.map(function));
+    }
+
+    @Override
+    public AbstractCollection<E> distinct() { // Per-split sets merged.
+        return new ParallelCollectionImpl<E>(new ParallelDistinctCollectionImpl<E>(inner));
+    }
+
+    @Override
+    public AbstractCollection<E> sorted(Comparator<? super E> comparator) { // Per-split sorted runs merged.
+        return new ParallelCollectionImpl<E>(new ParallelSortedCollectionImpl<E>(inner, comparator));
+    }
+
     @Override
     public AbstractCollection<E> sequential() {
         return inner.sequential();
@@ -232,6 +262,16 @@ public final class ParallelCollectionImpl<E> extends AbstractCollection<E> {
         return inner.trySplit(n);
     }
 
+    /** 
+     * Returns the number of splits for the parallel processing of the specified collection; small tables 
+     * (whose size is known in constant time) are not split or split in fewer parts than the concurrency.
+     */
+    static int splits(AbstractCollection<?> collection, ConcurrentContext ctx) {
+        int n = ctx.getConcurrency() + 1;
+        if (!(collection instanceof AbstractTable)) return n;
+        return MathLib.max(1, MathLib.min(n, collection.size() / MIN_SPLIT_SIZE));
+    }
+
     private static final class AnyMatchRunnable<E> implements Runnable {
         private final AbstractCollection<E> subView;
         private final Predicate<? super E> predicate;
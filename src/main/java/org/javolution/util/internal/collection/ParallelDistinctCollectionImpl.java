@@ -0,0 +1,107 @@
+/*
+ * Javolution - Java(TM) Solution for Real-Time and Embedded Systems
+ * Copyright (C) 2012 - Javolution (http://javolution.org/)
+ * All rights reserved.
+ * 
+ * Permission to use, copy, modify, and distribute this software is
+ * freely granted, provided that this notice is preserved.
+ */
+package org.javolution.util.internal.collection;
+
+import java.util.Collection;
+
+import org.javolution.context.ConcurrentContext;
+import org.javolution.util.AbstractCollection;
+import org.javolution.util.FastTable;
+import org.javolution.util.function.Equality;
+import org.javolution.util.function.Predicate;
+
+/**
+ * A distinct view whose elements are computed concurrently: each split of the inner collection is deduplicated
+ * on its own and the partial results are then concatenated in split order (skipping the elements of previous
+ * splits). The iterative order is the same as for the sequential distinct view.
+ */
+public final class ParallelDistinctCollectionImpl<E> extends MaterializedCollectionImpl<E> {
+
+    private static final long serialVersionUID = 0x700L; // Version.
+
+    public ParallelDistinctCollectionImpl(AbstractCollection<E> inner) {
+        super(inner);
+    }
+
+    @Override
+    public boolean add(E element) {
+        return contains(element) ? false : inner.add(element);
+    }
+
+    @Override
+    public ParallelDistinctCollectionImpl<E> clone() {
+        return new ParallelDistinctCollectionImpl<E>(inner.clone());
+    }
+
+    @Override
+    public boolean remove(final Object searched) { // Remove all occurrences.
+        return inner.removeIf(new Predicate<E>() {
+            final Equality<? super E> equality = inner.equality();
+            @SuppressWarnings("unchecked")
+            @Override
+            public boolean test(E param) {
+                return equality.areEqual((E) searched, param);
+            }
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    protected FastTable<E> materialize() {
+        Equality<? super E> equality = inner.equality();
+        DistinctRunnable<E>[] results;
+        ConcurrentContext ctx = ConcurrentContext.enter();
+        try {
+            AbstractCollection<E>[] subViews = inner.trySplit(ParallelCollectionImpl.splits(inner, ctx));
+            results = new DistinctRunnable[subViews.length];
+            for (int i = 1; i < subViews.length; i++)
+                ctx.execute(results[i] = new DistinctRunnable<E>(subViews[i], equality), i); // Split affinity.
+            (results[0] = new DistinctRunnable<E>(subViews[0], equality)).run(); // Current thread needs to work too!
+        } finally {
+            ctx.exit(); // Waits for concurrent completion.
+        }
+        FastTable<E> distinct = results[0].distinct;
+        Collection<E> seen = results[0].seen;
+        for (int i = 1; i < results.length; i++) { // Concatenates in split order.
+            for (E e : results[i].distinct)
+                if (!seen.contains(e)) { // Not in a previous split.
+                    seen.add(e);
+                    distinct.add(e);
+                }
+            results[i] = null;
+        }
+        return distinct;
+    }
+
+    /** Removes the duplicates of a split, keeping the first occurrences in iterative order. */
+    private static final class DistinctRunnable<E> implements Runnable, Predicate<E> {
+        private final AbstractCollection<E> subView;
+        private final Collection<E> seen;
+        private final FastTable<E> distinct = new FastTable<E>();
+
+        private DistinctRunnable(AbstractCollection<E> subView, Equality<? super E> equality) {
+            this.subView = subView;
+            this.seen = FusedCollectionImpl.newSeen(equality);
+        }
+
+        @Override
+        public void run() {
+            subView.iterator().hasNext(this);
+        }
+
+        @Override
+        public boolean test(E param) {
+            if (seen.contains(param)) return false;
+            seen.add(param);
+            distinct.add(param);
+            return false;
+        }
+    }
+
+}
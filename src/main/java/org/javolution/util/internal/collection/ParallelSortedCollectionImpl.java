@@ -0,0 +1,99 @@
+/*
+ * Javolution - Java(TM) Solution for Real-Time and Embedded Systems
+ * Copyright (C) 2012 - Javolution (http://javolution.org/)
+ * All rights reserved.
+ * 
+ * Permission to use, copy, modify, and distribute this software is
+ * freely granted, provided that this notice is preserved.
+ */
+package org.javolution.util.internal.collection;
+
+import java.util.Comparator;
+
+import org.javolution.context.ConcurrentContext;
+import org.javolution.util.AbstractCollection;
+import org.javolution.util.FastTable;
+import org.javolution.util.function.Predicate;
+
+/**
+ * A sorted view whose elements are sorted concurrently: each split of the inner collection is sorted 
+ * into its own run and the sorted runs are then k-way merged.
+ */
+public final class ParallelSortedCollectionImpl<E> extends MaterializedCollectionImpl<E> {
+
+    private static final long serialVersionUID = 0x700L; // Version.
+    private final Comparator<? super E> cmp;
+
+    public ParallelSortedCollectionImpl(AbstractCollection<E> inner, Comparator<? super E> cmp) {
+        super(inner);
+        this.cmp = cmp;
+    }
+
+    @Override
+    public ParallelSortedCollectionImpl<E> clone() {
+        return new ParallelSortedCollectionImpl<E>(inner.clone(), cmp);
+    }
+
+    @Override
+    public int size() {
+        return inner.size();
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    protected FastTable<E> materialize() {
+        SortRunnable<E>[] runs;
+        ConcurrentContext ctx = ConcurrentContext.enter();
+        try {
+            AbstractCollection<E>[] subViews = inner.trySplit(ParallelCollectionImpl.splits(inner, ctx));
+            runs = new SortRunnable[subViews.length];
+            for (int i = 1; i < subViews.length; i++)
+                ctx.execute(runs[i] = new SortRunnable<E>(subViews[i], cmp), i); // Split affinity.
+            (runs[0] = new SortRunnable<E>(subViews[0], cmp)).run(); // Current thread needs to work too!
+        } finally {
+            ctx.exit(); // Waits for concurrent completion.
+        }
+        if (runs.length == 1) return runs[0].sorted;
+        FastTable<E> sorted = new FastTable<E>();
+        int[] heads = new int[runs.length];
+        while (true) { // K-way merge (the number of runs is small).
+            int min = -1;
+            E minElement = null;
+            for (int i = 0; i < runs.length; i++) {
+                if (heads[i] >= runs[i].sorted.size()) continue;
+                E element = runs[i].sorted.get(heads[i]);
+                if ((min < 0) || (cmp.compare(element, minElement) < 0)) {
+                    min = i;
+                    minElement = element;
+                }
+            }
+            if (min < 0) return sorted;
+            sorted.add(minElement);
+            heads[min]++;
+        }
+    }
+
+    private static final class SortRunnable<E> implements Runnable, Predicate<E> {
+        private final AbstractCollection<E> subView;
+        private final Comparator<? super E> cmp;
+        private final FastTable<E> sorted = new FastTable<E>();
+
+        private SortRunnable(AbstractCollection<E> subView, Comparator<? super E> cmp) {
+            this.subView = subView;
+            this.cmp = cmp;
+        }
+
+        @Override
+        public void run() {
+            subView.iterator().hasNext(this);
+            sorted.sort(cmp);
+        }
+
+        @Override
+        public boolean test(E param) {
+            sorted.add(param);
+            return false;
+        }
+    }
+
+}
@@ -0,0 +1,32 @@
+/*
+ * Javolution - Java(TM) Solution for Real-Time and Embedded Systems
+ * Copyright (C) 2012 - Javolution (http://javolution.org/)
+ * All rights reserved.
+ * 
+ * Permission to use, copy, modify, and distribute this software is
+ * freely granted, provided that this notice is preserved.
+ */
+package org.javolution.util.internal.function;
+
+import org.javolution.annotations.Nullable;
+import org.javolution.util.function.Equality;
+
+/**
+ * The standard equality implementation (consistent with {@link Object#hashCode}).
+ */
+public final class StandardEqualityImpl implements Equality<Object> {
+    private static final long serialVersionUID = 0x700L; // Version.
+
+    /** The standard equality instance. */
+    public static final StandardEqualityImpl INSTANCE = new StandardEqualityImpl();
+
+    @Override
+    public boolean areEqual(@Nullable Object left, @Nullable Object right) {
+        return (left == right) || (left != null && left.equals(right));
+    }
+
+    private Object readResolve() {
+        return INSTANCE;
+    }
+
+}
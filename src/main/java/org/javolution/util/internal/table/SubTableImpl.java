@@ -68,7 +68,7 @@ public final class SubTableImpl<E> extends AbstractTable<E> implements List<E> {
 
     @Override
     public FastListIterator<E> listIterator(int index) {
-        if (index < 0 || index >= size()) throw new IndexOutOfBoundsException();
+        if (index < 0 || index > size()) throw new IndexOutOfBoundsException();
         return new IteratorImpl<E>(inner.listIterator(index + fromIndex), fromIndex, toIndex);
     }
 
@@ -113,13 +113,15 @@ public final class SubTableImpl<E> extends AbstractTable<E> implements List<E> {
         }
 
         @Override
-        public boolean hasNext(final Predicate<? super E> matching) {
-            return innerItr.hasNext(new Predicate<E>() {
-
-                @Override
-                public boolean test(E param) {
-                    return innerItr.nextIndex() < toIndex && matching.test(param);
-                }});
+        public boolean hasNext(Predicate<? super E> matching) { // Bounded (inner iteration would overrun toIndex).
+            while (innerItr.nextIndex() < toIndex) {
+                E next = innerItr.next();
+                if ((next != null) && matching.test(next)) {
+                    innerItr.previous();
+                    return true;
+                }
+            }
+            return false;
         }
 
         @Override
@@ -128,13 +130,15 @@ public final class SubTableImpl<E> extends AbstractTable<E> implements List<E> {
         }
 
         @Override
-        public boolean hasPrevious(final Predicate<? super E> matching) {
-            return innerItr.hasPrevious(new Predicate<E>() {
-
-                @Override
-                public boolean test(E param) {
-                    return innerItr.previousIndex() >= fromIndex && matching.test(param);
-                }});
+        public boolean hasPrevious(Predicate<? super E> matching) { // Bounded.
+            while (innerItr.previousIndex() >= fromIndex) {
+                E previous = innerItr.previous();
+                if ((previous != null) && matching.test(previous)) {
+                    innerItr.next();
+                    return true;
+                }
+            }
+            return false;
         }
 
         @Override
@@ -0,0 +1,77 @@
+/*
+ * Javolution - Java(TM) Solution for Real-Time and Embedded Systems
+ * Copyright (C) 2012 - Javolution (http://javolution.org/)
+ * All rights reserved.
+ * 
+ * Permission to use, copy, modify, and distribute this software is
+ * freely granted, provided that this notice is preserved.
+ */
+package org.javolution.context;
+
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class AbstractContextTest {
+
+	static class A extends AbstractContext {
+		@Override
+		protected AbstractContext inner() {
+			return new A();
+		}
+	}
+
+	static class B extends AbstractContext {
+		@Override
+		protected AbstractContext inner() {
+			return new B();
+		}
+	}
+
+	@After
+	public void cleanup() {
+		AbstractContext.inherit(null);
+	}
+
+	@Test
+	public void testNestedLookup() {
+		AbstractContext a = new A().enterInner();
+		AbstractContext b = new B().enterInner();
+		assertSame(a, AbstractContext.current(A.class));
+		assertSame(b, AbstractContext.current(B.class));
+		assertNull(AbstractContext.current(LogContext.class));
+		AbstractContext a2 = new A().enterInner();
+		assertSame(a2, AbstractContext.current(A.class)); // Innermost.
+		assertSame(b, AbstractContext.current(B.class));
+		assertSame(a, a2.getOuter(A.class));
+		a2.exit();
+		assertSame(a, AbstractContext.current(A.class)); // Resolution cached per context.
+		b.exit();
+		assertNull(AbstractContext.current(B.class));
+		a.exit();
+		assertNull(AbstractContext.current(A.class));
+	}
+
+	@Test
+	public void testInheritedLookup() throws InterruptedException {
+		final AbstractContext a = new A().enterInner();
+		final AbstractContext b = new B().enterInner();
+		final AbstractContext[] found = new AbstractContext[2];
+		Thread thread = new Thread() {
+			public void run() {
+				AbstractContext.inherit(b);
+				found[0] = AbstractContext.current(A.class);
+				found[1] = AbstractContext.current(B.class);
+			}
+		};
+		thread.start();
+		thread.join();
+		b.exit();
+		a.exit();
+		assertSame(a, found[0]);
+		assertSame(b, found[1]);
+	}
+
+}
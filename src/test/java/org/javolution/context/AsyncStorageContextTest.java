@@ -0,0 +1,254 @@
+/*
+ * Javolution - Java(TM) Solution for Real-Time and Embedded Systems
+ * Copyright (C) 2012 - Javolution (http://javolution.org/)
+ * All rights reserved.
+ *
+ * Permission to use, copy, modify, and distribute this software is
+ * freely granted, provided that this notice is preserved.
+ */
+package org.javolution.context;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+
+import org.javolution.context.StorageContext.Codec;
+import org.javolution.context.StorageContext.Input;
+import org.javolution.context.StorageContext.Output;
+import org.javolution.context.StorageContext.Resource;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class AsyncStorageContextTest {
+
+	private File location;
+	private File previousLocation;
+
+	private static <T> Resource<T> resource(final String id) {
+		return new Resource<T>() {
+			public String uniqueID() {
+				return id;
+			}
+		};
+	}
+
+	/** In-memory storage recording the groups committed (the first commit waits for the latch, default codecs). */
+	private static class RecordingStorageContext extends StorageContext {
+		final Map<String, Object> values = new ConcurrentHashMap<String, Object>();
+		final List<Integer> groups = new ArrayList<Integer>();
+		final CountDownLatch started = new CountDownLatch(1);
+		final CountDownLatch latch = new CountDownLatch(1);
+
+		@SuppressWarnings("unchecked")
+		@Override
+		public <V extends Serializable> V read(Resource<V> resource) {
+			return (V) values.get(resource.uniqueID());
+		}
+
+		@Override
+		public <V extends Serializable> void write(Resource<V> resource, V value) {
+			values.put(resource.uniqueID(), value);
+		}
+
+		@Override
+		protected void commit(Resource<?>[] resources, Serializable[] values, int length) throws IOException {
+			started.countDown();
+			try {
+				latch.await();
+			} catch (InterruptedException e) {
+				throw new IOException(e);
+			}
+			groups.add(length);
+			super.commit(resources, values, length);
+		}
+
+		@Override
+		protected StorageContext inner() {
+			return this;
+		}
+	}
+
+	@Before
+	public void setUp() throws Exception {
+		location = Files.createTempDirectory("storage").toFile();
+		previousLocation = StorageContext.FILE_STORAGE_LOCATION.reconfigure(location);
+	}
+
+	@After
+	public void tearDown() {
+		StorageContext.FILE_STORAGE_LOCATION.reconfigure(previousLocation);
+	}
+
+	@Test
+	public void testGroupCommit() throws Exception {
+		RecordingStorageContext recording = new RecordingStorageContext();
+		AbstractContext previous = AbstractContext.current();
+		AbstractContext.inherit(recording);
+		try {
+			AsyncStorageContext ctx = AsyncStorageContext.enter(100);
+			try {
+				ConcurrentFuture<Void> first = ctx.writeAsync(resource("A"), 0);
+				recording.started.await(); // A being committed.
+				for (int i = 1; i <= 10; i++)
+					ctx.write(resource("B"), i); // Coalesced.
+				ctx.write(resource("C"), "C");
+				assertEquals(10, (int) ctx.<Integer> read(resource("B"))); // Pending value.
+				assertEquals(3, ctx.getPendingCount());
+				ConcurrentFuture<Void> second = ctx.writeAsync(resource("B"), 11);
+				recording.latch.countDown();
+				ctx.flush();
+				assertTrue(first.isDone() && second.isDone());
+				assertEquals(0, ctx.getPendingCount());
+				assertEquals("[1, 2]", recording.groups.toString()); // Repeated writes coalesced.
+				assertEquals(11, (int) ctx.<Integer> read(resource("B")));
+				ctx.write(resource("D"), "D");
+			} finally {
+				ctx.exit(); // Commits D.
+			}
+			assertEquals("D", recording.read(resource("D")));
+		} finally {
+			AbstractContext.inherit(previous);
+		}
+	}
+
+	@Test
+	public void testSynchronousWriteAfterClose() throws Exception {
+		RecordingStorageContext recording = new RecordingStorageContext();
+		AbstractContext previous = AbstractContext.current();
+		AbstractContext.inherit(recording);
+		try {
+			final AsyncStorageContext ctx = AsyncStorageContext.enter(10);
+			ctx.writeAsync(resource("A"), 1);
+			recording.started.await(); // A being committed.
+			Thread closer = new Thread() {
+				public void run() {
+					AbstractContext.inherit(ctx);
+					ctx.exit();
+				}
+			};
+			closer.start();
+			while (closer.getState() != Thread.State.WAITING) // Closed, waiting for the writer.
+				Thread.yield();
+			Thread writer = new Thread() {
+				public void run() {
+					AbstractContext.inherit(ctx);
+					ctx.write(resource("A"), 2); // Synchronous.
+				}
+			};
+			writer.start();
+			while ((writer.getState() != Thread.State.WAITING) && writer.isAlive())
+				Thread.yield();
+			recording.latch.countDown();
+			writer.join();
+			closer.join();
+			assertEquals(2, (int) recording.<Integer> read(resource("A"))); // Not overwritten by the older value.
+		} finally {
+			AbstractContext.inherit(previous);
+		}
+	}
+
+	@Test
+	public void testBoundedQueue() throws Exception {
+		final AsyncStorageContext ctx = AsyncStorageContext.enter(4);
+		try {
+			final int n = 1000;
+			Thread writer = new Thread() {
+				public void run() {
+					for (int i = 0; i < n; i++)
+						ctx.writeAsync(resource("R" + i), i); // Waits when full.
+				}
+			};
+			writer.start();
+			writer.join();
+			assertTrue(ctx.getPendingCount() <= 4); // Values committing included.
+			ctx.flush();
+			assertEquals(0, ctx.getPendingCount());
+			assertEquals(999, (int) ctx.<Integer> read(resource("R999"))); // Committed.
+		} finally {
+			ctx.exit();
+		}
+		assertTrue(new File(location, "R999").exists());
+	}
+
+	@Test
+	public void testCodecsNotShared() {
+		Codec<Label> codec = new Codec<Label>() {
+			public void write(Label label, Output out) {
+				out.writeString(label.text);
+			}
+
+			public Label read(Class<? extends Label> type, Input in) throws IOException {
+				return new Label(in.readString());
+			}
+		};
+		Resource<Label> label = resource("label");
+		AsyncStorageContext ctx = AsyncStorageContext.enter(10);
+		try {
+			ctx.setCodec(Label.class, codec);
+			assertSame(codec, StorageContext.getCodec(Label.class));
+			ctx.write(label, new Label("A")); // Encoded with the codec set.
+			ctx.flush();
+		} finally {
+			ctx.exit();
+		}
+		assertNotSame(codec, StorageContext.getCodec(Label.class)); // Not set for the outer context.
+		StorageContext storage = StorageContext.enter();
+		try {
+			storage.setCodec(Label.class, codec);
+			assertEquals("A", storage.read(label).text);
+		} finally {
+			storage.exit();
+		}
+	}
+
+	@Test
+	public void testCodecsOfInnerContext() throws Exception {
+		Codec<Label> codec = new Codec<Label>() {
+			public void write(Label label, Output out) {
+				out.writeString(label.text);
+			}
+
+			public Label read(Class<? extends Label> type, Input in) throws IOException {
+				return new Label(in.readString());
+			}
+		};
+		Resource<Label> label = resource("label");
+		AsyncStorageContext ctx = AsyncStorageContext.enter(10);
+		try {
+			StorageContext inner = StorageContext.enter();
+			try {
+				inner.setCodec(Label.class, codec);
+				inner.write(label, new Label("A"));
+				ctx.flush();
+				assertEquals(1, Files.readAllBytes(new File(location, "label").toPath())[0]); // Codec format.
+				assertEquals("A", inner.read(label).text);
+			} finally {
+				inner.exit();
+			}
+		} finally {
+			ctx.exit();
+		}
+	}
+
+	static final class Label implements Serializable {
+		private static final long serialVersionUID = 1L;
+		final String text;
+
+		Label(String text) {
+			this.text = text;
+		}
+	}
+
+}
@@ -0,0 +1,165 @@
+/*
+ * Javolution - Java(TM) Solution for Real-Time and Embedded Systems
+ * Copyright (C) 2012 - Javolution (http://javolution.org/)
+ * All rights reserved.
+ *
+ * Permission to use, copy, modify, and distribute this software is
+ * freely granted, provided that this notice is preserved.
+ */
+package org.javolution.context;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.file.Files;
+import java.util.ArrayList;
+
+import org.javolution.context.StorageContext.Codec;
+import org.javolution.context.StorageContext.Input;
+import org.javolution.context.StorageContext.Output;
+import org.javolution.context.StorageContext.Resource;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class CachedStorageContextTest {
+
+	private File location;
+	private File previousLocation;
+
+	private static <T> Resource<T> resource(final String id) {
+		return new Resource<T>() {
+			public String uniqueID() {
+				return id;
+			}
+		};
+	}
+
+	@Before
+	public void setUp() throws Exception {
+		location = Files.createTempDirectory("storage").toFile();
+		previousLocation = StorageContext.FILE_STORAGE_LOCATION.reconfigure(location);
+	}
+
+	@After
+	public void tearDown() {
+		StorageContext.FILE_STORAGE_LOCATION.reconfigure(previousLocation);
+	}
+
+	@Test
+	public void testReadThrough() {
+		Resource<ArrayList<String>> config = resource("config");
+		CachedStorageContext ctx = CachedStorageContext.enter(10);
+		try {
+			ArrayList<String> value = new ArrayList<String>();
+			value.add("A");
+			ctx.write(config, value);
+			ArrayList<String> first = ctx.read(config);
+			assertEquals(value, first);
+			StorageContext inner = StorageContext.enter(); // Composes.
+			try {
+				assertSame(first, inner.read(config));
+			} finally {
+				inner.exit();
+			}
+			assertEquals(1, ctx.getMissCount(config));
+			assertEquals(1, ctx.getHitCount(config));
+			value.add("B");
+			ctx.write(config, value); // Invalidates.
+			assertEquals(0, ctx.size());
+			assertEquals(2, ctx.read(config).size());
+			assertEquals(2, ctx.getMissCount(config));
+			assertNull(ctx.read(resource("none")));
+			assertNull(ctx.read(resource("none"))); // Absence cached.
+			assertEquals(1, ctx.getHitCount(resource("none")));
+		} finally {
+			ctx.exit();
+		}
+	}
+
+	@Test
+	public void testEviction() {
+		CachedStorageContext ctx = CachedStorageContext.enter(2);
+		try {
+			for (int i = 0; i < 3; i++)
+				ctx.write(resource("R" + i), i);
+			ctx.read(resource("R0"));
+			ctx.read(resource("R1"));
+			ctx.read(resource("R0")); // Most recently used.
+			ctx.read(resource("R2")); // Evicts R1.
+			assertEquals(2, ctx.size());
+			ctx.read(resource("R0"));
+			ctx.read(resource("R1"));
+			assertEquals(2, ctx.getHitCount(resource("R0")));
+			assertEquals(1, ctx.getMissCount(resource("R1"))); // Counts evicted with R1.
+			assertEquals(6, ctx.getHitCount() + ctx.getMissCount());
+			for (int i = 0; i < 1000; i++)
+				ctx.read(resource("X" + i));
+			assertEquals(0, ctx.getMissCount(resource("R0"))); // Counts not kept for resources evicted.
+			assertEquals(1, ctx.getMissCount(resource("X999")));
+		} finally {
+			ctx.exit();
+		}
+	}
+
+	@Test
+	public void testExternalModification() throws Exception {
+		Resource<String> name = resource("name");
+		StorageContext storage = StorageContext.enter();
+		try {
+			storage.write(name, "First");
+			CachedStorageContext ctx = CachedStorageContext.enter(10);
+			try {
+				assertEquals("First", ctx.read(name));
+				File file = new File(location, "name");
+				storage.write(name, "Second"); // Bypasses the cache.
+				file.setLastModified(file.lastModified() + 2000); // Coarse file system timestamps.
+				assertEquals("Second", ctx.read(name));
+				assertEquals(2, ctx.getMissCount(name));
+			} finally {
+				ctx.exit();
+			}
+		} finally {
+			storage.exit();
+		}
+	}
+
+	@Test
+	public void testCodecsNotShared() {
+		Codec<Label> codec = new Codec<Label>() {
+			public void write(Label label, Output out) {
+				out.writeString(label.text);
+			}
+
+			public Label read(Class<? extends Label> type, Input in) throws IOException {
+				return new Label(in.readString());
+			}
+		};
+		CachedStorageContext ctx = CachedStorageContext.enter(10);
+		try {
+			ctx.setCodec(Label.class, codec);
+			assertSame(codec, StorageContext.getCodec(Label.class));
+			Resource<Label> label = resource("label");
+			ctx.write(label, new Label("A"));
+			assertEquals("A", ctx.read(label).text);
+		} finally {
+			ctx.exit();
+		}
+		assertNotSame(codec, StorageContext.getCodec(Label.class)); // Not set for the outer context.
+	}
+
+	static final class Label implements Serializable {
+		private static final long serialVersionUID = 1L;
+		final String text;
+
+		Label(String text) {
+			this.text = text;
+		}
+	}
+
+}
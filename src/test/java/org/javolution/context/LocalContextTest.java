@@ -0,0 +1,58 @@
+/*
+ * Javolution - Java(TM) Solution for Real-Time and Embedded Systems
+ * Copyright (C) 2012 - Javolution (http://javolution.org/)
+ * All rights reserved.
+ * 
+ * Permission to use, copy, modify, and distribute this software is
+ * freely granted, provided that this notice is preserved.
+ */
+package org.javolution.context;
+
+import static org.junit.Assert.assertEquals;
+
+import org.javolution.context.LocalContext.Parameter;
+import org.junit.Test;
+
+public class LocalContextTest {
+
+	static final Parameter<Integer> MODULO = new Parameter<Integer>() {
+		@Override
+		protected Integer getDefault() {
+			return -1;
+		}
+	};
+
+	static final Parameter<String> NAME = new Parameter<String>() {
+		@Override
+		protected String getDefault() {
+			return "default";
+		}
+	};
+
+	@Test
+	public void testNestedSupersede() {
+		assertEquals(-1, (int) MODULO.get());
+		LocalContext outer = LocalContext.enter();
+		try {
+			outer.supersede(MODULO, 13);
+			assertEquals(13, (int) MODULO.get());
+			LocalContext inner = LocalContext.enter();
+			try {
+				assertEquals(13, (int) MODULO.get()); // Inherited.
+				assertEquals("default", NAME.get());
+				inner.supersede(MODULO, 7);
+				inner.supersede(NAME, "inner");
+				assertEquals(7, (int) MODULO.get());
+				assertEquals("inner", NAME.get());
+			} finally {
+				inner.exit();
+			}
+			assertEquals(13, (int) MODULO.get());
+			assertEquals("default", NAME.get());
+		} finally {
+			outer.exit();
+		}
+		assertEquals(-1, (int) MODULO.get());
+	}
+
+}
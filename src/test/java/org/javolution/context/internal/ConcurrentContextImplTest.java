@@ -0,0 +1,642 @@
+/*
+ * Javolution - Java(TM) Solution for Real-Time and Embedded Systems
+ * Copyright (C) 2012 - Javolution (http://javolution.org/)
+ * All rights reserved.
+ * 
+ * Permission to use, copy, modify, and distribute this software is
+ * freely granted, provided that this notice is preserved.
+ */
+package org.javolution.context.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.lang.management.ManagementFactory;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.function.IntConsumer;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.javolution.context.AbstractContext;
+import org.javolution.context.ConcurrentContext;
+import org.javolution.context.ConcurrentFuture;
+import org.javolution.context.ConcurrentMetrics;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ConcurrentContextImplTest {
+
+	private static final ConcurrentContextImpl ROOT = new ConcurrentContextImpl(3);
+
+	@Before
+	public void init() {
+		AbstractContext.inherit(ROOT);
+	}
+
+	@After
+	public void cleanup() {
+		AbstractContext.inherit(null);
+	}
+
+	@Test
+	public void testRecursiveExecution() {
+		assertEquals(3, ConcurrentContext.enter().getConcurrency());
+		AbstractContext.current().exit();
+		long[] values = new long[100000];
+		for (int i = 0; i < values.length; i++)
+			values[i] = i;
+		assertEquals(99999L * 100000L / 2, sum(values, 0, values.length));
+	}
+
+	private static long sum(final long[] values, final int from, final int to) {
+		if (to - from < 1000) {
+			long sum = 0;
+			for (int i = from; i < to; i++)
+				sum += values[i];
+			return sum;
+		}
+		final int half = (from + to) >>> 1;
+		final long[] results = new long[2];
+		ConcurrentContext ctx = ConcurrentContext.enter();
+		try {
+			ctx.execute(new Runnable() {
+				public void run() {
+					results[0] = sum(values, from, half); // Nested context.
+				}
+			});
+			results[1] = sum(values, half, to);
+		} finally {
+			ctx.exit(); // Helps while joining.
+		}
+		return results[0] + results[1];
+	}
+
+	@Test
+	public void testContextInheritance() {
+		final AtomicInteger count = new AtomicInteger();
+		final ConcurrentContext ctx = ConcurrentContext.enter();
+		try {
+			for (int i = 0; i < 10; i++)
+				ctx.execute(new Runnable() {
+					public void run() {
+						assertSame(ctx, AbstractContext.current());
+						count.incrementAndGet();
+					}
+				});
+		} finally {
+			ctx.exit();
+		}
+		assertEquals(10, count.get());
+		assertSame(ROOT, AbstractContext.current());
+	}
+
+	@Test
+	public void testErrorPropagation() {
+		try {
+			ConcurrentContext.execute(new Runnable() {
+				public void run() {
+					throw new IllegalStateException("Failure");
+				}
+			}, new Runnable() {
+				public void run() {
+				}
+			});
+			fail("Concurrent error not propagated");
+		} catch (IllegalStateException e) {
+			assertEquals("Failure", e.getMessage());
+		}
+		assertSame(ROOT, AbstractContext.current());
+	}
+
+	@Test
+	public void testSequentialWhenConcurrencyDisabled() {
+		final Thread current = Thread.currentThread();
+		ConcurrentContext ctx = ConcurrentContext.enter();
+		try {
+			ctx.setConcurrency(0);
+			ctx.execute(new Runnable() {
+				public void run() {
+					assertSame(current, Thread.currentThread());
+				}
+			});
+		} finally {
+			ctx.exit();
+		}
+	}
+
+	@Test
+	public void testParallelFor() {
+		final AtomicIntegerArray visits = new AtomicIntegerArray(10007);
+		ConcurrentContext ctx = ConcurrentContext.enter();
+		try {
+			ctx.parallelFor(0, visits.length(), 100, new IntConsumer() {
+				public void accept(int i) {
+					visits.incrementAndGet(i);
+				}
+			});
+		} finally {
+			ctx.exit();
+		}
+		for (int i = 0; i < visits.length(); i++)
+			assertEquals(1, visits.get(i)); // Each index exactly once.
+	}
+
+	@Test
+	public void testParallelForUpToMaxValue() {
+		final AtomicInteger count = new AtomicInteger();
+		ConcurrentContext ctx = ConcurrentContext.enter();
+		try {
+			ctx.parallelFor(Integer.MAX_VALUE - 1000, Integer.MAX_VALUE, 7, new IntConsumer() {
+				public void accept(int i) {
+					count.incrementAndGet();
+				}
+			});
+		} finally {
+			ctx.exit();
+		}
+		assertEquals(1000, count.get());
+	}
+
+	@Test
+	public void testExecuteAll() {
+		final AtomicInteger count = new AtomicInteger();
+		Runnable[] logics = new Runnable[1000];
+		for (int i = 0; i < logics.length; i++)
+			logics[i] = new Runnable() {
+				public void run() {
+					count.incrementAndGet();
+				}
+			};
+		try {
+			ConcurrentContext ctx = ConcurrentContext.enter();
+			try {
+				ctx.executeAll(logics);
+				ctx.executeAll(new Runnable() {
+					public void run() {
+						throw new IllegalStateException("Failure");
+					}
+				});
+			} finally {
+				ctx.exit();
+			}
+			fail("Concurrent error not propagated");
+		} catch (IllegalStateException e) {
+			assertEquals("Failure", e.getMessage());
+		}
+		assertEquals(1000, count.get());
+		assertSame(ROOT, AbstractContext.current());
+	}
+
+	@Test
+	public void testWorkerStatistics() {
+		final AtomicInteger count = new AtomicInteger();
+		long executed = 0;
+		for (ConcurrentThreadImpl worker : ROOT.getWorkers())
+			executed -= worker.getExecutedCount();
+		ConcurrentContext ctx = ConcurrentContext.enter();
+		try {
+			for (int i = 0; i < 100; i++)
+				ctx.execute(new Runnable() {
+					public void run() {
+						count.incrementAndGet();
+					}
+				}, i);
+		} finally {
+			ctx.exit();
+		}
+		assertTrue(ROOT.getWorkers().length <= 3); // Started on demand.
+		for (ConcurrentThreadImpl worker : ROOT.getWorkers()) {
+			assertEquals(0, worker.getNode()); // No placement.
+			executed += worker.getExecutedCount();
+		}
+		assertTrue(executed <= 100); // Others executed by the current thread.
+		assertEquals(100, count.get());
+	}
+
+	@Test
+	public void testNumaPlacement() {
+		NumaTopology topology = NumaTopology.detect();
+		ConcurrentContextImpl root = new ConcurrentContextImpl(4, topology);
+		final AtomicInteger count = new AtomicInteger();
+		AbstractContext.inherit(root);
+		ConcurrentContext ctx = ConcurrentContext.enter();
+		try {
+			ctx.parallelFor(0, 10000, 10, new IntConsumer() {
+				public void accept(int i) {
+					count.incrementAndGet();
+				}
+			});
+		} finally {
+			ctx.exit();
+		}
+		assertEquals(10000, count.get());
+		for (ConcurrentThreadImpl worker : root.getWorkers())
+			assertTrue(worker.getNode() < topology.nodes());
+	}
+
+	@Test
+	public void testNumaNodeFromLiveWorkers() {
+		NumaTopology topology = new NumaTopology(new String[2], new int[] { 4, 2 });
+		assertEquals(0, topology.nodeFor(new int[] { 0, 0 }));
+		assertEquals(1, topology.nodeFor(new int[] { 1, 0 }));
+		assertEquals(0, topology.nodeFor(new int[] { 1, 1 }));
+		assertEquals(0, topology.nodeFor(new int[] { 0, 2 })); // Workers of node 0 retired.
+		assertEquals(1, topology.nodeFor(new int[] { 3, 1 }));
+	}
+
+	@Test
+	public void testNumaLauncher() throws InterruptedException {
+		NumaTopology topology = new NumaTopology(new String[] { "0", "0" }, new int[] { 1, 1 });
+		final CountDownLatch started = new CountDownLatch(3);
+		for (int i = 0; i < 3; i++)
+			topology.start(new Thread() {
+				public void run() {
+					started.countDown();
+				}
+			}, 1); // Started by the node launcher (pinned once).
+		assertTrue(started.await(10, TimeUnit.SECONDS));
+	}
+
+	@Test
+	public void testSubmit() {
+		final ConcurrentContext ctx = ConcurrentContext.enter();
+		try {
+			ConcurrentFuture<Integer> a = ConcurrentContext.submit(() -> {
+				assertSame(ctx, AbstractContext.current()); // Inherited.
+				return 20;
+			});
+			ConcurrentFuture<Integer> b = ConcurrentContext.submit(() -> 1).thenApply(x -> x + 1);
+			ConcurrentFuture<Integer> c = a.thenCombine(b, (x, y) -> x * y);
+			assertEquals(40, (int) c.join());
+			assertEquals(40, (int) c.toCompletableFuture().join());
+		} finally {
+			ctx.exit(); // Does not wait for submitted computations.
+		}
+	}
+
+	@Test(timeout = 10000)
+	public void testJoinFromWorker() throws InterruptedException {
+		ConcurrentContextImpl root = new ConcurrentContextImpl(1); // Single worker (joining).
+		AbstractContext.inherit(root);
+		final CountDownLatch started = new CountDownLatch(1);
+		ConcurrentFuture<Integer> outer = ConcurrentContext.submit(() -> {
+			started.countDown();
+			ConcurrentFuture<Integer> a = ConcurrentContext.submit(() -> 20); // Pushed to the worker deque.
+			ConcurrentFuture<Integer> b = ConcurrentContext.submit(() -> ConcurrentContext.submit(() -> 2).join());
+			return a.join() + b.join();
+		});
+		started.await(); // Executed by the worker.
+		assertEquals(22, (int) outer.join());
+		root.setConcurrency(0);
+	}
+
+	@Test
+	public void testSubmitErrorPropagation() {
+		ConcurrentFuture<Integer> failed = ConcurrentContext.<Integer>submit(() -> {
+			throw new IllegalStateException("Failure");
+		}).thenApply(x -> x + 1);
+		try {
+			failed.join();
+			fail("Asynchronous error not propagated");
+		} catch (IllegalStateException e) {
+			assertEquals("Failure", e.getMessage());
+		}
+		assertTrue(failed.isDone());
+	}
+
+	@Test
+	public void testCompletableFutureInterop() {
+		CompletableFuture<String> source = new CompletableFuture<String>();
+		ConcurrentFuture<Integer> length = ConcurrentFuture.of(source).thenApply(String::length);
+		assertTrue(!length.isDone());
+		source.complete("Javolution");
+		assertEquals(10, (int) length.join());
+	}
+
+	private static Runnable sleeping(final AtomicInteger interrupted) {
+		return sleeping(interrupted, new CountDownLatch(0));
+	}
+
+	private static Runnable sleeping(final AtomicInteger interrupted, final CountDownLatch started) {
+		return new Runnable() {
+			public void run() {
+				started.countDown();
+				try {
+					Thread.sleep(10000);
+				} catch (InterruptedException e) {
+					interrupted.incrementAndGet();
+				}
+			}
+		};
+	}
+
+	@Test
+	public void testCancellationOnFailure() {
+		AtomicInteger interrupted = new AtomicInteger();
+		final CountDownLatch started = new CountDownLatch(2);
+		long start = System.nanoTime();
+		try {
+			ConcurrentContext ctx = ConcurrentContext.enter();
+			try {
+				ctx.execute(sleeping(interrupted, started));
+				ctx.execute(sleeping(interrupted, started));
+				ctx.execute(new Runnable() {
+					public void run() {
+						try { // Sleeping logics are interrupted (not skipped).
+							started.await(5, TimeUnit.SECONDS);
+						} catch (InterruptedException e) {
+							throw new RuntimeException(e);
+						}
+						throw new IllegalStateException("Failure");
+					}
+				});
+			} finally {
+				ctx.exit();
+			}
+			fail("Concurrent error not propagated");
+		} catch (IllegalStateException e) {
+			assertEquals("Failure", e.getMessage());
+		}
+		assertTrue("Stragglers not cancelled", System.nanoTime() - start < 5000000000L);
+		assertEquals(2, interrupted.get());
+		assertSame(ROOT, AbstractContext.current());
+	}
+
+	@Test
+	public void testCancellationNotLeakedToNestedTasks() throws Exception {
+		final Completion cancelled = new Completion();
+		final Completion other = new Completion();
+		final CountDownLatch nestedStarted = new CountDownLatch(1);
+		final AtomicInteger nestedInterrupted = new AtomicInteger();
+		final AtomicInteger resumedInterrupted = new AtomicInteger();
+		final ConcurrentTaskImpl nested = new ConcurrentTaskImpl(new Runnable() {
+			public void run() { // Unrelated task executed while helping.
+				nestedStarted.countDown();
+				try {
+					Thread.sleep(500);
+				} catch (InterruptedException e) {
+					nestedInterrupted.incrementAndGet();
+				}
+			}
+		}, other);
+		other.scheduled();
+		final ConcurrentTaskImpl task = new ConcurrentTaskImpl(new Runnable() {
+			public void run() {
+				nested.run();
+				if (Thread.currentThread().isInterrupted()) resumedInterrupted.incrementAndGet();
+			}
+		}, cancelled);
+		cancelled.scheduled();
+		Thread thread = new Thread(task);
+		thread.start();
+		nestedStarted.await();
+		cancelled.cancel();
+		thread.join();
+		assertEquals(0, nestedInterrupted.get());
+		assertEquals(1, resumedInterrupted.get()); // Once resumed.
+	}
+
+	@Test
+	public void testTasksStoppedNotRetained() throws Exception {
+		Completion completion = new Completion();
+		Runnable noop = new Runnable() {
+			public void run() {
+			}
+		};
+		ConcurrentTaskImpl task = new ConcurrentTaskImpl(noop, completion);
+		WeakReference<ConcurrentTaskImpl> ref = new WeakReference<ConcurrentTaskImpl>(task);
+		completion.scheduled();
+		task.run();
+		task = null;
+		for (int i = 0; i < 100; i++) { // Later tasks.
+			completion.scheduled();
+			new ConcurrentTaskImpl(noop, completion).run();
+		}
+		for (int i = 0; (i < 10) && (ref.get() != null); i++)
+			System.gc();
+		assertNull(ref.get());
+		assertEquals(0, completion.pending());
+	}
+
+	@Test
+	public void testSuppressedErrors() {
+		final CyclicBarrier barrier = new CyclicBarrier(2);
+		Runnable failing = new Runnable() {
+			public void run() {
+				try {
+					barrier.await(); // Both logics started.
+				} catch (Exception e) {
+					throw new AssertionError(e);
+				}
+				throw new IllegalStateException("Failure");
+			}
+		};
+		try {
+			ConcurrentContext ctx = ConcurrentContext.enter();
+			try {
+				ctx.execute(failing);
+				ctx.execute(failing);
+			} finally {
+				ctx.exit();
+			}
+			fail("Concurrent error not propagated");
+		} catch (IllegalStateException e) {
+			assertEquals(1, e.getSuppressed().length);
+		}
+	}
+
+	@Test
+	public void testExitTimeout() {
+		AtomicInteger interrupted = new AtomicInteger();
+		long start = System.nanoTime();
+		try {
+			ConcurrentContext ctx = ConcurrentContext.enter();
+			try {
+				ctx.execute(sleeping(interrupted));
+			} finally {
+				ctx.exit(100, TimeUnit.MILLISECONDS);
+			}
+			fail("Deadline not enforced");
+		} catch (CancellationException e) {
+			// Expected.
+		}
+		assertTrue("Straggler waited for", System.nanoTime() - start < 5000000000L);
+		assertSame(ROOT, AbstractContext.current());
+	}
+
+	@Test
+	public void testMetrics() {
+		ConcurrentMetrics before = ROOT.getMetrics();
+		ConcurrentContext ctx = ConcurrentContext.enter();
+		try {
+			ctx.execute(new Runnable() {
+				public void run() {
+				}
+			});
+			ConcurrentContext inner = ConcurrentContext.enter();
+			try {
+				inner.setConcurrency(0);
+				inner.execute(new Runnable() {
+					public void run() {
+					}
+				});
+			} finally {
+				inner.exit();
+			}
+		} finally {
+			ctx.exit();
+		}
+		ConcurrentMetrics after = ROOT.getMetrics();
+		assertTrue(after.getExecutedCounts().length <= 3); // Workers are started on demand.
+		assertEquals(before.getScheduledCount() + 1, after.getScheduledCount());
+		assertEquals(before.getInlineCount() + 1, after.getInlineCount());
+		assertEquals(before.getJoinCount() + 2, after.getJoinCount());
+		for (double utilization : after.getUtilizations())
+			assertTrue((utilization >= 0) && (utilization <= 1));
+	}
+
+	@Test
+	public void testResize() throws Exception {
+		ConcurrentContextImpl root = new ConcurrentContextImpl(1);
+		root.setConcurrency(3); // Grows.
+		assertEquals(3, root.getConcurrency());
+		final CyclicBarrier barrier = new CyclicBarrier(4); // Requires three workers.
+		AbstractContext.inherit(root);
+		ConcurrentContext ctx = ConcurrentContext.enter();
+		try {
+			for (int i = 0; i < 3; i++)
+				ctx.execute(new Runnable() {
+					public void run() {
+						try {
+							barrier.await(5, TimeUnit.SECONDS);
+						} catch (Exception e) {
+							throw new RuntimeException(e);
+						}
+					}
+				});
+			barrier.await(5, TimeUnit.SECONDS);
+		} finally {
+			ctx.exit();
+		}
+		assertEquals(3, root.getWorkers().length);
+		root.setConcurrency(1); // Shrinks.
+		assertEquals(1, root.getConcurrency());
+		awaitWorkers(root, 1);
+	}
+
+	@Test
+	public void testBurstStartsWorkers() throws Exception {
+		ConcurrentContextImpl root = new ConcurrentContextImpl(3);
+		AbstractContext.inherit(root);
+		ConcurrentContext ctx = ConcurrentContext.enter();
+		try {
+			ctx.execute(new Runnable() {
+				public void run() {
+				}
+			});
+		} finally {
+			ctx.exit();
+		}
+		awaitWorkers(root, 1);
+		Thread.sleep(50); // The worker is idle.
+		final CyclicBarrier barrier = new CyclicBarrier(4); // Requires three workers.
+		ctx = ConcurrentContext.enter();
+		try {
+			for (int i = 0; i < 3; i++) // Burst (the idle worker is notified once).
+				ctx.execute(new Runnable() {
+					public void run() {
+						try {
+							barrier.await(5, TimeUnit.SECONDS);
+						} catch (Exception e) {
+							throw new RuntimeException(e);
+						}
+					}
+				});
+			barrier.await(5, TimeUnit.SECONDS);
+		} finally {
+			ctx.exit();
+		}
+		assertEquals(3, root.getWorkers().length);
+		root.setConcurrency(0);
+	}
+
+	@Test
+	public void testIdleRetirement() throws Exception {
+		ConcurrentContextImpl root = new ConcurrentContextImpl(new WorkStealingPool(2, NumaTopology.single(), 50));
+		final AtomicInteger count = new AtomicInteger();
+		AbstractContext.inherit(root);
+		ConcurrentContext ctx = ConcurrentContext.enter();
+		try {
+			ctx.parallelFor(0, 1000, 10, new IntConsumer() {
+				public void accept(int i) {
+					count.incrementAndGet();
+				}
+			});
+		} finally {
+			ctx.exit();
+		}
+		assertEquals(1000, count.get());
+		awaitWorkers(root, 0); // Idle workers retired.
+		ctx = ConcurrentContext.enter(); // Workers restarted on demand.
+		try {
+			ctx.parallelFor(0, 1000, 10, new IntConsumer() {
+				public void accept(int i) {
+					count.incrementAndGet();
+				}
+			});
+		} finally {
+			ctx.exit();
+		}
+		assertEquals(2000, count.get());
+	}
+
+	@Test
+	public void testReconfigureConcurrency() {
+		int concurrency = ConcurrentContext.CONCURRENCY.get();
+		AbstractContext.inherit(null); // Default root.
+		try {
+			assertEquals(2, (int) ConcurrentContext.CONCURRENCY.reconfigure(2));
+			ConcurrentContext ctx = ConcurrentContext.enter();
+			try {
+				assertEquals(2, ctx.getConcurrency());
+			} finally {
+				ctx.exit();
+			}
+		} finally {
+			ConcurrentContext.CONCURRENCY.reconfigure(concurrency);
+		}
+	}
+
+	private static void awaitWorkers(ConcurrentContextImpl root, int count) throws InterruptedException {
+		for (int i = 0; (i < 500) && (root.getWorkers().length != count); i++)
+			Thread.sleep(10);
+		assertEquals(count, root.getWorkers().length);
+	}
+
+	@Test
+	public void testMBean() throws Exception {
+		new ConcurrentContextImpl(); // Default root registers its MBean.
+		new ConcurrentContextImpl();
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		ObjectName name = new ObjectName("org.javolution:type=ConcurrentContext");
+		assertTrue(server.isRegistered(name));
+		assertFalse(server.isRegistered(new ObjectName("org.javolution:type=ConcurrentContext,id=2"))); // Once.
+		assertTrue(((Long) server.getAttribute(name, "InlineCount")) >= 0);
+		assertEquals(ConcurrentMetrics.getJoinWaitBounds().length + 1,
+				((long[]) server.getAttribute(name, "JoinWaits")).length);
+	}
+
+}
@@ -0,0 +1,69 @@
+/*
+ * Javolution - Java(TM) Solution for Real-Time and Embedded Systems
+ * Copyright (C) 2012 - Javolution (http://javolution.org/)
+ * All rights reserved.
+ *
+ * Permission to use, copy, modify, and distribute this software is
+ * freely granted, provided that this notice is preserved.
+ */
+package org.javolution.context.internal;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.javolution.context.LogContext;
+import org.javolution.context.LogContext.Level;
+import org.junit.Test;
+
+public class LogContextImplTest {
+
+	@Test
+	public void testLevelGuards() {
+		final AtomicInteger calls = new AtomicInteger();
+		LogContext ctx = LogContext.enter();
+		try {
+			ctx.setLevel(Level.INFO);
+			assertFalse(LogContext.isDebugEnabled());
+			assertTrue(LogContext.isEnabled(Level.WARNING));
+			long queued = ctx.getQueuedCount();
+			LogContext.debug(() -> "Debug " + calls.incrementAndGet());
+			LogContext.debug("Value: ", calls);
+			assertEquals(0, calls.get()); // Not evaluated.
+			LogContext.info(() -> "Info " + calls.incrementAndGet());
+			assertEquals(1, calls.get());
+			assertTrue(ctx.getQueuedCount() > queued);
+		} finally {
+			ctx.exit();
+		}
+	}
+
+	@Test
+	public void testPut() {
+		LogContext outer = LogContext.enter();
+		try {
+			outer.put("Host", "10.0.0.1");
+			outer.put("Client", 42);
+			LogContext inner = LogContext.enter();
+			try {
+				Object[] inherited = ((LogContextImpl) outer).fields();
+				assertSame(inherited, ((LogContextImpl) inner).fields()); // No copy.
+				inner.put("Client", 43);
+				inner.put("Request", "R1");
+				assertArrayEquals(new Object[] { "Host", "10.0.0.1", "Client", 43, "Request", "R1" },
+						((LogContextImpl) inner).fields());
+				LogContext.info("Request processed");
+			} finally {
+				inner.exit();
+			}
+			assertArrayEquals(new Object[] { "Host", "10.0.0.1", "Client", 42 }, ((LogContextImpl) outer).fields());
+		} finally {
+			outer.exit();
+		}
+	}
+
+}
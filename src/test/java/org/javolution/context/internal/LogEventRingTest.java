@@ -0,0 +1,130 @@
+/*
+ * Javolution - Java(TM) Solution for Real-Time and Embedded Systems
+ * Copyright (C) 2012 - Javolution (http://javolution.org/)
+ * All rights reserved.
+ *
+ * Permission to use, copy, modify, and distribute this software is
+ * freely granted, provided that this notice is preserved.
+ */
+package org.javolution.context.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.javolution.context.LogContext.Level;
+import org.javolution.text.TextBuilder;
+import org.junit.Test;
+
+public class LogEventRingTest {
+
+	@Test
+	public void testReuse() {
+		LogEventRing ring = new LogEventRing(3);
+		assertEquals(4, ring.capacity());
+		final StringBuilder consumed = new StringBuilder();
+		LogEventRing.Handler handler = new LogEventRing.Handler() {
+			public void handle(LogEventRing.Event event) {
+				consumed.append(event.level).append(':').append(event.text).append(' ');
+			}
+		};
+		for (int i = 0; i < 10; i++) { // Wraps around.
+			LogEventRing.Event event = ring.claim();
+			event.level = Level.INFO;
+			event.text.append(i);
+			ring.publish(event);
+			assertEquals(1, ring.drainTo(handler, 16));
+		}
+		assertTrue(ring.isEmpty());
+		assertEquals("INFO:0 INFO:1 INFO:2 INFO:3 INFO:4 INFO:5 INFO:6 INFO:7 INFO:8 INFO:9 ", consumed.toString());
+	}
+
+	@Test
+	public void testLargeTextNotRetained() {
+		LogEventRing ring = new LogEventRing(1);
+		LogEventRing.Handler handler = new LogEventRing.Handler() {
+			public void handle(LogEventRing.Event event) {}
+		};
+		LogEventRing.Event event = ring.claim();
+		TextBuilder small = event.text.append("Small");
+		ring.publish(event);
+		ring.drainTo(handler, 1);
+		assertSame(small, ring.claim().text); // Reused.
+		for (int i = 0; i < 100000; i++)
+			event.text.append('x');
+		ring.publish(event);
+		ring.drainTo(handler, 1);
+		assertNotSame(small, ring.claim().text); // Replaced.
+		assertEquals(0, event.text.length());
+	}
+
+	@Test
+	public void testBatch() {
+		LogEventRing ring = new LogEventRing(8);
+		final int[] count = new int[1];
+		LogEventRing.Handler handler = new LogEventRing.Handler() {
+			public void handle(LogEventRing.Event event) {
+				count[0]++;
+			}
+		};
+		LogEventRing.Event first = ring.claim();
+		LogEventRing.Event second = ring.claim();
+		ring.publish(second);
+		assertEquals(0, ring.drainTo(handler, 8)); // Ordered, first not published yet.
+		ring.publish(first);
+		assertEquals(2, ring.drainTo(handler, 8));
+		assertEquals(2, count[0]);
+		assertTrue(ring.isEmpty());
+	}
+
+	@Test
+	public void testTryClaim() {
+		LogEventRing ring = new LogEventRing(2);
+		LogEventRing.Event first = ring.tryClaim();
+		LogEventRing.Event second = ring.tryClaim();
+		assertEquals(null, ring.tryClaim()); // Full.
+		assertEquals(2, ring.size());
+		ring.publish(first);
+		ring.publish(second);
+		assertEquals(2, ring.drainTo(new LogEventRing.Handler() {
+			public void handle(LogEventRing.Event event) {}
+		}, 8));
+		assertTrue(ring.tryClaim() != null);
+		assertEquals(1, ring.size());
+	}
+
+	@Test
+	public void testConcurrentProducers() throws Exception {
+		final LogEventRing ring = new LogEventRing(16); // Producers wait for the consumer.
+		final int n = 10000;
+		Thread[] producers = new Thread[3];
+		for (int p = 0; p < producers.length; p++) {
+			producers[p] = new Thread() {
+				public void run() {
+					for (int i = 0; i < n; i++) {
+						LogEventRing.Event event = ring.claim();
+						event.text.append(1);
+						ring.publish(event);
+					}
+				}
+			};
+			producers[p].start();
+		}
+		final long[] sum = new long[1];
+		LogEventRing.Handler handler = new LogEventRing.Handler() {
+			public void handle(LogEventRing.Event event) {
+				sum[0] += event.text.charAt(0) - '0';
+			}
+		};
+		while (sum[0] < producers.length * n) {
+			ring.awaitEvent();
+			ring.drainTo(handler, 4);
+		}
+		for (Thread producer : producers)
+			producer.join();
+		assertEquals(producers.length * n, sum[0]);
+		assertTrue(ring.isEmpty());
+	}
+
+}
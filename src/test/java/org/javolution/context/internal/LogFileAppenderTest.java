@@ -0,0 +1,128 @@
+/*
+ * Javolution - Java(TM) Solution for Real-Time and Embedded Systems
+ * Copyright (C) 2012 - Javolution (http://javolution.org/)
+ * All rights reserved.
+ *
+ * Permission to use, copy, modify, and distribute this software is
+ * freely granted, provided that this notice is preserved.
+ */
+package org.javolution.context.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+
+import org.javolution.context.LogContext.FileForce;
+import org.javolution.context.LogContext.FileFormat;
+import org.javolution.context.LogContext.Level;
+import org.javolution.text.TextBuilder;
+import org.junit.Test;
+
+public class LogFileAppenderTest {
+
+	private static final Object[] NO_FIELDS = new Object[0];
+
+	@Test
+	public void testFormatTime() {
+		DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'")
+				.withZone(ZoneOffset.UTC);
+		char[] chars = new char[24];
+		long[] times = { 0, 951782400000L, 1792332725123L, 4102444799999L, 1234L };
+		for (long time : times) {
+			LogFileAppender.formatTime(time, chars);
+			assertEquals(formatter.format(Instant.ofEpochMilli(time)), new String(chars));
+		}
+	}
+
+	@Test
+	public void testAppend() throws Exception {
+		File dir = Files.createTempDirectory("log").toFile();
+		File file = new File(dir, "test.log");
+		LogFileAppender appender = new LogFileAppender(file, FileFormat.TEXT, 0, 0, FileForce.NEVER);
+		TextBuilder message = new TextBuilder();
+		for (int i = 0; i < 10000; i++) {
+			message.clear().append("Message ").append(i).append(" é€");
+			appender.append(0, Level.INFO, message, NO_FIELDS, null);
+		}
+		appender.append(0, Level.ERROR, "Failure", NO_FIELDS, new IllegalStateException("Test"));
+		appender.close();
+		List<String> lines = Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+		assertEquals("1970-01-01T00:00:00.000Z INFO Message 0 é€", lines.get(0));
+		assertEquals("1970-01-01T00:00:00.000Z INFO Message 9999 é€", lines.get(9999));
+		assertEquals("1970-01-01T00:00:00.000Z ERROR Failure", lines.get(10000));
+		assertEquals("java.lang.IllegalStateException: Test", lines.get(10001));
+	}
+
+	@Test
+	public void testSurrogatePairsAtBufferEdge() throws Exception {
+		File dir = Files.createTempDirectory("log").toFile();
+		String emoji = "\ud83d\ude00"; // U+1F600 (4 bytes).
+		for (FileFormat format : FileFormat.values()) {
+			int prefix = (format == FileFormat.TEXT) ? 30 : 61; // Bytes before the message.
+			for (int offset = 0; offset < 4; offset++) { // Emoji starting 3 to 6 bytes before the buffer end.
+				File file = new File(dir, "test." + format + offset);
+				LogFileAppender appender = new LogFileAppender(file, format, 0, 0, FileForce.NEVER);
+				TextBuilder message = new TextBuilder();
+				for (int i = (1 << 18) - prefix - 3 - offset; i > 0; i--)
+					message.append('x');
+				message.append(emoji).append(emoji);
+				appender.append(0, Level.INFO, message, NO_FIELDS, null);
+				appender.close();
+				String line = Files.readAllLines(file.toPath(), StandardCharsets.UTF_8).get(0);
+				assertTrue(line.contains("x" + emoji + emoji));
+			}
+		}
+	}
+
+	@Test
+	public void testFields() throws Exception {
+		File dir = Files.createTempDirectory("log").toFile();
+		File text = new File(dir, "test.log");
+		File json = new File(dir, "test.json");
+		Object[] fields = { "Host", "10.0.0.1", "Client", 42 };
+		LogFileAppender appender = new LogFileAppender(text, FileFormat.TEXT, 0, 0, FileForce.NEVER);
+		appender.append(0, Level.INFO, "Request \"A\"", fields, null);
+		appender.close();
+		appender = new LogFileAppender(json, FileFormat.JSON, 0, 0, FileForce.NEVER);
+		appender.append(0, Level.INFO, "Request \"A\"", fields, null);
+		appender.append(0, Level.ERROR, "Failure", NO_FIELDS, new IllegalStateException("Test"));
+		appender.close();
+		assertEquals("1970-01-01T00:00:00.000Z INFO Request \"A\" Host=10.0.0.1 Client=42",
+				Files.readAllLines(text.toPath(), StandardCharsets.UTF_8).get(0));
+		List<String> lines = Files.readAllLines(json.toPath(), StandardCharsets.UTF_8);
+		assertEquals("{\"time\":\"1970-01-01T00:00:00.000Z\",\"level\":\"INFO\",\"message\":\"Request \\\"A\\\"\","
+				+ "\"Host\":\"10.0.0.1\",\"Client\":\"42\"}", lines.get(0));
+		assertEquals(2, lines.size()); // Stack trace escaped.
+		assertTrue(lines.get(1).startsWith("{\"time\":\"1970-01-01T00:00:00.000Z\",\"level\":\"ERROR\","
+				+ "\"message\":\"Failure\",\"error\":\"java.lang.IllegalStateException: Test\\n"));
+	}
+
+	@Test
+	public void testRolling() throws Exception {
+		File dir = Files.createTempDirectory("log").toFile();
+		File file = new File(dir, "test.log");
+		LogFileAppender appender = new LogFileAppender(file, FileFormat.TEXT, 1000, 0, FileForce.ROLL);
+		for (int i = 0; i < 100; i++) {
+			appender.append(System.currentTimeMillis(), Level.DEBUG, "0123456789012345678901234567890123456789",
+					NO_FIELDS, null);
+			appender.flush(); // Size known once written.
+		}
+		appender.close();
+		File[] files = dir.listFiles();
+		assertTrue(files.length > 5);
+		long total = 0;
+		for (File f : files) {
+			assertTrue(f.length() <= 1000 + 80);
+			total += Files.readAllLines(f.toPath(), StandardCharsets.UTF_8).size();
+		}
+		assertEquals(100, total);
+	}
+
+}
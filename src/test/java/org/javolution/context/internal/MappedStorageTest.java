@@ -0,0 +1,176 @@
+/*
+ * Javolution - Java(TM) Solution for Real-Time and Embedded Systems
+ * Copyright (C) 2012 - Javolution (http://javolution.org/)
+ * All rights reserved.
+ *
+ * Permission to use, copy, modify, and distribute this software is
+ * freely granted, provided that this notice is preserved.
+ */
+package org.javolution.context.internal;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+public class MappedStorageTest {
+
+	private static byte[] bytes(String str) {
+		return str.getBytes(StandardCharsets.UTF_8);
+	}
+
+	@Test
+	public void testReadWrite() throws Exception {
+		File dir = Files.createTempDirectory("storage").toFile();
+		MappedStorage storage = new MappedStorage(dir);
+		assertNull(storage.read("A"));
+		long v1 = storage.write("A", bytes("Hello"));
+		storage.write("B", bytes("World"));
+		long v2 = storage.write("A", bytes("Hello Again"));
+		assertTrue(v2 > v1);
+		assertEquals(v2, storage.versionOf("A"));
+		assertArrayEquals(bytes("Hello Again"), storage.read("A"));
+		storage.write("B", null); // Deletion.
+		assertNull(storage.read("B"));
+		assertEquals(1, storage.size());
+		storage.close();
+		storage = new MappedStorage(dir); // Recovery.
+		assertArrayEquals(bytes("Hello Again"), storage.read("A"));
+		assertNull(storage.read("B"));
+		assertEquals(v2, storage.versionOf("A"));
+		assertTrue(storage.write("C", new byte[0]) > v2);
+		assertArrayEquals(new byte[0], storage.read("C"));
+		storage.close();
+	}
+
+	@Test
+	public void testExclusiveLock() throws Exception {
+		File dir = Files.createTempDirectory("storage").toFile();
+		MappedStorage storage = new MappedStorage(dir);
+		try {
+			new MappedStorage(dir);
+			fail("Log opened twice");
+		} catch (IOException error) {
+			// Expected (fails fast).
+		}
+		storage.close();
+		storage = new MappedStorage(dir); // Lock released.
+		storage.close();
+	}
+
+	@Test
+	public void testTornRecord() throws Exception {
+		File dir = Files.createTempDirectory("storage").toFile();
+		MappedStorage storage = new MappedStorage(dir);
+		storage.write("A", bytes("First"));
+		storage.write("A", bytes("Second"));
+		long end = 16 + storage.logSize();
+		storage.close();
+		RandomAccessFile file = new RandomAccessFile(new File(dir, "data-1.log"), "rw");
+		file.seek(end - 2); // Corrupts the last record.
+		file.write(0xFF);
+		file.close();
+		storage = new MappedStorage(dir);
+		assertArrayEquals(bytes("First"), storage.read("A"));
+		storage.write("A", bytes("Third")); // Overwrites the torn record.
+		storage.close();
+		storage = new MappedStorage(dir);
+		assertArrayEquals(bytes("Third"), storage.read("A"));
+		storage.close();
+	}
+
+	@Test
+	public void testCompaction() throws Exception {
+		File dir = Files.createTempDirectory("storage").toFile();
+		MappedStorage storage = new MappedStorage(dir);
+		byte[] value = new byte[1000];
+		for (int i = 0; i < 10000; i++) { // Background compactions.
+			value[0] = (byte) i;
+			storage.write("R" + (i % 100), value);
+		}
+		storage.compact();
+		assertTrue(storage.logSize() < 200000);
+		assertEquals(100, storage.size());
+		for (int i = 9900; i < 10000; i++)
+			assertEquals((byte) i, storage.read("R" + (i % 100))[0]);
+		storage.close();
+		assertEquals(2, dir.listFiles().length); // Current generation and lock file.
+		storage = new MappedStorage(dir);
+		assertEquals(100, storage.size());
+		assertEquals((byte) 9999, storage.read("R99")[0]);
+		storage.close();
+	}
+
+	@Test
+	public void testDeletionDuringCompaction() throws Exception {
+		File dir = Files.createTempDirectory("storage").toFile();
+		final MappedStorage storage = new MappedStorage(dir);
+		byte[] value = new byte[10000];
+		for (int i = 0; i < 5000; i++)
+			storage.write("R" + i, value);
+		final AtomicReference<Exception> error = new AtomicReference<Exception>();
+		Thread compaction = new Thread(new Runnable() {
+			public void run() {
+				try {
+					storage.compact();
+				} catch (Exception e) {
+					error.set(e);
+				}
+			}
+		});
+		compaction.start();
+		File tmp = new File(dir, "data-2.tmp");
+		while ((tmp.length() < (4 << 20)) && compaction.isAlive()) // Some records copied.
+			Thread.yield();
+		for (int i = 0; i < 5000; i++)
+			storage.write("R" + i, null);
+		compaction.join();
+		assertNull(error.get());
+		assertEquals(0, storage.size());
+		storage.close();
+		MappedStorage reopened = new MappedStorage(dir); // Deleted resources are not recovered.
+		assertEquals(0, reopened.size());
+		reopened.close();
+	}
+
+	@Test
+	public void testConcurrentReaders() throws Exception {
+		File dir = Files.createTempDirectory("storage").toFile();
+		final MappedStorage storage = new MappedStorage(dir);
+		storage.write("A", new byte[100]);
+		final AtomicReference<String> failure = new AtomicReference<String>();
+		final AtomicBoolean done = new AtomicBoolean();
+		Thread reader = new Thread() {
+			public void run() {
+				while (!done.get()) {
+					byte[] value = storage.read("A");
+					for (byte b : value)
+						if (b != value[0]) failure.set("Torn value read"); // All bytes written at once.
+				}
+			}
+		};
+		reader.start();
+		byte[] value = new byte[100];
+		for (int i = 0; i < 20000; i++) {
+			Arrays.fill(value, (byte) i);
+			storage.write("A", value);
+		}
+		done.set(true);
+		reader.join();
+		assertNull(failure.get());
+		storage.close();
+	}
+
+}
@@ -0,0 +1,204 @@
+/*
+ * Javolution - Java(TM) Solution for Real-Time and Embedded Systems
+ * Copyright (C) 2012 - Javolution (http://javolution.org/)
+ * All rights reserved.
+ *
+ * Permission to use, copy, modify, and distribute this software is
+ * freely granted, provided that this notice is preserved.
+ */
+package org.javolution.context.internal;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.javolution.context.StorageContext;
+import org.javolution.context.StorageContext.Codec;
+import org.javolution.context.StorageContext.Input;
+import org.javolution.context.StorageContext.Output;
+import org.javolution.context.StorageContext.Resource;
+import org.javolution.io.Struct;
+import org.junit.Test;
+
+public class StorageContextImplTest {
+
+	private static final StorageContextImpl ROOT = new StorageContextImpl();
+
+	public static class Point implements Serializable {
+		private static final long serialVersionUID = 1L;
+		final int x, y;
+
+		Point(int x, int y) {
+			this.x = x;
+			this.y = y;
+		}
+	}
+
+	public static class Tick extends Struct {
+		public final Signed64 time = new Signed64();
+		public final Float64 price = new Float64();
+	}
+
+	@Test
+	public void testPredefinedCodecs() throws Exception {
+		Map<String, Object> map = new HashMap<String, Object>();
+		map.put("name", "Été €");
+		map.put("count", -42);
+		map.put("total", Long.MIN_VALUE);
+		map.put("ratio", 0.5);
+		map.put("unit", TimeUnit.SECONDS);
+		map.put("none", null);
+		List<Object> list = new ArrayList<Object>();
+		list.add(new int[] { 1, -1, Integer.MAX_VALUE });
+		list.add(new String[] { "a", null });
+		list.add(new LinkedHashSet<Object>(Arrays.asList("z", "a")));
+		map.put("list", list);
+		byte[] bytes = ROOT.encode((Serializable) map);
+		assertTrue(bytes.length < serialize(map).length / 4);
+		assertTrue(new String(bytes, StandardCharsets.ISO_8859_1).contains("SECONDS")); // Enums by name.
+		@SuppressWarnings("unchecked")
+		Map<String, Object> decoded = (Map<String, Object>) ROOT.decode(bytes);
+		assertEquals(HashMap.class, decoded.getClass());
+		assertEquals(map.keySet(), decoded.keySet());
+		assertEquals("Été €", decoded.get("name"));
+		assertEquals(-42, decoded.get("count"));
+		assertEquals(Long.MIN_VALUE, decoded.get("total"));
+		assertEquals(0.5, decoded.get("ratio"));
+		assertSame(TimeUnit.SECONDS, decoded.get("unit"));
+		List<?> decodedList = (List<?>) decoded.get("list");
+		assertArrayEquals(new int[] { 1, -1, Integer.MAX_VALUE }, (int[]) decodedList.get(0));
+		assertArrayEquals(new String[] { "a", null }, (String[]) decodedList.get(1));
+		assertEquals("[z, a]", decodedList.get(2).toString()); // Order preserved.
+	}
+
+	@Test
+	public void testLinkedHashMapAccessOrder() throws Exception {
+		Map<String, Integer> map = new LinkedHashMap<String, Integer>(16, 0.75f, true);
+		map.put("a", 1);
+		map.put("b", 2);
+		map.get("a"); // Most recently accessed last.
+		@SuppressWarnings("unchecked")
+		Map<String, Integer> decoded = (Map<String, Integer>) ROOT.decode(
+				ROOT.encode((Serializable) map));
+		assertEquals("[b, a]", decoded.keySet().toString());
+		decoded.get("b");
+		assertEquals("[a, b]", decoded.keySet().toString()); // Still in access order.
+	}
+
+	@Test
+	public void testSharedReferences() throws Exception {
+		ArrayList<Object> cyclic = new ArrayList<Object>();
+		cyclic.add("a");
+		cyclic.add(cyclic);
+		byte[] bytes = ROOT.encode(cyclic);
+		assertArrayEquals(serialize(cyclic), bytes); // Java serialization.
+		List<?> decoded = (List<?>) ROOT.decode(bytes);
+		assertSame(decoded, decoded.get(1));
+		List<String> list = new ArrayList<String>(Arrays.asList("x", "y"));
+		HashMap<String, Object> map = new HashMap<String, Object>();
+		map.put("first", list);
+		map.put("second", list);
+		Map<?, ?> decodedMap = (Map<?, ?>) ROOT.decode(ROOT.encode(map));
+		assertSame(decodedMap.get("first"), decodedMap.get("second"));
+		map.put("second", new ArrayList<String>(list)); // Equal but not shared.
+		assertEquals(1, ROOT.encode(map)[0]); // Codec format.
+	}
+
+	@Test
+	public void testJavaSerialization() throws Exception {
+		Point point = new Point(1, 2);
+		byte[] bytes = ROOT.encode(point);
+		assertArrayEquals(serialize(point), bytes); // Same as previous versions.
+		assertEquals(2, ((Point) ROOT.decode(bytes)).y);
+	}
+
+	private static final Codec<Point> POINT_CODEC = new Codec<Point>() {
+		public void write(Point point, Output out) {
+			out.writeVarInt(point.x);
+			out.writeVarInt(point.y);
+		}
+
+		public Point read(Class<? extends Point> type, Input in) throws IOException {
+			return new Point(in.readVarInt(), in.readVarInt());
+		}
+	};
+
+	@Test
+	public void testCustomCodec() throws Exception {
+		StorageContextImpl ctx = (StorageContextImpl) StorageContext.enter();
+		try {
+			ctx.setCodec(Point.class, POINT_CODEC);
+			List<Point> points = new ArrayList<Point>();
+			for (int i = 0; i < 100; i++)
+				points.add(new Point(i, -i));
+			byte[] bytes = ctx.encode((Serializable) points);
+			assertTrue(bytes.length < 600); // Class name stored once.
+			@SuppressWarnings("unchecked")
+			List<Point> decoded = (List<Point>) ctx.decode(bytes);
+			assertEquals(100, decoded.size());
+			assertEquals(-99, decoded.get(99).y);
+		} finally {
+			ctx.exit();
+		}
+		assertSame(Codec.JDK, StorageContext.getCodec(Point.class)); // Outer context not modified.
+	}
+
+	@Test
+	public void testCodecsOfContextUsed() throws Exception {
+		File previous = StorageContext.FILE_STORAGE_LOCATION.reconfigure(
+				Files.createTempDirectory("storage").toFile());
+		try {
+			Resource<Point> point = new Resource<Point>() {
+				public String uniqueID() {
+					return "point";
+				}
+			};
+			StorageContext ctx = StorageContext.enter();
+			ctx.setCodec(Point.class, POINT_CODEC);
+			ctx.exit();
+			ctx.write(point, new Point(1, 2)); // Not the current context.
+			assertEquals(2, ctx.read(point).y);
+		} finally {
+			StorageContext.FILE_STORAGE_LOCATION.reconfigure(previous);
+		}
+	}
+
+	@Test
+	public void testStructCodec() throws Exception {
+		assertSame(Codec.STRUCT, StorageContext.getCodec(Tick.class));
+		Tick tick = new Tick();
+		tick.time.set(123456789L);
+		tick.price.set(99.5);
+		Output out = new Output();
+		out.writeObject(tick);
+		Tick decoded = new Input(out.toByteArray(), 0, out.size()).readObject();
+		assertEquals(123456789L, decoded.time.get());
+		assertEquals(99.5, decoded.price.get(), 0.0);
+	}
+
+	private static byte[] serialize(Object obj) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		ObjectOutputStream out = new ObjectOutputStream(bytes);
+		out.writeObject(obj);
+		out.close();
+		return bytes.toByteArray();
+	}
+
+}
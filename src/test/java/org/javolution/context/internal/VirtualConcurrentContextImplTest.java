@@ -0,0 +1,82 @@
+/*
+ * Javolution - Java(TM) Solution for Real-Time and Embedded Systems
+ * Copyright (C) 2012 - Javolution (http://javolution.org/)
+ * All rights reserved.
+ * 
+ * Permission to use, copy, modify, and distribute this software is
+ * freely granted, provided that this notice is preserved.
+ */
+package org.javolution.context.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.javolution.context.AbstractContext;
+import org.javolution.context.ConcurrentContext;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class VirtualConcurrentContextImplTest {
+
+	private static final VirtualConcurrentContextImpl ROOT = new VirtualConcurrentContextImpl();
+
+	@Before
+	public void init() {
+		AbstractContext.inherit(ROOT);
+	}
+
+	@After
+	public void cleanup() {
+		AbstractContext.inherit(null);
+	}
+
+	@Test
+	public void testBlockingLogics() {
+		final AtomicInteger count = new AtomicInteger();
+		final ConcurrentContext ctx = ConcurrentContext.enter();
+		long start = System.nanoTime();
+		try {
+			for (int i = 0; i < 100; i++)
+				ctx.execute(new Runnable() {
+					public void run() {
+						try {
+							Thread.sleep(100); // Blocking.
+						} catch (InterruptedException e) {
+							throw new IllegalStateException(e);
+						}
+						assertSame(ctx, AbstractContext.current());
+						count.incrementAndGet();
+					}
+				});
+		} finally {
+			ctx.exit();
+		}
+		assertEquals(100, count.get());
+		assertTrue("Blocking logics not concurrent", System.nanoTime() - start < 5000000000L);
+		assertSame(ROOT, AbstractContext.current());
+	}
+
+	@Test
+	public void testErrorPropagation() {
+		try {
+			ConcurrentContext.execute(new Runnable() {
+				public void run() {
+					throw new IllegalStateException("Failure");
+				}
+			}, new Runnable() {
+				public void run() {
+				}
+			});
+			fail("Concurrent error not propagated");
+		} catch (IllegalStateException e) {
+			assertEquals("Failure", e.getMessage());
+		}
+		assertSame(ROOT, AbstractContext.current());
+	}
+
+}
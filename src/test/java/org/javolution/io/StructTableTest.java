@@ -0,0 +1,132 @@
+/*
+ * Javolution - Java(TM) Solution for Real-Time and Embedded Systems
+ * Copyright (C) 2012 - Javolution (http://javolution.org/)
+ * All rights reserved.
+ * 
+ * Permission to use, copy, modify, and distribute this software is
+ * freely granted, provided that this notice is preserved.
+ */
+package org.javolution.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.nio.ByteBuffer;
+
+import org.javolution.util.function.Supplier;
+import org.junit.Before;
+import org.junit.Test;
+
+public class StructTableTest {
+
+	public static class Tick extends Struct {
+		public final Signed64 time = new Signed64();
+		public final Float64 price = new Float64();
+		public final Signed32 volume = new Signed32();
+	}
+
+	private static final Supplier<Tick> TICK_FACTORY = new Supplier<Tick>() {
+		@Override
+		public Tick get() {
+			return new Tick();
+		}
+	};
+
+	private StructTable<Tick> _ticks;
+
+	@Before
+	public void init(){
+		_ticks = new StructTable<Tick>(TICK_FACTORY);
+		for (int i = 0; i < 1000; i++) {
+			Tick tick = _ticks.append();
+			tick.time.set(i);
+			tick.price.set(i * 0.5);
+			tick.volume.set(i * 2);
+		}
+	}
+
+	@Test
+	public void testAppendGet(){
+		assertEquals("Size", 1000, _ticks.size());
+		Tick cursor = _ticks.newCursor();
+		for (int i = 0; i < 1000; i++) {
+			assertSame("Flyweight Cursor", cursor, _ticks.get(i, cursor));
+			assertEquals("Time", i, cursor.time.get());
+			assertEquals("Price", i * 0.5, cursor.price.get(), 0.0);
+			assertEquals("Volume", i * 2, cursor.volume.get());
+		}
+	}
+
+	@Test
+	public void testBulkCopy(){
+		ByteBuffer bytes = ByteBuffer.allocate(1000 * _ticks.recordSize());
+		_ticks.copyTo(0, 1000, bytes);
+		bytes.flip();
+		StructTable<Tick> copy = new StructTable<Tick>(TICK_FACTORY);
+		assertEquals("Records Appended", 1000, copy.append(bytes));
+		copy.appendAll(_ticks);
+		copy.append(_ticks.get(10));
+		assertEquals("Copy Size", 2001, copy.size());
+		assertEquals("Copied Volume", 998, copy.get(499).volume.get());
+		assertEquals("Copied Volume", 998, copy.get(1499).volume.get());
+		assertEquals("Copied Record", 10, copy.get(2000).time.get());
+	}
+
+	@Test
+	public void testClearZeroesReusedRecords(){
+		_ticks.clear();
+		assertEquals("Cleared Size", 0, _ticks.size());
+		Tick tick = _ticks.append();
+		assertEquals("Zeroed Volume", 0, tick.volume.get());
+	}
+
+	@Test
+	public void testTrySplit(){
+		StructTable<Tick>[] split = _ticks.trySplit(3);
+		long sum = 0;
+		int count = 0;
+		for (StructTable<Tick> part : split) {
+			for (int i = 0; i < part.size(); i++) {
+				sum += part.get(i).time.get();
+				count++;
+			}
+		}
+		assertEquals("Split Count", 1000, count);
+		assertEquals("Split Sum", 999 * 1000 / 2, sum);
+		assertEquals("First Of Second Split", split[0].size(), split[1].get(0).time.get());
+	}
+
+	@Test(expected = UnsupportedOperationException.class)
+	public void testSplitReadOnly(){
+		_ticks.trySplit(2)[0].append();
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testTrySplitZero(){
+		_ticks.trySplit(0);
+	}
+
+	@Test
+	public void testConcurrentReadWhileAppending() throws InterruptedException {
+		final StructTable<Tick> table = new StructTable<Tick>(TICK_FACTORY);
+		Thread writer = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				Tick tick = new Tick();
+				for (int i = 1; i <= 200000; i++) {
+					tick.time.set(i);
+					table.append(tick);
+				}
+			}
+		});
+		writer.start();
+		Tick cursor = table.newCursor();
+		while (writer.isAlive()) { // Readers only see fully written records.
+			int n = table.size();
+			if (n > 0) assertEquals(n, table.get(n - 1, cursor).time.get());
+		}
+		writer.join();
+		assertEquals(200000, table.size());
+	}
+
+}
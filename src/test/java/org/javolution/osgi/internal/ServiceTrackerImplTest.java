@@ -0,0 +1,42 @@
+/*
+ * Javolution - Java(TM) Solution for Real-Time and Embedded Systems
+ * Copyright (C) 2012 - Javolution (http://javolution.org/)
+ * All rights reserved.
+ *
+ * Permission to use, copy, modify, and distribute this software is
+ * freely granted, provided that this notice is preserved.
+ */
+package org.javolution.osgi.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.javolution.context.LocalContext;
+import org.javolution.context.internal.LocalContextImpl;
+import org.junit.Test;
+
+public class ServiceTrackerImplTest {
+
+	@Test
+	public void testDefaultImplementation() {
+		ServiceTrackerImpl<LocalContext> tracker = new ServiceTrackerImpl<LocalContext>(LocalContext.class,
+				LocalContextImpl.class);
+		Object[] services = tracker.getServices();
+		assertEquals(1, services.length);
+		assertTrue(services[0] instanceof LocalContextImpl);
+		assertSame(tracker.services(), tracker.services()); // Cached.
+		assertNotSame(services, tracker.getServices()); // Copy.
+		assertSame(services[0], tracker.getServices()[0]);
+	}
+
+	@Test
+	public void testNoService() {
+		ServiceTrackerImpl<LocalContext> tracker = new ServiceTrackerImpl<LocalContext>(LocalContext.class, null);
+		assertNull(tracker.getServices());
+		assertNull(tracker.getServices());
+	}
+
+}
@@ -0,0 +1,137 @@
+/*
+ * Javolution - Java(TM) Solution for Real-Time and Embedded Systems
+ * Copyright (C) 2012 - Javolution (http://javolution.org/)
+ * All rights reserved.
+ * 
+ * Permission to use, copy, modify, and distribute this software is
+ * freely granted, provided that this notice is preserved.
+ */
+package org.javolution.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.javolution.context.ConcurrentContext;
+import org.javolution.util.function.Order;
+import org.javolution.util.function.Predicate;
+import org.junit.Before;
+import org.junit.Test;
+
+public class AbstractCollectionTest {
+
+	private FastTable<Integer> _numbers;
+
+	@Before
+	public void init() {
+		_numbers = new FastTable<Integer>();
+		for (int i = 0; i < 1000; i++)
+			_numbers.add(i % 100);
+	}
+
+	@Test
+	public void testFusedViews() {
+		AbstractCollection<String> view = _numbers.filter(i -> i % 2 == 0).filter(i -> i < 10).map(i -> i * 10)
+				.map(i -> "#" + i).distinct();
+		assertEquals("[#0, #20, #40, #60, #80]", view.toString());
+		assertEquals(5, view.size());
+		assertEquals(500, _numbers.filter(i -> i % 2 == 0).size());
+		assertEquals(Integer.valueOf(4950), _numbers.distinct().reduce((x, y) -> x + y));
+		assertTrue(view.contains("#40"));
+		assertFalse(view.contains("#30"));
+	}
+
+	@Test
+	public void testShortCircuit() {
+		final AtomicInteger evaluated = new AtomicInteger();
+		assertTrue(_numbers.map(i -> {
+			evaluated.incrementAndGet();
+			return i * 2;
+		}).filter(i -> i > 0).anyMatch(i -> i == 20));
+		assertEquals(11, evaluated.get());
+	}
+
+	@Test
+	public void testWriteThroughViews() {
+		AbstractCollection<Integer> evens = _numbers.filter(i -> i % 2 == 0);
+		assertFalse(evens.add(1));
+		assertTrue(evens.add(2));
+		assertFalse(_numbers.distinct().add(3));
+		evens.clear();
+		assertEquals(500, _numbers.size());
+		assertFalse(_numbers.anyMatch(i -> i % 2 == 0));
+	}
+
+	@Test
+	public void testParallelFusedViews() {
+		final AtomicInteger sum = new AtomicInteger();
+		_numbers.parallel().filter(i -> i % 2 == 0).map(i -> i + 1).forEach(i -> sum.addAndGet(i));
+		assertEquals(25000, sum.get());
+		assertEquals(Integer.valueOf(100), _numbers.parallel().map(i -> i < 5 ? i : 0).reduce((x, y) -> x + y));
+		assertEquals(100, _numbers.parallel().distinct().collect().size());
+	}
+
+	@Test
+	public void testParallelDistinctSorted() {
+		AbstractCollection<Integer> sorted = _numbers.parallel().sorted().collect();
+		assertEquals(1000, sorted.size());
+		Integer previous = null;
+		for (Integer i : sorted) {
+			if (previous != null) assertTrue(previous <= i);
+			previous = i;
+		}
+		AbstractCollection<Integer> distinct = _numbers.parallel().distinct();
+		assertEquals(100, distinct.size());
+		assertEquals(Integer.valueOf(4950), distinct.reduce((x, y) -> x + y));
+		assertEquals(Integer.valueOf(0), _numbers.parallel().distinct().sorted().findAny());
+		assertEquals(null, new FastTable<Integer>().parallel().reduce((x, y) -> x + y));
+	}
+
+	@Test
+	public void testDistinctStandardEquality() {
+		assertFalse(_numbers.equality() instanceof Order); // Hashing is internal to distinct views.
+		FastTable<Integer> large = new FastTable<Integer>();
+		for (int i = 0; i < 200000; i++)
+			large.add(i % 50000);
+		assertEquals(50000, large.distinct().size());
+		assertEquals(50000, large.parallel().distinct().size());
+	}
+
+	@Test
+	public void testParallelDistinctOrder() {
+		FastTable<String> table = new FastTable<String>();
+		for (int j = 0; j < 3; j++) {
+			table.add("Aa");
+			table.add("BB"); // Same hash code.
+			for (int i = 0; i < 2000; i++)
+				table.add("x" + i);
+		}
+		FastTable<String> parallel = new FastTable<String>();
+		ConcurrentContext ctx = ConcurrentContext.enter();
+		try {
+			ctx.setConcurrency(3); // Splits.
+			parallel.addAll(table.parallel().distinct());
+		} finally {
+			ctx.exit();
+		}
+		assertEquals(2002, parallel.size());
+		FastTable<String> sequential = new FastTable<String>();
+		sequential.addAll(table.distinct());
+		assertEquals(sequential, parallel); // Encounter order.
+	}
+
+	@Test
+	public void testDistinctHashCollisions() {
+		assertEquals("Aa".hashCode(), "BB".hashCode());
+		FastTable<String> table = new FastTable<String>().with("Aa", "BB", "Aa", "C");
+		assertEquals("[Aa, BB, C]", table.distinct().toString());
+		assertEquals(2, table.filter(new Predicate<String>() {
+			public boolean test(String param) {
+				return param.length() == 2;
+			}
+		}).distinct().size());
+	}
+
+}
@@ -0,0 +1,106 @@
+/*
+ * Javolution - Java(TM) Solution for Real-Time and Embedded Systems
+ * Copyright (C) 2012 - Javolution (http://javolution.org/)
+ * All rights reserved.
+ * 
+ * Permission to use, copy, modify, and distribute this software is
+ * freely granted, provided that this notice is preserved.
+ */
+package org.javolution.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.BitSet;
+
+import org.junit.Test;
+
+public class ConcurrentFastTableTest {
+
+	private static final int PRODUCERS = 4;
+	private static final int SIZE = 100000;
+
+	@Test
+	public void testAddGet() {
+		ConcurrentFastTable<Integer> table = new ConcurrentFastTable<Integer>();
+		for (int i = 0; i < 1000; i++)
+			table.add(i);
+		assertEquals(1000, table.size());
+		for (int i = 0; i < 1000; i++)
+			assertEquals(i, (int) table.get(i));
+		assertEquals(999, (int) table.getLast());
+		assertEquals(500, table.indexOf(500));
+	}
+
+	@Test
+	public void testConcurrentAppend() throws InterruptedException {
+		final ConcurrentFastTable<Integer> table = new ConcurrentFastTable<Integer>(1024);
+		Thread[] producers = new Thread[PRODUCERS];
+		for (int p = 0; p < PRODUCERS; p++) {
+			final int offset = p * SIZE;
+			producers[p] = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					for (int i = 0; i < SIZE; i++)
+						table.add(offset + i);
+				}
+			});
+			producers[p].start();
+		}
+		while (producers[0].isAlive()) { // Readers only see published (non-null) elements.
+			for (int i = 0, n = table.size(); i < n; i++)
+				assertTrue(table.get(i) != null);
+		}
+		for (Thread producer : producers)
+			producer.join();
+		assertEquals(PRODUCERS * SIZE, table.size());
+		BitSet found = new BitSet();
+		for (Integer i : table)
+			found.set(i);
+		assertEquals(PRODUCERS * SIZE, found.cardinality());
+	}
+
+	@Test
+	public void testTrySplit() {
+		ConcurrentFastTable<Integer> table = new ConcurrentFastTable<Integer>();
+		for (int i = 0; i < 100; i++)
+			table.add(i);
+		AbstractTable<Integer>[] split = table.trySplit(3);
+		int count = 0;
+		for (AbstractTable<Integer> subTable : split)
+			count += subTable.size();
+		assertEquals(100, count);
+		assertEquals(34, (int) split[1].get(0));
+	}
+
+	@Test
+	public void testClear() {
+		ConcurrentFastTable<String> table = new ConcurrentFastTable<String>().with("A", "B");
+		table.clear();
+		assertTrue(table.isEmpty());
+		table.add("C");
+		assertEquals("C", table.get(0));
+	}
+
+	@Test
+	public void testSerializationWithNulls() throws Exception {
+		ConcurrentFastTable<String> table = new ConcurrentFastTable<String>().with("A", null, "C");
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		ObjectOutputStream out = new ObjectOutputStream(bytes);
+		out.writeObject(table);
+		out.close();
+		@SuppressWarnings("unchecked")
+		ConcurrentFastTable<String> copy = (ConcurrentFastTable<String>) new ObjectInputStream(
+				new ByteArrayInputStream(bytes.toByteArray())).readObject();
+		assertEquals(3, copy.size());
+		assertEquals("A", copy.get(0));
+		assertNull(copy.get(1));
+		assertEquals("C", copy.get(2));
+	}
+
+}
@@ -0,0 +1,90 @@
+/*
+ * Javolution - Java(TM) Solution for Real-Time and Embedded Systems
+ * Copyright (C) 2012 - Javolution (http://javolution.org/)
+ * All rights reserved.
+ * 
+ * Permission to use, copy, modify, and distribute this software is
+ * freely granted, provided that this notice is preserved.
+ */
+package org.javolution.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.javolution.util.RingQueue.Type;
+import org.javolution.util.RingQueue.WaitStrategy;
+import org.javolution.util.function.Consumer;
+import org.junit.Test;
+
+public class RingQueueTest {
+
+	private static final int PRODUCERS = 3;
+	private static final int SIZE = 100000;
+
+	@Test
+	public void testOfferPoll() {
+		RingQueue<Integer> queue = new RingQueue<Integer>(3);
+		assertEquals(4, queue.capacity());
+		for (int i = 0; i < 4; i++)
+			assertTrue(queue.offer(i));
+		assertFalse(queue.offer(4));
+		assertEquals(4, queue.size());
+		assertEquals(0, (int) queue.peek());
+		assertEquals(0, (int) queue.poll());
+		assertTrue(queue.offer(4));
+		assertEquals("[1, 2, 3, 4]", queue.toString());
+		queue.clear();
+		assertNull(queue.poll());
+		assertTrue(queue.isEmpty());
+	}
+
+	@Test
+	public void testDrainTo() {
+		RingQueue<Integer> queue = new RingQueue<Integer>(16, Type.SPSC, WaitStrategy.SPIN);
+		for (int i = 0; i < 10; i++)
+			queue.offer(i);
+		final FastTable<Integer> drained = new FastTable<Integer>();
+		Consumer<Integer> consumer = new Consumer<Integer>() {
+			@Override
+			public void accept(Integer param) {
+				drained.add(param);
+			}
+		};
+		assertEquals(4, queue.drainTo(consumer, 4));
+		assertEquals(6, queue.size());
+		assertEquals(6, queue.drainTo(consumer, 100));
+		assertEquals(10, drained.size());
+		assertEquals(9, (int) drained.getLast());
+		assertTrue(queue.isEmpty());
+	}
+
+	@Test
+	public void testMultipleProducers() throws InterruptedException {
+		final RingQueue<Integer> queue = new RingQueue<Integer>(256, Type.MPSC, WaitStrategy.PARK);
+		Thread[] producers = new Thread[PRODUCERS];
+		for (int p = 0; p < PRODUCERS; p++) {
+			producers[p] = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						for (int i = 1; i <= SIZE; i++)
+							queue.put(i);
+					} catch (InterruptedException e) {
+						throw new AssertionError(e);
+					}
+				}
+			});
+			producers[p].start();
+		}
+		long sum = 0;
+		for (int i = 0; i < PRODUCERS * SIZE; i++)
+			sum += queue.take();
+		for (Thread producer : producers)
+			producer.join();
+		assertEquals(PRODUCERS * ((long) SIZE * (SIZE + 1) / 2), sum);
+		assertTrue(queue.isEmpty());
+	}
+
+}